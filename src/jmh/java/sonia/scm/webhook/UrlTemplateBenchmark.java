@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.cloudogu.scm.el.ElParser;
+import com.cloudogu.scm.el.Expression;
+import com.cloudogu.scm.el.env.ImmutableEncodedChangeset;
+import com.cloudogu.scm.el.env.ImmutableEncodedRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the rendering of a url without placeholders by the {@link UrlTemplate} with the evaluation of the same url
+ * parsed by the {@link ElParser}, which creates the environment for every commit like the executor did before.
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UrlTemplateBenchmark {
+
+  private static final String URL = "https://hitchhiker.com/hook";
+
+  private final Repository repository = new Repository("id", "git", "hitchhiker", "HeartOfGold");
+  private final Changeset changeset = new Changeset("42", 0L, Person.toPerson("Trillian <trillian@hitchhiker.com>"), "Towel day");
+
+  private Expression expression;
+  private UrlTemplate template;
+
+  @Setup
+  public void parse() {
+    ElParser elParser = new ElParser();
+    expression = elParser.parse(URL);
+    template = new UrlTemplates(elParser).compile(URL);
+  }
+
+  @Benchmark
+  public String elParser() {
+    Map<String, Object> env = new HashMap<>();
+    env.put("repository", new ImmutableEncodedRepository(repository));
+    ImmutableEncodedChangeset iec = new ImmutableEncodedChangeset(changeset);
+    env.put("changeset", iec);
+    env.put("commit", iec);
+    return expression.evaluate(env);
+  }
+
+  @Benchmark
+  public String urlTemplate() {
+    return template.render(repository, changeset);
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Measures the {@link XmlConfiguration.WebHookConfigurationXmlAdapter}, which runs for every webhook whenever a
+ * configuration is loaded or stored. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class XmlConfigurationBenchmark {
+
+  private final XmlConfiguration.WebHookConfigurationXmlAdapter adapter = new XmlConfiguration.WebHookConfigurationXmlAdapter();
+  private final SimpleWebHook webHook = new SimpleWebHook("https://hitchhiker.com/${repository.name}", true, false, HttpMethod.POST, emptyList());
+
+  private XmlConfiguration marshalled;
+
+  @Setup
+  public void marshalOnce() throws Exception {
+    marshalled = adapter.marshal(webHook);
+  }
+
+  @Benchmark
+  public XmlConfiguration marshal() throws Exception {
+    return adapter.marshal(webHook);
+  }
+
+  @Benchmark
+  public SingleWebHookConfiguration unmarshal() throws Exception {
+    return adapter.unmarshal(marshalled);
+  }
+}
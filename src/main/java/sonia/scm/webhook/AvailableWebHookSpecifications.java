@@ -16,26 +16,61 @@
 
 package sonia.scm.webhook;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import sonia.scm.repository.Repository;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+@Singleton
 public class AvailableWebHookSpecifications {
 
   private final Set<DtoAdapterWebHookSpecification> specifications;
+  private final Map<String, DtoAdapterWebHookSpecification> specificationsByName;
+  private final Map<Class<?>, DtoAdapterWebHookSpecification> specificationsByType;
+  private final Map<Class<?>, Optional<DtoAdapterWebHookSpecification>> specificationsBySuperType = new ConcurrentHashMap<>();
 
   @Inject
   public AvailableWebHookSpecifications(Set<DtoAdapterWebHookSpecification> specifications) {
     this.specifications = specifications;
+    Map<String, DtoAdapterWebHookSpecification> byName = new LinkedHashMap<>();
+    Map<Class<?>, DtoAdapterWebHookSpecification> byType = new LinkedHashMap<>();
+    for (DtoAdapterWebHookSpecification specification : specifications) {
+      Class<?> specificationType = specification.getSpecificationType();
+      byName.putIfAbsent(specificationType.getSimpleName(), specification);
+      byType.putIfAbsent(specificationType, specification);
+    }
+    this.specificationsByName = ImmutableMap.copyOf(byName);
+    this.specificationsByType = ImmutableMap.copyOf(byType);
   }
 
   public Optional<DtoAdapterWebHookSpecification> specificationFor(String name) {
+    return Optional.ofNullable(specificationsByName.get(name));
+  }
+
+  /**
+   * Returns the specification responsible for the given configuration type. Specifications for super types of the
+   * configuration are found by a scan of all specifications, whose result is remembered for the type.
+   */
+  public Optional<DtoAdapterWebHookSpecification> specificationFor(Class<? extends SingleWebHookConfiguration> configurationType) {
+    DtoAdapterWebHookSpecification specification = specificationsByType.get(configurationType);
+    if (specification != null) {
+      return Optional.of(specification);
+    }
+    return specificationsBySuperType.computeIfAbsent(configurationType, this::scan);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Optional<DtoAdapterWebHookSpecification> scan(Class<?> configurationType) {
     return specifications.stream()
-      .filter(specification -> specification.getSpecificationType().getSimpleName().equals(name))
+      .filter(provider -> provider.handles((Class) configurationType))
       .findFirst();
   }
 
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.PostReceiveRepositoryHookEvent;
+import sonia.scm.repository.api.HookContext;
+import sonia.scm.repository.api.HookFeature;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changesets of a single push. The changesets are read from the hook context only once, when they are requested
+ * for the first time, and are shared by all webhooks triggered by the push.
+ */
+public class ChangesetSnapshot {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ChangesetSnapshot.class);
+
+  private final PostReceiveRepositoryHookEvent event;
+
+  private boolean resolved;
+  private List<Changeset> changesets;
+  private Changesets payload;
+
+  public ChangesetSnapshot(PostReceiveRepositoryHookEvent event) {
+    this.event = event;
+  }
+
+  /**
+   * Returns the changesets of the push or {@code null}, if the repository type does not provide changesets in hooks.
+   */
+  public synchronized List<Changeset> getChangesets() {
+    if (!resolved) {
+      changesets = resolve();
+      resolved = true;
+    }
+    return changesets;
+  }
+
+  /**
+   * Returns the payload with all changesets of the push. The same instance is returned for every webhook, so that the
+   * payload is serialized only once (see {@link WebhookHttpClient}).
+   */
+  synchronized Changesets getPayload() {
+    if (payload == null) {
+      payload = new Changesets(getChangesets());
+    }
+    return payload;
+  }
+
+  private List<Changeset> resolve() {
+    HookContext eventContext = event.getContext();
+    if (eventContext == null) {
+      LOG.debug("{} has no hook context support", event.getRepository().getType());
+      return null;
+    }
+    if (!eventContext.isFeatureSupported(HookFeature.CHANGESET_PROVIDER)) {
+      LOG.debug("{} does not support changeset provider", event.getRepository().getType());
+      return null;
+    }
+    List<Changeset> result = new ArrayList<>();
+    eventContext.getChangesetProvider()
+      .setDisablePreProcessors(true)
+      .getChangesets()
+      .forEach(result::add);
+    return Collections.unmodifiableList(result);
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * Circuit breaker for a single host, evaluating the failure rate of a sliding window of the latest deliveries.
+ */
+class CircuitBreaker {
+
+  private final String host;
+  private final Clock clock;
+
+  private CircuitState state = CircuitState.CLOSED;
+  private boolean[] failures = new boolean[0];
+  private int position;
+  private int recorded;
+  private int failed;
+  private Instant openUntil;
+  private boolean trialInFlight;
+  private Instant lastUsed;
+
+  CircuitBreaker(String host, Clock clock) {
+    this.host = host;
+    this.clock = clock;
+    this.lastUsed = clock.instant();
+  }
+
+  synchronized boolean tryAcquire() {
+    lastUsed = clock.instant();
+    switch (state) {
+      case OPEN:
+        if (lastUsed.isBefore(openUntil)) {
+          return false;
+        }
+        transitionTo(CircuitState.HALF_OPEN);
+        trialInFlight = true;
+        return true;
+      case HALF_OPEN:
+        if (trialInFlight) {
+          return false;
+        }
+        trialInFlight = true;
+        return true;
+      default:
+        return true;
+    }
+  }
+
+  synchronized void onSuccess(DispatchConfiguration configuration) {
+    lastUsed = clock.instant();
+    if (state == CircuitState.HALF_OPEN) {
+      close(configuration);
+    } else if (state == CircuitState.CLOSED) {
+      record(false, configuration);
+    }
+  }
+
+  /**
+   * Records a failed delivery.
+   *
+   * @return {@code true}, if the breaker has been opened by this failure
+   */
+  synchronized boolean onFailure(DispatchConfiguration configuration) {
+    lastUsed = clock.instant();
+    if (state == CircuitState.HALF_OPEN) {
+      open(configuration);
+      return true;
+    } else if (state == CircuitState.CLOSED) {
+      record(true, configuration);
+      if (recorded >= failures.length && failureRate() >= configuration.getCircuitBreakerFailureRateThreshold()) {
+        open(configuration);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true}, if the breaker is closed and has not been used since the given instant, so that it can be
+   * dropped without losing a trial or the cool down of the host.
+   */
+  synchronized boolean isIdleSince(Instant instant) {
+    return state == CircuitState.CLOSED && lastUsed.isBefore(instant);
+  }
+
+  synchronized CircuitBreakerStatus getStatus() {
+    return new CircuitBreakerStatus(host, state, recorded, failureRate(), state == CircuitState.CLOSED ? null : openUntil);
+  }
+
+  private void record(boolean failure, DispatchConfiguration configuration) {
+    if (failures.length != configuration.getCircuitBreakerWindowSize()) {
+      resetWindow(configuration);
+    }
+    if (recorded == failures.length) {
+      if (failures[position]) {
+        failed--;
+      }
+    } else {
+      recorded++;
+    }
+    failures[position] = failure;
+    if (failure) {
+      failed++;
+    }
+    position = (position + 1) % failures.length;
+  }
+
+  private int failureRate() {
+    return recorded == 0 ? 0 : failed * 100 / recorded;
+  }
+
+  private void open(DispatchConfiguration configuration) {
+    transitionTo(CircuitState.OPEN);
+    openUntil = clock.instant().plusSeconds(configuration.getCircuitBreakerCoolDownSeconds());
+  }
+
+  private void close(DispatchConfiguration configuration) {
+    transitionTo(CircuitState.CLOSED);
+    openUntil = null;
+    resetWindow(configuration);
+  }
+
+  /**
+   * Changes the state and forgets about a running trial, which belongs to the previous state.
+   */
+  private void transitionTo(CircuitState newState) {
+    state = newState;
+    trialInFlight = false;
+  }
+
+  private void resetWindow(DispatchConfiguration configuration) {
+    failures = new boolean[configuration.getCircuitBreakerWindowSize()];
+    position = 0;
+    recorded = 0;
+    failed = 0;
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps a {@link CircuitBreaker} for every host webhooks are sent to. While the breaker of a host is open, deliveries
+ * to this host fail fast instead of waiting for connect timeouts.
+ * <p>
+ * Closed breakers of hosts, which have not been used for {@link #IDLE_TIMEOUT}, are dropped, so that the breakers do
+ * not pile up for hosts which are no longer used. If the circuit breakers are disabled, all breakers are dropped, so
+ * that a trial, whose result is no longer recorded, does not block the host once the breakers are enabled again.
+ */
+@Singleton
+public class CircuitBreakers {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CircuitBreakers.class);
+
+  static final Duration IDLE_TIMEOUT = Duration.ofMinutes(30);
+  private static final Duration EVICTION_INTERVAL = Duration.ofMinutes(1);
+
+  private final WebHookContext context;
+  private final Clock clock;
+  private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+  private final AtomicReference<Instant> nextEviction;
+
+  @Inject
+  CircuitBreakers(WebHookContext context) {
+    this(context, Clock.systemUTC());
+  }
+
+  CircuitBreakers(WebHookContext context, Clock clock) {
+    this.context = context;
+    this.clock = clock;
+    this.nextEviction = new AtomicReference<>(clock.instant().plus(EVICTION_INTERVAL));
+  }
+
+  boolean tryAcquire(String host) {
+    if (!isEnabled()) {
+      breakers.clear();
+      return true;
+    }
+    return breakerFor(host).tryAcquire();
+  }
+
+  void onSuccess(String host) {
+    DispatchConfiguration configuration = context.getDispatchConfiguration();
+    if (configuration.isCircuitBreakerEnabled()) {
+      breakerFor(host).onSuccess(configuration);
+    } else {
+      breakers.clear();
+    }
+  }
+
+  void onFailure(String host) {
+    DispatchConfiguration configuration = context.getDispatchConfiguration();
+    if (!configuration.isCircuitBreakerEnabled()) {
+      breakers.clear();
+    } else {
+      if (breakerFor(host).onFailure(configuration)) {
+        LOG.warn("circuit breaker for host {} is open, deliveries will fail fast for {} seconds",
+          host, configuration.getCircuitBreakerCoolDownSeconds());
+      }
+    }
+  }
+
+  public List<CircuitBreakerStatus> getStatus() {
+    return breakers.values()
+      .stream()
+      .map(CircuitBreaker::getStatus)
+      .sorted(Comparator.comparing(CircuitBreakerStatus::getHost))
+      .toList();
+  }
+
+  private boolean isEnabled() {
+    return context.getDispatchConfiguration().isCircuitBreakerEnabled();
+  }
+
+  private CircuitBreaker breakerFor(String host) {
+    evictIdleBreakers();
+    return breakers.computeIfAbsent(host, h -> new CircuitBreaker(h, clock));
+  }
+
+  private void evictIdleBreakers() {
+    Instant now = clock.instant();
+    Instant next = nextEviction.get();
+    if (now.isBefore(next) || !nextEviction.compareAndSet(next, now.plus(EVICTION_INTERVAL))) {
+      return;
+    }
+    Instant idleSince = now.minus(IDLE_TIMEOUT);
+    for (String host : breakers.keySet()) {
+      breakers.computeIfPresent(host, (h, breaker) -> breaker.isIdleSince(idleSince) ? null : breaker);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook;
+
+/**
+ * States of the circuit breaker for a single target host.
+ */
+public enum CircuitState {
+
+  /**
+   * Deliveries are sent and their outcome is recorded.
+   */
+  CLOSED,
+
+  /**
+   * Too many deliveries have failed recently. Further deliveries fail fast until the cool-down is over.
+   */
+  OPEN,
+
+  /**
+   * The cool-down is over and a single trial delivery decides whether the breaker is closed or opened again.
+   */
+  HALF_OPEN
+}
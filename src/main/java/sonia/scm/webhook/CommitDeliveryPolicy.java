@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Defines how the requests of a webhook, which is executed for every commit, are sent for a single push. At most
+ * {@link #getParallelism()} of them are in flight at the same time. If {@link #isOrderedPerBranch()} is set, the
+ * commits of each branch are delivered one after the other, the oldest commit first. The commits of a push exceeding
+ * {@link #getMaxDeliveries()} are sent together in a single summary request.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@ToString
+@EqualsAndHashCode
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommitDeliveryPolicy {
+
+  static final int DEFAULT_PARALLELISM = 4;
+  static final int DEFAULT_MAX_DELIVERIES = 1000;
+
+  @Min(1)
+  @Max(100)
+  private int parallelism = DEFAULT_PARALLELISM;
+
+  private boolean orderedPerBranch;
+
+  @Min(1)
+  @Max(100000)
+  private int maxDeliveries = DEFAULT_MAX_DELIVERIES;
+}
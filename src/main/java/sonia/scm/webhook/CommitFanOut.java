@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Sends the per commit requests of a single push with a limited number of them in flight at the same time. Requests of
+ * the same lane are sent one after the other in the order they were submitted, each one only after the previous one
+ * has been delivered or given up (see {@link WebHookSender#execute}). Every request is started by the given executor,
+ * because starting a request renders its url and payload, which should not be done by the thread delivering the
+ * previous request.
+ */
+class CommitFanOut {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CommitFanOut.class);
+
+  private final int parallelism;
+  private final Executor executor;
+  private final Map<String, Lane> lanes = new HashMap<>();
+  private final Deque<Lane> ready = new ArrayDeque<>();
+  private final ThreadLocal<Boolean> starting = ThreadLocal.withInitial(() -> false);
+  private int active;
+
+  CommitFanOut(int parallelism, Executor executor) {
+    this.parallelism = parallelism;
+    this.executor = executor;
+  }
+
+  /**
+   * Submits a request, which is sent as soon as a slot and its lane are free.
+   *
+   * @param lane     name of the lane or {@code null}, if the request does not have to wait for any other request
+   * @param delivery sends the request and returns its completion
+   * @return completed, once the request has been delivered or given up
+   */
+  CompletableFuture<Void> submit(String lane, Supplier<CompletableFuture<Void>> delivery) {
+    Task task = new Task(delivery);
+    synchronized (this) {
+      Lane target = lane == null ? new Lane() : lanes.computeIfAbsent(lane, name -> new Lane());
+      target.pending.addLast(task);
+      if (!target.busy && target.pending.size() == 1) {
+        ready.addLast(target);
+      }
+    }
+    startNext();
+    return task.done;
+  }
+
+  private void startNext() {
+    if (starting.get()) {
+      // the loop further up in the stack of this thread will start the next request
+      return;
+    }
+    starting.set(true);
+    try {
+      Task next;
+      while ((next = pollNext()) != null) {
+        start(next);
+      }
+    } finally {
+      starting.remove();
+    }
+  }
+
+  private synchronized Task pollNext() {
+    if (active >= parallelism || ready.isEmpty()) {
+      return null;
+    }
+    Lane lane = ready.pollFirst();
+    lane.busy = true;
+    active++;
+    Task task = lane.pending.pollFirst();
+    task.lane = lane;
+    return task;
+  }
+
+  private void start(Task task) {
+    try {
+      executor.execute(() -> send(task));
+    } catch (RuntimeException e) {
+      LOG.error("failed to start webhook request for commit", e);
+      finish(task);
+    }
+  }
+
+  private void send(Task task) {
+    CompletableFuture<Void> delivered;
+    try {
+      delivered = task.delivery.get();
+    } catch (RuntimeException e) {
+      LOG.error("failed to send webhook request for commit", e);
+      delivered = CompletableFuture.completedFuture(null);
+    }
+    delivered.whenComplete((result, failure) -> finish(task));
+  }
+
+  private void finish(Task task) {
+    synchronized (this) {
+      active--;
+      task.lane.busy = false;
+      if (!task.lane.pending.isEmpty()) {
+        ready.addLast(task.lane);
+      }
+    }
+    task.done.complete(null);
+    startNext();
+  }
+
+  private static class Lane {
+    private final Deque<Task> pending = new ArrayDeque<>();
+    private boolean busy;
+  }
+
+  private static class Task {
+    private final Supplier<CompletableFuture<Void>> delivery;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private Lane lane;
+
+    private Task(Supplier<CompletableFuture<Void>> delivery) {
+      this.delivery = delivery;
+    }
+  }
+}
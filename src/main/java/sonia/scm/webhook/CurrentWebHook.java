@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import sonia.scm.repository.Repository;
+
+import java.util.function.Supplier;
+
+/**
+ * Keeps the webhook, whose executor is currently run by this thread. This way the requests sent by executors of any
+ * specification can be attributed to their webhook.
+ */
+final class CurrentWebHook {
+
+  static final String UNKNOWN = "unknown";
+
+  private static final ThreadLocal<WebHook> CURRENT = new ThreadLocal<>();
+  private static final ThreadLocal<Repository> CURRENT_REPOSITORY = new ThreadLocal<>();
+
+  private CurrentWebHook() {
+  }
+
+  static WebHookExecutor bind(WebHook webHook, Repository repository, WebHookExecutor executor) {
+    return () -> {
+      CURRENT.set(webHook);
+      CURRENT_REPOSITORY.set(repository);
+      try {
+        executor.run();
+      } finally {
+        CURRENT.remove();
+        CURRENT_REPOSITORY.remove();
+      }
+    };
+  }
+
+  /**
+   * Binds the executor to the webhook and repository, which are bound to this thread, so that the executor can be run
+   * later by another thread.
+   */
+  static WebHookExecutor rebind(WebHookExecutor executor) {
+    return bind(CURRENT.get(), CURRENT_REPOSITORY.get(), executor);
+  }
+
+  /**
+   * Like {@link #rebind(WebHookExecutor)} for a task with a result. The task may also be run by the current thread,
+   * the binding of the thread is restored afterwards.
+   */
+  static <T> Supplier<T> rebindTask(Supplier<T> task) {
+    WebHook webHook = CURRENT.get();
+    Repository repository = CURRENT_REPOSITORY.get();
+    return () -> {
+      WebHook previousWebHook = CURRENT.get();
+      Repository previousRepository = CURRENT_REPOSITORY.get();
+      CURRENT.set(webHook);
+      CURRENT_REPOSITORY.set(repository);
+      try {
+        return task.get();
+      } finally {
+        CURRENT.set(previousWebHook);
+        CURRENT_REPOSITORY.set(previousRepository);
+      }
+    };
+  }
+
+  static String id() {
+    WebHook webHook = CURRENT.get();
+    if (webHook == null || webHook.getId() == null) {
+      return UNKNOWN;
+    }
+    return webHook.getId();
+  }
+
+  /**
+   * Returns the id of the repository, whose push triggered the current webhook, or {@code null}.
+   */
+  static String repositoryId() {
+    Repository repository = CURRENT_REPOSITORY.get();
+    return repository != null ? repository.getId() : null;
+  }
+
+  static String specification() {
+    WebHook webHook = CURRENT.get();
+    if (webHook == null || webHook.getName() == null) {
+      return UNKNOWN;
+    }
+    return webHook.getName();
+  }
+}
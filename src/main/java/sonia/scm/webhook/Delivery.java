@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A single webhook request on its way to the receiver together with its retry state.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+class Delivery {
+
+  private final String url;
+  private final String host;
+  private final WebhookRequest request;
+  private final long outboxEntryId;
+  private final RetryPolicy retryPolicy;
+  private final int attempt;
+  private final String webHookId;
+  private final String specification;
+  /**
+   * Id of the repository whose push triggered the delivery, or {@code null} if it is not known.
+   */
+  private final String repositoryId;
+  /**
+   * Id of the request in the {@link DeliveryArchive} or {@link DeliveryArchive#NOT_ARCHIVED}.
+   */
+  private final long requestId;
+  /**
+   * Rate limit of the webhook or {@code null}, if its requests are not limited.
+   */
+  private final RateLimit rateLimit;
+  /**
+   * Completed, once the request has been delivered successfully or has been given up. It is shared by all attempts.
+   */
+  private final CompletableFuture<Void> completion;
+
+  Delivery(String url, String host, WebhookRequest request, long outboxEntryId, RetryPolicy retryPolicy) {
+    this(url, host, request, outboxEntryId, retryPolicy, 1, CurrentWebHook.UNKNOWN, CurrentWebHook.UNKNOWN, null, DeliveryArchive.NOT_ARCHIVED, null, new CompletableFuture<>());
+  }
+
+  Delivery(String url, String host, WebhookRequest request, long outboxEntryId, RetryPolicy retryPolicy, String webHookId, String specification, String repositoryId, long requestId, RateLimit rateLimit) {
+    this(url, host, request, outboxEntryId, retryPolicy, 1, webHookId, specification, repositoryId, requestId, rateLimit, new CompletableFuture<>());
+  }
+
+  Delivery nextAttempt() {
+    return new Delivery(url, host, request, outboxEntryId, retryPolicy, attempt + 1, webHookId, specification, repositoryId, requestId, rateLimit, completion);
+  }
+
+  void complete() {
+    completion.complete(null);
+  }
+}
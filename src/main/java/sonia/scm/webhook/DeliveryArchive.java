@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.SCMContextProvider;
+import sonia.scm.repository.Repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the requests of webhooks recorded in the {@link DeliveryHistory}, so that they can be delivered again later.
+ * <p>
+ * Every request is stored once in its own file in the form of an {@link OutboxEntry}, no matter how often it is
+ * attempted. The files are written by a single background thread, so that sending a webhook does not wait for the
+ * disk; until then the request is kept in memory. If the writer falls too far behind, further requests are not
+ * archived. The requests of a repository are pruned to the size of the history from time to time.
+ */
+@Singleton
+class DeliveryArchive implements Closeable {
+
+  static final long NOT_ARCHIVED = -1;
+
+  private static final Logger LOG = LoggerFactory.getLogger(DeliveryArchive.class);
+
+  private static final String FILE_EXTENSION = ".request";
+  private static final int PRUNE_INTERVAL = 32;
+  private static final int MAX_PENDING_WRITES = 1000;
+  private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+  private final WebHookContext context;
+  private final Path directory;
+  private final Clock clock;
+  private final ExecutorService writer;
+
+  private final AtomicLong ids;
+  private final Map<String, AtomicInteger> writesSincePrune = new ConcurrentHashMap<>();
+  private final Map<Long, OutboxEntry> pendingWrites = new ConcurrentHashMap<>();
+
+  @Inject
+  DeliveryArchive(WebHookContext context, SCMContextProvider contextProvider) {
+    this(context, contextProvider.resolve(Paths.get("webhook", "archive")), Clock.systemUTC(), createWriter());
+  }
+
+  DeliveryArchive(WebHookContext context, Path directory, Clock clock, ExecutorService writer) {
+    this.context = context;
+    this.directory = directory;
+    this.clock = clock;
+    this.writer = writer;
+    // ids keep growing across restarts as long as less than 1000 requests per millisecond are archived
+    this.ids = new AtomicLong(clock.millis() * 1000);
+  }
+
+  /**
+   * Archives the request and returns its id or {@link #NOT_ARCHIVED}, if the request could not be archived.
+   */
+  long store(String repositoryId, String url, WebhookRequest request, RetryPolicy retryPolicy, RateLimit rateLimit) {
+    DispatchConfiguration configuration = context.getDispatchConfiguration();
+    if (repositoryId == null || !configuration.isHistoryEnabled() || !request.isJournaled()) {
+      return NOT_ARCHIVED;
+    }
+    long id = ids.incrementAndGet();
+    OutboxEntry entry = new OutboxEntry(id, clock.millis(), request.getMethod(), url, ArrayListMultimap.create(request.getHeaders()), request.getBody(), retryPolicy, rateLimit);
+    pendingWrites.put(id, entry);
+    try {
+      writer.execute(() -> write(repositoryId, entry, configuration.getHistorySize()));
+    } catch (RejectedExecutionException e) {
+      pendingWrites.remove(id);
+      LOG.debug("archive is busy, webhook for {} cannot be delivered again", url);
+      return NOT_ARCHIVED;
+    }
+    return id;
+  }
+
+  private void write(String repositoryId, OutboxEntry entry, int historySize) {
+    try {
+      Files.createDirectories(directory.resolve(repositoryId));
+      Files.write(file(repositoryId, entry.getId()), Outbox.encode(entry), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      LOG.debug("could not archive webhook for {}, it cannot be delivered again", entry.getUrl(), e);
+    } finally {
+      pendingWrites.remove(entry.getId());
+    }
+    if (writesSincePrune.computeIfAbsent(repositoryId, key -> new AtomicInteger()).incrementAndGet() % PRUNE_INTERVAL == 0) {
+      prune(repositoryId, historySize);
+    }
+  }
+
+  boolean contains(String repositoryId, long id) {
+    return id != NOT_ARCHIVED && (pendingWrites.containsKey(id) || Files.exists(file(repositoryId, id)));
+  }
+
+  Optional<OutboxEntry> load(String repositoryId, long id) {
+    if (id == NOT_ARCHIVED) {
+      return Optional.empty();
+    }
+    OutboxEntry pending = pendingWrites.get(id);
+    if (pending != null) {
+      return Optional.of(pending);
+    }
+    Path file = file(repositoryId, id);
+    if (!Files.exists(file)) {
+      return Optional.empty();
+    }
+    try {
+      return Outbox.read(file).values().stream().findFirst();
+    } catch (IOException e) {
+      LOG.warn("could not read archived webhook {} of repository {}", id, repositoryId, e);
+      return Optional.empty();
+    }
+  }
+
+  void delete(Repository repository) {
+    try {
+      // requests of the repository, which are still waiting for the writer, have to be deleted as well
+      writer.execute(() -> deleteFiles(repository));
+    } catch (RejectedExecutionException e) {
+      deleteFiles(repository);
+    }
+  }
+
+  private void deleteFiles(Repository repository) {
+    writesSincePrune.remove(repository.getId());
+    Path repositoryDirectory = directory.resolve(repository.getId());
+    if (!Files.exists(repositoryDirectory)) {
+      return;
+    }
+    try (Stream<Path> files = Files.list(repositoryDirectory)) {
+      for (Path file : files.toList()) {
+        Files.deleteIfExists(file);
+      }
+      Files.deleteIfExists(repositoryDirectory);
+    } catch (IOException e) {
+      LOG.warn("could not delete archived webhooks of repository {}", repository, e);
+    }
+  }
+
+  private void prune(String repositoryId, int size) {
+    List<Long> archived = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory.resolve(repositoryId))) {
+      files.map(file -> file.getFileName().toString())
+        .filter(name -> name.endsWith(FILE_EXTENSION))
+        .map(name -> Long.parseLong(name.substring(0, name.length() - FILE_EXTENSION.length())))
+        .forEach(archived::add);
+      archived.sort(Comparator.reverseOrder());
+      // every request has at least one record in the history, so older requests cannot be redelivered anymore
+      for (long id : archived.subList(Math.min(size, archived.size()), archived.size())) {
+        Files.deleteIfExists(file(repositoryId, id));
+      }
+    } catch (IOException | NumberFormatException e) {
+      LOG.warn("could not prune archived webhooks of repository {}", repositoryId, e);
+    }
+  }
+
+  private Path file(String repositoryId, long id) {
+    return directory.resolve(repositoryId).resolve(id + FILE_EXTENSION);
+  }
+
+  @Override
+  public void close() {
+    writer.shutdown();
+    try {
+      if (!writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOG.warn("could not archive {} webhooks before shutdown", pendingWrites.size());
+        writer.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      writer.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static ExecutorService createWriter() {
+    return new ThreadPoolExecutor(
+      1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING_WRITES),
+      new ThreadFactoryBuilder().setNameFormat("WebHookDeliveryArchive").setDaemon(true).build()
+    );
+  }
+}
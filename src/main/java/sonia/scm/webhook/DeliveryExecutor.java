@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs single webhook deliveries according to the {@link ExecutionMode} of the {@link DispatchConfiguration}. The
+ * deliveries are never run by the calling thread, so that handing over a delivery (e.g. from the {@link HostScheduler}
+ * or the {@link RetryScheduler}) does not wait for its request.
+ */
+@Singleton
+class DeliveryExecutor implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DeliveryExecutor.class);
+
+  private final WebHookContext context;
+
+  private ThreadPoolExecutor platformThreadExecutor;
+  private ExecutorService virtualThreadExecutor;
+  private boolean virtualThreadsUnavailable;
+  private Semaphore permits;
+  private int currentMaxConcurrentDeliveries;
+
+  @Inject
+  DeliveryExecutor(WebHookContext context) {
+    this.context = context;
+  }
+
+  void execute(Runnable delivery) {
+    DispatchConfiguration configuration = context.getDispatchConfiguration();
+    if (configuration.getExecutionMode() == ExecutionMode.VIRTUAL_THREADS) {
+      Optional<ExecutorService> executor = getVirtualThreadExecutor();
+      if (executor.isPresent()) {
+        executor.get().execute(withPermit(permitsFor(configuration), delivery));
+        return;
+      }
+    }
+    platformThreadExecutorFor(configuration).execute(withSubject(delivery));
+  }
+
+  private synchronized ThreadPoolExecutor platformThreadExecutorFor(DispatchConfiguration configuration) {
+    int threads = configuration.getMaxConcurrentDeliveries();
+    if (platformThreadExecutor == null) {
+      platformThreadExecutor = new ThreadPoolExecutor(
+        threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        new ThreadFactoryBuilder().setNameFormat("WebHookDelivery-%d").setDaemon(true).build()
+      );
+      platformThreadExecutor.allowCoreThreadTimeOut(true);
+    } else if (platformThreadExecutor.getMaximumPoolSize() != threads) {
+      // the core size must never exceed the maximum size, so the order depends on the direction of the change
+      if (threads > platformThreadExecutor.getMaximumPoolSize()) {
+        platformThreadExecutor.setMaximumPoolSize(threads);
+        platformThreadExecutor.setCorePoolSize(threads);
+      } else {
+        platformThreadExecutor.setCorePoolSize(threads);
+        platformThreadExecutor.setMaximumPoolSize(threads);
+      }
+    }
+    return platformThreadExecutor;
+  }
+
+  private Runnable withPermit(Semaphore semaphore, Runnable delivery) {
+    return withSubject(() -> {
+      semaphore.acquireUninterruptibly();
+      try {
+        delivery.run();
+      } finally {
+        semaphore.release();
+      }
+    });
+  }
+
+  private static Runnable withSubject(Runnable runnable) {
+    Subject subject = ThreadContext.getSubject();
+    if (subject != null) {
+      return subject.associateWith(runnable);
+    }
+    return runnable;
+  }
+
+  private synchronized Semaphore permitsFor(DispatchConfiguration configuration) {
+    if (permits == null || configuration.getMaxConcurrentDeliveries() != currentMaxConcurrentDeliveries) {
+      // deliveries in flight release the permits of the semaphore they have been started with
+      currentMaxConcurrentDeliveries = configuration.getMaxConcurrentDeliveries();
+      permits = new Semaphore(currentMaxConcurrentDeliveries);
+    }
+    return permits;
+  }
+
+  private synchronized Optional<ExecutorService> getVirtualThreadExecutor() {
+    if (virtualThreadExecutor == null && !virtualThreadsUnavailable) {
+      try {
+        // resolved reflectively, because the plugin is still compiled for java versions without virtual threads
+        virtualThreadExecutor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+        LOG.warn("virtual threads are not supported by this java runtime, sending webhooks on platform threads");
+        virtualThreadsUnavailable = true;
+      }
+    }
+    return Optional.ofNullable(virtualThreadExecutor);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (platformThreadExecutor != null) {
+      platformThreadExecutor.shutdown();
+      platformThreadExecutor = null;
+    }
+    if (virtualThreadExecutor != null) {
+      virtualThreadExecutor.shutdown();
+      virtualThreadExecutor = null;
+    }
+  }
+}
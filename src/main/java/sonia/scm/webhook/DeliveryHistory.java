@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.SCMContextProvider;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.Repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the latest delivery attempts of the webhooks of every repository.
+ * <p>
+ * The attempts of a repository are stored in a ring buffer file with a fixed number of slots (see
+ * {@link DispatchConfiguration#getHistorySize()}), so that the history never grows beyond
+ * {@code historySize * RECORD_SIZE} bytes and recording an attempt is a single positional write. Every record starts
+ * with a sequence number and a crc32 checksum. Slots, which have never been written or have been written only
+ * partially, are ignored when the history is read. The files are not synced to the disk explicitly, because losing
+ * the last few records after a crash of the operating system is acceptable for a history.
+ */
+@Extension
+@Singleton
+public class DeliveryHistory implements ServletContextListener {
+
+  @VisibleForTesting
+  static final int RECORD_SIZE = 1024;
+  @VisibleForTesting
+  static final int MAX_WEBHOOK_ID_BYTES = 64;
+  @VisibleForTesting
+  static final int MAX_URL_BYTES = 640;
+  @VisibleForTesting
+  static final int MAX_OPEN_RINGS = 256;
+
+  private static final Logger LOG = LoggerFactory.getLogger(DeliveryHistory.class);
+
+  private static final String FILE_EXTENSION = ".ring";
+  private static final int MAGIC = 0x57484832;
+  private static final int HEADER_SIZE = 12;
+  private static final int CHECKSUM_OFFSET = 8;
+  private static final int PAYLOAD_OFFSET = 12;
+  private static final int SCAN_BATCH = 64;
+
+  private final WebHookContext context;
+  private final Path directory;
+  private final Clock clock;
+
+  private final Cache<String, Ring> rings = CacheBuilder.newBuilder()
+    .maximumSize(MAX_OPEN_RINGS)
+    .removalListener(DeliveryHistory::close)
+    .build();
+
+  @Inject
+  DeliveryHistory(WebHookContext context, SCMContextProvider contextProvider) {
+    this(context, contextProvider.resolve(Paths.get("webhook", "history")), Clock.systemUTC());
+  }
+
+  DeliveryHistory(WebHookContext context, Path directory, Clock clock) {
+    this.context = context;
+    this.directory = directory;
+    this.clock = clock;
+  }
+
+  /**
+   * Records a single delivery attempt. Deliveries, which cannot be attributed to a repository, are not recorded.
+   */
+  void record(Delivery delivery, int statusCode, long latencyMillis, long responseSize, String error) {
+    DispatchConfiguration configuration = context.getDispatchConfiguration();
+    String repositoryId = delivery.getRepositoryId();
+    if (!configuration.isHistoryEnabled() || repositoryId == null) {
+      return;
+    }
+    try {
+      withRing(repositoryId, configuration.getHistorySize(), ring -> {
+        ring.append(clock.millis(), delivery, statusCode, latencyMillis, responseSize, error);
+        return null;
+      });
+    } catch (IOException e) {
+      LOG.debug("could not record delivery of webhook for {} in history", delivery.getUrl(), e);
+    }
+  }
+
+  /**
+   * Returns the recorded delivery attempts of the repository, the latest attempt first.
+   */
+  public List<DeliveryRecord> getDeliveries(Repository repository) {
+    return getDeliveries(repository.getId());
+  }
+
+  List<DeliveryRecord> getDeliveries(String repositoryId) {
+    if (rings.getIfPresent(repositoryId) == null && !Files.exists(file(repositoryId))) {
+      return List.of();
+    }
+    try {
+      return withRing(repositoryId, context.getDispatchConfiguration().getHistorySize(), Ring::read);
+    } catch (IOException e) {
+      LOG.warn("could not read webhook delivery history of repository {}", repositoryId, e);
+      return List.of();
+    }
+  }
+
+  /**
+   * Returns the ids of all repositories, which have a history.
+   */
+  List<String> getRepositoryIds() {
+    if (!Files.exists(directory)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(file -> file.getFileName().toString())
+        .filter(name -> name.endsWith(FILE_EXTENSION))
+        .map(name -> name.substring(0, name.length() - FILE_EXTENSION.length()))
+        .toList();
+    } catch (IOException e) {
+      LOG.warn("could not list webhook delivery histories", e);
+      return List.of();
+    }
+  }
+
+  /**
+   * Removes the history of a deleted repository.
+   */
+  void delete(Repository repository) {
+    String repositoryId = repository.getId();
+    rings.invalidate(repositoryId);
+    try {
+      Files.deleteIfExists(file(repositoryId));
+    } catch (IOException e) {
+      LOG.warn("could not delete webhook delivery history of repository {}", repository, e);
+    }
+  }
+
+  /**
+   * Applies the operation to the ring of the repository. Rings are closed, when they are evicted from the cache of
+   * open rings, even if another thread is still using them. In this case the ring is opened again and the operation
+   * is retried once.
+   */
+  private <T> T withRing(String repositoryId, int capacity, RingOperation<T> operation) throws IOException {
+    Ring ring = ring(repositoryId, capacity);
+    try {
+      return operation.apply(ring);
+    } catch (ClosedChannelException e) {
+      rings.asMap().remove(repositoryId, ring);
+      if (Thread.currentThread().isInterrupted()) {
+        // the channel has been closed by the interrupt of this thread, a new one would be closed as well
+        throw e;
+      }
+      return operation.apply(ring(repositoryId, capacity));
+    }
+  }
+
+  private Ring ring(String repositoryId, int capacity) throws IOException {
+    Ring ring = open(repositoryId, capacity);
+    if (ring.capacity != capacity) {
+      // the history size has been changed, so the file has to be reorganized
+      rings.asMap().remove(repositoryId, ring);
+      ring = open(repositoryId, capacity);
+    }
+    return ring;
+  }
+
+  private Ring open(String repositoryId, int capacity) throws IOException {
+    try {
+      return rings.get(repositoryId, () -> Ring.open(file(repositoryId), capacity));
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      throw new IOException("could not open webhook delivery history", e.getCause());
+    }
+  }
+
+  private Path file(String repositoryId) {
+    return directory.resolve(repositoryId + FILE_EXTENSION);
+  }
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    // the rings are opened on demand
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    rings.invalidateAll();
+  }
+
+  private static void close(RemovalNotification<String, Ring> notification) {
+    try {
+      notification.getValue().close();
+    } catch (IOException e) {
+      LOG.debug("could not close webhook delivery history of repository {}", notification.getKey(), e);
+    }
+  }
+
+  @FunctionalInterface
+  private interface RingOperation<T> {
+    T apply(Ring ring) throws IOException;
+  }
+
+  private static final class Ring {
+
+    private final FileChannel channel;
+    private final int capacity;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+    private long sequence;
+
+    private Ring(FileChannel channel, int capacity, long sequence) {
+      this.channel = channel;
+      this.capacity = capacity;
+      this.sequence = sequence;
+    }
+
+    static Ring open(Path file, int capacity) throws IOException {
+      Files.createDirectories(file.getParent());
+      FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      try {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getInt() == RECORD_SIZE) {
+          int existingCapacity = header.getInt();
+          Ring existing = new Ring(channel, existingCapacity, scan(channel, existingCapacity));
+          if (existingCapacity == capacity) {
+            return existing;
+          }
+          return resize(channel, existing, capacity);
+        }
+        return create(channel, capacity, List.of());
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    private static long scan(FileChannel channel, int capacity) throws IOException {
+      ByteBuffer batch = ByteBuffer.allocate(SCAN_BATCH * RECORD_SIZE);
+      long sequence = 0;
+      for (int slot = 0; slot < capacity; slot += SCAN_BATCH) {
+        batch.clear();
+        readFully(channel, batch, slotPosition(slot));
+        for (int offset = 0; offset + RECORD_SIZE <= batch.position(); offset += RECORD_SIZE) {
+          if (batch.getInt(offset + CHECKSUM_OFFSET) == checksum(batch.array(), offset)) {
+            sequence = Math.max(sequence, batch.getLong(offset));
+          }
+        }
+      }
+      return sequence;
+    }
+
+    private static Ring resize(FileChannel channel, Ring existing, int capacity) throws IOException {
+      List<byte[]> records = new ArrayList<>();
+      // the latest records have consecutive sequence numbers, so they occupy distinct slots of the new ring as well
+      for (long seq = existing.sequence; seq > 0 && seq > existing.sequence - Math.min(capacity, existing.capacity); seq--) {
+        ByteBuffer slot = existing.readSlot(seq);
+        if (slot != null) {
+          records.add(slot.array().clone());
+        }
+      }
+      return create(channel, capacity, records);
+    }
+
+    private static Ring create(FileChannel channel, int capacity, List<byte[]> records) throws IOException {
+      channel.truncate(0);
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(RECORD_SIZE).putInt(capacity);
+      header.flip();
+      writeFully(channel, header, 0);
+      Ring ring = new Ring(channel, capacity, 0);
+      for (byte[] record : records) {
+        long seq = ByteBuffer.wrap(record).getLong(0);
+        writeFully(channel, ByteBuffer.wrap(record), ring.position(seq));
+        ring.sequence = Math.max(ring.sequence, seq);
+      }
+      return ring;
+    }
+
+    synchronized void append(long timestamp, Delivery delivery, int statusCode, long latencyMillis, long responseSize, String error) throws IOException {
+      long seq = sequence + 1;
+      buffer.clear();
+      buffer.putLong(seq)
+        .putInt(0)
+        .putLong(timestamp)
+        .putInt(statusCode)
+        .putLong(latencyMillis)
+        .putLong(responseSize)
+        .putInt(delivery.getAttempt())
+        .putLong(delivery.getRequestId());
+      putString(buffer, delivery.getWebHookId(), MAX_WEBHOOK_ID_BYTES);
+      putString(buffer, delivery.getUrl(), MAX_URL_BYTES);
+      putString(buffer, error, buffer.remaining() - 2);
+      while (buffer.hasRemaining()) {
+        buffer.put((byte) 0);
+      }
+      buffer.putInt(CHECKSUM_OFFSET, checksum(buffer.array(), 0));
+      buffer.flip();
+      writeFully(channel, buffer, position(seq));
+      sequence = seq;
+    }
+
+    synchronized List<DeliveryRecord> read() throws IOException {
+      List<DeliveryRecord> records = new ArrayList<>();
+      for (long seq = sequence; seq > 0 && seq > sequence - capacity; seq--) {
+        ByteBuffer slot = readSlot(seq);
+        if (slot != null) {
+          records.add(decode(slot));
+        }
+      }
+      return records;
+    }
+
+    private ByteBuffer readSlot(long seq) throws IOException {
+      buffer.clear();
+      readFully(channel, buffer, position(seq));
+      if (buffer.position() < RECORD_SIZE || buffer.getLong(0) != seq || buffer.getInt(CHECKSUM_OFFSET) != checksum(buffer.array(), 0)) {
+        return null;
+      }
+      buffer.position(PAYLOAD_OFFSET);
+      return buffer;
+    }
+
+    private long position(long seq) {
+      return slotPosition((int) (seq % capacity));
+    }
+
+    private static long slotPosition(int slot) {
+      return HEADER_SIZE + (long) slot * RECORD_SIZE;
+    }
+
+    synchronized void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  private static DeliveryRecord decode(ByteBuffer buffer) {
+    long seq = buffer.getLong(0);
+    Instant timestamp = Instant.ofEpochMilli(buffer.getLong());
+    int statusCode = buffer.getInt();
+    long latencyMillis = buffer.getLong();
+    long responseSize = buffer.getLong();
+    int attempt = buffer.getInt();
+    long requestId = buffer.getLong();
+    String webHookId = getString(buffer);
+    String url = getString(buffer);
+    String error = getString(buffer);
+    return new DeliveryRecord(seq, timestamp, webHookId, url, statusCode, latencyMillis, responseSize, attempt, requestId, error);
+  }
+
+  /**
+   * Writes the string with a length prefix, truncated to at most {@code maxBytes} without splitting a character.
+   */
+  private static void putString(ByteBuffer buffer, String value, int maxBytes) {
+    if (value == null) {
+      buffer.putShort((short) -1);
+      return;
+    }
+    int lengthPosition = buffer.position();
+    ByteBuffer target = buffer.position(lengthPosition + 2).slice();
+    target.limit(Math.min(maxBytes, target.remaining()));
+    StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE)
+      .encode(CharBuffer.wrap(value), target, true);
+    buffer.putShort(lengthPosition, (short) target.position());
+    buffer.position(lengthPosition + 2 + target.position());
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    short length = buffer.getShort();
+    if (length < 0) {
+      return null;
+    }
+    String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+    buffer.position(buffer.position() + length);
+    return value;
+  }
+
+  /**
+   * Calculates the checksum of the record starting at the offset, leaving out the checksum itself.
+   */
+  private static int checksum(byte[] records, int offset) {
+    CRC32 crc = new CRC32();
+    crc.update(records, offset, CHECKSUM_OFFSET);
+    crc.update(records, offset + PAYLOAD_OFFSET, RECORD_SIZE - PAYLOAD_OFFSET);
+    return (int) crc.getValue();
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        return;
+      }
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + buffer.position());
+    }
+  }
+}
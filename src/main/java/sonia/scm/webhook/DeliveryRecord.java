@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * A single attempt to deliver a webhook, as recorded by the {@link DeliveryHistory}.
+ */
+@Getter
+@AllArgsConstructor
+public class DeliveryRecord {
+  private final long sequence;
+  private final Instant timestamp;
+  private final String webHookId;
+  private final String url;
+  /**
+   * Status code of the response or {@code -1}, if no response has been received.
+   */
+  private final int statusCode;
+  private final long latencyMillis;
+  /**
+   * Size of the response body in bytes or {@code -1}, if it is not known.
+   */
+  private final long responseSize;
+  private final int attempt;
+  /**
+   * Id of the archived request or {@code -1}, if the request cannot be delivered again.
+   */
+  private final long requestId;
+  private final String error;
+
+  public boolean isSuccessful() {
+    return statusCode >= 200 && statusCode < 300;
+  }
+
+  public boolean isRedeliverable() {
+    return requestId != DeliveryArchive.NOT_ARCHIVED;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Global settings for the asynchronous dispatching of webhooks.
+ */
+@XmlRootElement(name = "dispatch")
+@XmlAccessorType(XmlAccessType.FIELD)
+@ToString
+@EqualsAndHashCode
+@Getter
+@Setter
+@NoArgsConstructor
+public class DispatchConfiguration {
+
+  static final int DEFAULT_WORKER_THREADS = 4;
+  static final int DEFAULT_QUEUE_CAPACITY = 1000;
+  static final int DEFAULT_MAX_CONCURRENT_DELIVERIES = 200;
+  static final int DEFAULT_MAX_CONCURRENT_DELIVERIES_PER_HOST = 4;
+  static final int DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE = 20;
+  static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD = 50;
+  static final int DEFAULT_CIRCUIT_BREAKER_COOL_DOWN_SECONDS = 60;
+  static final int DEFAULT_OUTBOX_FLUSH_INTERVAL_MILLIS = 200;
+  static final int DEFAULT_STREAMING_PAYLOAD_THRESHOLD = 1000;
+  static final int DEFAULT_HISTORY_SIZE = 1000;
+  static final int DEFAULT_REPLAY_RATE_PER_SECOND = 5;
+
+  @Min(1)
+  @Max(256)
+  private int workerThreads = DEFAULT_WORKER_THREADS;
+
+  @Min(1)
+  @Max(100000)
+  private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+  @NotNull
+  private ExecutionMode executionMode = ExecutionMode.PLATFORM_THREADS;
+
+  @Min(1)
+  @Max(100000)
+  private int maxConcurrentDeliveries = DEFAULT_MAX_CONCURRENT_DELIVERIES;
+
+  @Min(1)
+  @Max(1000)
+  private int maxConcurrentDeliveriesPerHost = DEFAULT_MAX_CONCURRENT_DELIVERIES_PER_HOST;
+
+  private boolean circuitBreakerEnabled = true;
+
+  @Min(1)
+  @Max(1000)
+  private int circuitBreakerWindowSize = DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE;
+
+  @Min(1)
+  @Max(100)
+  private int circuitBreakerFailureRateThreshold = DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD;
+
+  @Min(1)
+  @Max(86400)
+  private int circuitBreakerCoolDownSeconds = DEFAULT_CIRCUIT_BREAKER_COOL_DOWN_SECONDS;
+
+  private boolean outboxEnabled = true;
+
+  @Min(1)
+  @Max(10000)
+  private int outboxFlushIntervalMillis = DEFAULT_OUTBOX_FLUSH_INTERVAL_MILLIS;
+
+  @Min(0)
+  private int streamingPayloadThreshold = DEFAULT_STREAMING_PAYLOAD_THRESHOLD;
+
+  private boolean historyEnabled = true;
+
+  @Min(10)
+  @Max(100000)
+  private int historySize = DEFAULT_HISTORY_SIZE;
+
+  @Min(1)
+  @Max(1000)
+  private int replayRatePerSecond = DEFAULT_REPLAY_RATE_PER_SECOND;
+
+  public DispatchConfiguration(int workerThreads, int queueCapacity) {
+    this.workerThreads = workerThreads;
+    this.queueCapacity = queueCapacity;
+  }
+}
@@ -37,6 +37,15 @@ public interface DtoAdapterWebHookSpecification<T extends SingleWebHookConfigura
 
   WebHookExecutor createExecutor(T webHook, Repository repository, PostReceiveRepositoryHookEvent event);
 
+  /**
+   * Creates the executor for a webhook with the changesets of the push, which are shared with all other webhooks
+   * triggered by the same event. Specifications which need the changesets should override this method, so that
+   * the changesets are read only once per push.
+   */
+  default WebHookExecutor createExecutor(T webHook, Repository repository, PostReceiveRepositoryHookEvent event, ChangesetSnapshot changesets) {
+    return createExecutor(webHook, repository, event);
+  }
+
   D mapToDto(T configuration);
 
   T mapFromDto(D dto);
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook;
+
+/**
+ * Defines on which kind of thread single webhook deliveries are sent.
+ */
+public enum ExecutionMode {
+
+  /**
+   * Deliveries are sent by a pool of platform threads. The number of threads is limited by
+   * {@link DispatchConfiguration#getMaxConcurrentDeliveries()}, idle threads are stopped after a minute.
+   */
+  PLATFORM_THREADS,
+
+  /**
+   * Each delivery is sent on its own virtual thread. The number of concurrent deliveries is limited by
+   * {@link DispatchConfiguration#getMaxConcurrentDeliveries()}. Requires a Java runtime with virtual thread support,
+   * otherwise {@link #PLATFORM_THREADS} is used.
+   */
+  VIRTUAL_THREADS
+}
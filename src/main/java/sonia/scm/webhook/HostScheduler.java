@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Schedules webhook deliveries per target host. Each host may only have a limited number of deliveries in flight
+ * (see {@link DispatchConfiguration#getMaxConcurrentDeliveriesPerHost()}); further deliveries for this host are queued.
+ * Queued deliveries are picked round-robin across all hosts, so that a slow host cannot starve the others. Started
+ * deliveries are handed over to the {@link DeliveryExecutor}, so the thread submitting a delivery or releasing a slot
+ * never sends requests itself.
+ */
+@Singleton
+class HostScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HostScheduler.class);
+
+  private final WebHookContext context;
+  private final DeliveryExecutor deliveryExecutor;
+
+  private final Map<String, HostQueue> hosts = new HashMap<>();
+  private final Deque<String> hostsWithPendingDeliveries = new ArrayDeque<>();
+  private int pendingDeliveries;
+
+  @Inject
+  HostScheduler(WebHookContext context, DeliveryExecutor deliveryExecutor) {
+    this.context = context;
+    this.deliveryExecutor = deliveryExecutor;
+  }
+
+  void submit(String host, Runnable delivery) {
+    submit(host, delivery, () -> {});
+  }
+
+  /**
+   * Submits a delivery for the host.
+   *
+   * @param rejected called instead of the delivery, if the delivery could not be started
+   */
+  void submit(String host, Runnable delivery, Runnable rejected) {
+    enqueue(host, new Pending(delivery, rejected));
+    drain();
+  }
+
+  private synchronized void enqueue(String host, Pending delivery) {
+    HostQueue queue = hosts.computeIfAbsent(host, h -> new HostQueue());
+    if (queue.pending.isEmpty()) {
+      hostsWithPendingDeliveries.addLast(host);
+    }
+    queue.pending.addLast(delivery);
+    pendingDeliveries++;
+  }
+
+  /**
+   * Returns the number of deliveries waiting for a free slot of their host.
+   */
+  synchronized int getPendingDeliveries() {
+    return pendingDeliveries;
+  }
+
+  private void drain() {
+    Started next;
+    while ((next = pollNext()) != null) {
+      try {
+        deliveryExecutor.execute(next.run);
+      } catch (RuntimeException e) {
+        LOG.error("could not start webhook delivery for host {}", next.host, e);
+        if (!next.running) {
+          // the delivery has not been started, so its slot is not released by the delivery itself
+          release(next.host);
+          next.delivery.rejected().run();
+        }
+      }
+    }
+  }
+
+  private synchronized Started pollNext() {
+    int limit = context.getDispatchConfiguration().getMaxConcurrentDeliveriesPerHost();
+    int candidates = hostsWithPendingDeliveries.size();
+    for (int i = 0; i < candidates; ++i) {
+      String host = hostsWithPendingDeliveries.pollFirst();
+      HostQueue queue = hosts.get(host);
+      if (queue.active < limit) {
+        Pending delivery = queue.pending.pollFirst();
+        pendingDeliveries--;
+        queue.active++;
+        if (!queue.pending.isEmpty()) {
+          hostsWithPendingDeliveries.addLast(host);
+        }
+        return new Started(host, delivery);
+      }
+      hostsWithPendingDeliveries.addLast(host);
+    }
+    return null;
+  }
+
+  private synchronized void release(String host) {
+    HostQueue queue = hosts.get(host);
+    queue.active--;
+    if (queue.active == 0 && queue.pending.isEmpty()) {
+      hosts.remove(host);
+    }
+  }
+
+  private record Pending(Runnable delivery, Runnable rejected) {
+  }
+
+  private class Started {
+    private final String host;
+    private final Pending delivery;
+    private final Runnable run;
+    private volatile boolean running;
+
+    private Started(String host, Pending delivery) {
+      this.host = host;
+      this.delivery = delivery;
+      this.run = () -> {
+        running = true;
+        try {
+          delivery.delivery().run();
+        } finally {
+          release(host);
+          drain();
+        }
+      };
+    }
+  }
+
+  private static class HostQueue {
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private int active;
+  }
+}
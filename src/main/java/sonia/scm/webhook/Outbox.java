@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.SCMContextProvider;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of webhook requests, which makes deliveries survive a restart of the server.
+ * <p>
+ * Every request is journaled before it is sent and marked as done, once the receiver has answered with a 2xx
+ * status code. Records are written to the file immediately, but synced to the disk in batches by a background thread
+ * (see {@link DispatchConfiguration#getOutboxFlushIntervalMillis()}). On startup, all entries which have not been
+ * marked as done are recovered and delivered again.
+ * <p>
+ * The file consists of records of the form {@code length | crc32 | record}. A truncated or corrupted record at the
+ * end of the journal (e.g. after a crash while writing) is ignored. Whenever the journal grows too large, it is
+ * compacted to the entries which are still pending.
+ */
+@Singleton
+class Outbox implements Closeable {
+
+  static final long NO_ENTRY = -1;
+
+  private static final Logger LOG = LoggerFactory.getLogger(Outbox.class);
+
+  private static final String JOURNAL_NAME = "journal";
+  private static final String COMPACTION_NAME = "journal.compact";
+  private static final long COMPACTION_THRESHOLD = 64L * 1024 * 1024;
+  private static final int MAX_RECORD_LENGTH = Integer.MAX_VALUE - 8;
+
+  private static final byte APPENDED = 1;
+  private static final byte DONE = 2;
+
+  private final WebHookContext context;
+  private final Path directory;
+  private final Clock clock;
+
+  private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+  private FileChannel channel;
+  private ScheduledExecutorService flusher;
+  private List<OutboxEntry> recovered = List.of();
+  private long nextId;
+  private long compactedSize;
+  private boolean dirty;
+  private boolean closed;
+
+  @Inject
+  Outbox(WebHookContext context, SCMContextProvider contextProvider) {
+    this(context, contextProvider.resolve(Paths.get("webhook", "outbox")), Clock.systemUTC());
+  }
+
+  Outbox(WebHookContext context, Path directory, Clock clock) {
+    this.context = context;
+    this.directory = directory;
+    this.clock = clock;
+  }
+
+  boolean isEnabled() {
+    return context.getDispatchConfiguration().isOutboxEnabled();
+  }
+
+  /**
+   * Journals a request and returns the id of the new entry or {@link #NO_ENTRY}, if the request could not be
+   * journaled.
+   */
+  long append(String method, String url, Multimap<String, String> headers, byte[] body, RetryPolicy retryPolicy, RateLimit rateLimit) {
+    try {
+      synchronized (this) {
+        ensureOpen();
+        long id = nextId++;
+        OutboxEntry entry = new OutboxEntry(id, clock.millis(), method, url, ArrayListMultimap.create(headers), body, retryPolicy, rateLimit);
+        write(encode(entry));
+        pending.add(id);
+        // compact only if it really shrinks the journal, even if most of the entries are still pending
+        if (channel.size() > Math.max(COMPACTION_THRESHOLD, 2 * compactedSize)) {
+          compact();
+        }
+        return id;
+      }
+    } catch (IOException e) {
+      LOG.warn("could not journal webhook for {}, it will not be delivered again after a restart", url, e);
+      return NO_ENTRY;
+    }
+  }
+
+  void markDone(long id) {
+    if (id == NO_ENTRY || !pending.remove(id)) {
+      return;
+    }
+    try {
+      synchronized (this) {
+        ensureOpen();
+        write(encodeDone(id));
+      }
+    } catch (IOException e) {
+      LOG.warn("could not mark webhook {} as done, it may be delivered again after a restart", id, e);
+    }
+  }
+
+  /**
+   * Returns the entries, which were still pending when the server was stopped. The entries are returned only once.
+   */
+  synchronized List<OutboxEntry> recover() throws IOException {
+    ensureOpen();
+    List<OutboxEntry> entries = recovered;
+    recovered = List.of();
+    return entries;
+  }
+
+  private void write(byte[] record) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(record);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    dirty = true;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("outbox is already closed");
+    }
+    if (channel != null) {
+      return;
+    }
+    Files.createDirectories(directory);
+    Map<Long, OutboxEntry> entries = read(journal());
+    recovered = new ArrayList<>(entries.values());
+    for (OutboxEntry entry : recovered) {
+      pending.add(entry.getId());
+      nextId = Math.max(nextId, entry.getId() + 1);
+    }
+    rewrite(recovered);
+    channel = openChannel();
+    compactedSize = channel.size();
+    flusher = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("WebHookOutboxFlusher").setDaemon(true).build()
+    );
+    scheduleFlush();
+    if (!recovered.isEmpty()) {
+      LOG.info("found {} webhooks in outbox, which have not been delivered yet", recovered.size());
+    }
+  }
+
+  private void compact() throws IOException {
+    channel.force(false);
+    channel.close();
+    try {
+      Map<Long, OutboxEntry> entries = read(journal());
+      entries.keySet().retainAll(pending);
+      rewrite(entries.values());
+      LOG.debug("compacted webhook outbox to {} pending entries", entries.size());
+    } finally {
+      channel = openChannel();
+      compactedSize = channel.size();
+    }
+  }
+
+  private void rewrite(Collection<OutboxEntry> entries) throws IOException {
+    Path compaction = directory.resolve(COMPACTION_NAME);
+    try (FileChannel output = FileChannel.open(compaction, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (OutboxEntry entry : entries) {
+        ByteBuffer buffer = ByteBuffer.wrap(encode(entry));
+        while (buffer.hasRemaining()) {
+          output.write(buffer);
+        }
+      }
+      output.force(false);
+    }
+    Files.move(compaction, journal(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private FileChannel openChannel() throws IOException {
+    return FileChannel.open(journal(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private Path journal() {
+    return directory.resolve(JOURNAL_NAME);
+  }
+
+  private void scheduleFlush() {
+    flusher.schedule(this::flush, context.getDispatchConfiguration().getOutboxFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private void flush() {
+    FileChannel current;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      current = dirty ? channel : null;
+      dirty = false;
+      scheduleFlush();
+    }
+    if (current != null) {
+      try {
+        // outside the lock, so that appending is not blocked by the sync
+        current.force(false);
+      } catch (IOException e) {
+        // the channel may have been replaced by a compaction, which syncs on its own
+        LOG.debug("could not sync webhook outbox", e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (flusher != null) {
+      flusher.shutdown();
+    }
+    if (channel != null) {
+      channel.force(false);
+      channel.close();
+    }
+  }
+
+  /**
+   * Reads all entries of the journal, which have not been marked as done.
+   */
+  static Map<Long, OutboxEntry> read(Path journal) throws IOException {
+    Map<Long, OutboxEntry> entries = new LinkedHashMap<>();
+    if (!Files.exists(journal)) {
+      return entries;
+    }
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+      byte[] record;
+      while ((record = readRecord(input)) != null) {
+        DataInputStream recordInput = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = recordInput.readByte();
+        if (type == APPENDED) {
+          OutboxEntry entry = decode(recordInput);
+          entries.put(entry.getId(), entry);
+        } else if (type == DONE) {
+          entries.remove(recordInput.readLong());
+        } else {
+          LOG.warn("found unknown record type {} in webhook outbox, ignoring the rest of the journal", type);
+          break;
+        }
+      }
+    }
+    return entries;
+  }
+
+  private static byte[] readRecord(DataInputStream input) throws IOException {
+    try {
+      int length = input.readInt();
+      int checksum = input.readInt();
+      if (length < 1 || length > MAX_RECORD_LENGTH) {
+        LOG.warn("found invalid record in webhook outbox, ignoring the rest of the journal");
+        return null;
+      }
+      byte[] record = new byte[length];
+      input.readFully(record);
+      if (checksum != checksum(record)) {
+        LOG.warn("found corrupted record in webhook outbox, ignoring the rest of the journal");
+        return null;
+      }
+      return record;
+    } catch (EOFException e) {
+      // end of journal or a record, which has not been written completely
+      return null;
+    }
+  }
+
+  /**
+   * Encodes the entry as a framed record, which can be read with {@link #read(Path)}.
+   */
+  static byte[] encode(OutboxEntry entry) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(buffer);
+    output.writeByte(APPENDED);
+    output.writeLong(entry.getId());
+    output.writeLong(entry.getTimestamp());
+    writeString(output, entry.getMethod());
+    writeString(output, entry.getUrl());
+    output.writeInt(entry.getHeaders().size());
+    for (Map.Entry<String, String> header : entry.getHeaders().entries()) {
+      writeString(output, header.getKey());
+      writeString(output, header.getValue());
+    }
+    byte[] body = entry.getBody();
+    if (body == null) {
+      output.writeInt(-1);
+    } else {
+      output.writeInt(body.length);
+      output.write(body);
+    }
+    writeRetryPolicy(output, entry.getRetryPolicy());
+    writeRateLimit(output, entry.getRateLimit());
+    return frame(buffer.toByteArray());
+  }
+
+  private static byte[] encodeDone(long id) {
+    return frame(ByteBuffer.allocate(9).put(DONE).putLong(id).array());
+  }
+
+  private static OutboxEntry decode(DataInputStream input) throws IOException {
+    long id = input.readLong();
+    long timestamp = input.readLong();
+    String method = readString(input);
+    String url = readString(input);
+    int headerCount = input.readInt();
+    ListMultimap<String, String> headers = ArrayListMultimap.create();
+    for (int i = 0; i < headerCount; i++) {
+      headers.put(readString(input), readString(input));
+    }
+    byte[] body = null;
+    int bodyLength = input.readInt();
+    if (bodyLength >= 0) {
+      body = new byte[bodyLength];
+      input.readFully(body);
+    }
+    RetryPolicy retryPolicy = readRetryPolicy(input);
+    return new OutboxEntry(id, timestamp, method, url, headers, body, retryPolicy, readRateLimit(input));
+  }
+
+  private static void writeRetryPolicy(DataOutputStream output, RetryPolicy retryPolicy) throws IOException {
+    output.writeBoolean(retryPolicy != null);
+    if (retryPolicy != null) {
+      output.writeInt(retryPolicy.getMaxAttempts());
+      output.writeLong(retryPolicy.getBaseDelayMillis());
+      output.writeLong(retryPolicy.getMaxDelayMillis());
+      output.writeInt(retryPolicy.getJitterPercent());
+      output.writeInt(retryPolicy.getRetryOnStatusCodes().size());
+      for (int statusCode : retryPolicy.getRetryOnStatusCodes()) {
+        output.writeInt(statusCode);
+      }
+    }
+  }
+
+  private static RetryPolicy readRetryPolicy(DataInputStream input) throws IOException {
+    if (!input.readBoolean()) {
+      return null;
+    }
+    int maxAttempts = input.readInt();
+    long baseDelayMillis = input.readLong();
+    long maxDelayMillis = input.readLong();
+    int jitterPercent = input.readInt();
+    int statusCodeCount = input.readInt();
+    List<Integer> statusCodes = new ArrayList<>(statusCodeCount);
+    for (int i = 0; i < statusCodeCount; i++) {
+      statusCodes.add(input.readInt());
+    }
+    return new RetryPolicy(maxAttempts, baseDelayMillis, maxDelayMillis, jitterPercent, statusCodes);
+  }
+
+  private static void writeRateLimit(DataOutputStream output, RateLimit rateLimit) throws IOException {
+    output.writeBoolean(rateLimit != null);
+    if (rateLimit != null) {
+      output.writeDouble(rateLimit.getRequestsPerSecond());
+      output.writeInt(rateLimit.getBurst());
+    }
+  }
+
+  private static RateLimit readRateLimit(DataInputStream input) throws IOException {
+    // records written before rate limits were journaled end after the retry policy
+    if (input.available() == 0 || !input.readBoolean()) {
+      return null;
+    }
+    return new RateLimit(input.readDouble(), input.readInt());
+  }
+
+  private static byte[] frame(byte[] record) {
+    return ByteBuffer.allocate(8 + record.length)
+      .putInt(record.length)
+      .putInt(checksum(record))
+      .put(record)
+      .array();
+  }
+
+  private static int checksum(byte[] record) {
+    CRC32 crc = new CRC32();
+    crc.update(record);
+    return (int) crc.getValue();
+  }
+
+  private static void writeString(DataOutputStream output, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(DataInputStream input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
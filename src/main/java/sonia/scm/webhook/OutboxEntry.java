@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.collect.ListMultimap;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A webhook request journaled in the {@link Outbox}, which has not yet been delivered successfully.
+ */
+@Getter
+@AllArgsConstructor
+class OutboxEntry {
+  private final long id;
+  private final long timestamp;
+  private final String method;
+  private final String url;
+  private final ListMultimap<String, String> headers;
+  private final byte[] body;
+  private final RetryPolicy retryPolicy;
+  private final RateLimit rateLimit;
+
+  OutboxEntry(long id, long timestamp, String method, String url, ListMultimap<String, String> headers, byte[] body, RetryPolicy retryPolicy) {
+    this(id, timestamp, method, url, headers, body, retryPolicy, null);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.inject.Inject;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.plugin.Extension;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Delivers the webhooks from the {@link Outbox}, which have not been delivered before the last shutdown.
+ * <p>
+ * The journal of the outbox is recovered during the startup, but the recovered webhooks are handed over to the
+ * {@link WebHookDispatcher}, so that a large outbox does not delay the startup.
+ */
+@Extension
+public class OutboxRecovery implements ServletContextListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OutboxRecovery.class);
+
+  private final Outbox outbox;
+  private final WebHookSender sender;
+  private final WebHookDispatcher dispatcher;
+
+  @Inject
+  OutboxRecovery(Outbox outbox, WebHookSender sender, WebHookDispatcher dispatcher) {
+    this.outbox = outbox;
+    this.sender = sender;
+    this.dispatcher = dispatcher;
+  }
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    try {
+      List<OutboxEntry> entries = outbox.recover();
+      if (!entries.isEmpty()) {
+        LOG.info("replaying {} undelivered webhooks from outbox", entries.size());
+        dispatcher.dispatch(() -> entries.forEach(sender::replay));
+      }
+    } catch (IOException e) {
+      LOG.error("could not recover webhooks from outbox", e);
+    }
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    try {
+      outbox.close();
+    } catch (IOException e) {
+      LOG.warn("could not close webhook outbox", e);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Repository;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Merges the pushes to a repository, which trigger the same simple webhook within its
+ * {@link SimpleWebHook#getCoalesceMillis() coalescing window}, into a single delivery. The window starts with the
+ * first push and is not extended by further pushes, so that a repository, which receives pushes all the time, still
+ * triggers the webhook once per window. The merged delivery is run by the {@link WebHookDispatcher} like the executor
+ * of a single push.
+ */
+@Singleton
+class PushCoalescer implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PushCoalescer.class);
+
+  private final WebHookDispatcher dispatcher;
+  private final ScheduledExecutorService executor;
+  private final Map<Key, Batch> batches = new ConcurrentHashMap<>();
+
+  @Inject
+  PushCoalescer(WebHookDispatcher dispatcher) {
+    this(dispatcher, new ScheduledThreadPoolExecutor(
+      1, new ThreadFactoryBuilder().setNameFormat("WebHookPushCoalescer").setDaemon(true).build()
+    ));
+  }
+
+  PushCoalescer(WebHookDispatcher dispatcher, ScheduledExecutorService executor) {
+    this.dispatcher = dispatcher;
+    this.executor = executor;
+  }
+
+  /**
+   * Adds the changesets of a push to the pending delivery of the webhook. The delivery of the latest push is called
+   * with the changesets of all merged pushes, the latest changeset first, once the window is over.
+   *
+   * @param changesets changesets of the push, the latest first, or {@code null} if they are not known
+   * @param delivery   sends the webhook for the merged changesets
+   */
+  void coalesce(Repository repository, SimpleWebHook webHook, List<Changeset> changesets, Consumer<List<Changeset>> delivery) {
+    Key key = new Key(repository.getId(), CurrentWebHook.id(), webHook.getUrlPattern());
+    batches.compute(key, (k, pending) -> {
+      Batch batch = pending;
+      if (batch == null) {
+        LOG.debug("delaying webhook {} of repository {} for {}ms to merge further pushes", key.webHookId(), repository, webHook.getCoalesceMillis());
+        executor.schedule(() -> flush(key), webHook.getCoalesceMillis(), TimeUnit.MILLISECONDS);
+        batch = new Batch();
+      }
+      batch.add(changesets, delivery);
+      return batch;
+    });
+  }
+
+  private void flush(Key key) {
+    Batch batch = batches.remove(key);
+    if (batch != null) {
+      LOG.debug("sending webhook {} of repository {} for {} merged pushes", key.webHookId(), key.repositoryId(), batch.pushes);
+      dispatcher.dispatch(batch.executor);
+    }
+  }
+
+  /**
+   * Sends the pending deliveries right away, so that they are journaled in the {@link Outbox} before the shutdown.
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    for (Key key : batches.keySet()) {
+      Batch batch = batches.remove(key);
+      if (batch != null) {
+        try {
+          batch.executor.run();
+        } catch (RuntimeException e) {
+          LOG.error("failed to send merged pushes of webhook {} in repository {}", key.webHookId(), key.repositoryId(), e);
+        }
+      }
+    }
+  }
+
+  private record Key(String repositoryId, String webHookId, String urlPattern) {
+  }
+
+  private static class Batch {
+
+    private final Deque<List<Changeset>> changesets = new ArrayDeque<>();
+    private int pushes;
+    private WebHookExecutor executor;
+
+    private void add(List<Changeset> pushed, Consumer<List<Changeset>> delivery) {
+      pushes++;
+      if (pushed != null) {
+        changesets.addFirst(pushed);
+      }
+      // bound on the thread of the push, so that the delivery is attributed to its webhook
+      executor = CurrentWebHook.rebind(() -> delivery.accept(merge()));
+    }
+
+    private List<Changeset> merge() {
+      Map<String, Changeset> merged = new LinkedHashMap<>();
+      for (List<Changeset> push : changesets) {
+        for (Changeset changeset : push) {
+          merged.putIfAbsent(changeset.getId(), changeset);
+        }
+      }
+      return merged.isEmpty() ? null : new ArrayList<>(merged.values());
+    }
+  }
+}
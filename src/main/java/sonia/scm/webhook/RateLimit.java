@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Limits the rate at which the requests of a webhook are sent. Up to {@link #getBurst()} requests are sent at once,
+ * further requests are queued and sent at {@link #getRequestsPerSecond()}. Requests are never dropped because of the
+ * limit.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@ToString
+@EqualsAndHashCode
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class RateLimit {
+
+  static final double DEFAULT_REQUESTS_PER_SECOND = 1;
+  static final int DEFAULT_BURST = 1;
+
+  @DecimalMin(value = "0", inclusive = false)
+  @DecimalMax("10000")
+  private double requestsPerSecond = DEFAULT_REQUESTS_PER_SECOND;
+
+  @Min(1)
+  @Max(10000)
+  private int burst = DEFAULT_BURST;
+}
@@ -51,6 +51,7 @@ public class RepositoryLinkEnricher implements HalEnricher {
     if (WebHookContext.isReadPermitted(repository)) {
       WebHookConfigurationResourceLinks resourceLinks = new WebHookConfigurationResourceLinks(scmPathInfoStoreProvider.get().get());
       appender.appendLink("webHookConfig", resourceLinks.repositoryConfigurations.self(repository.getNamespace(), repository.getName()));
+      appender.appendLink("webHookDeliveries", resourceLinks.deliveries.self(repository.getNamespace(), repository.getName()));
     }
     if (WebHookContext.isWritePermitted(repository)) {
       appender.appendEmbedded("supportedWebHookTypes", new SupportedWebhookTypesDto(availableSpecifications.getTypesFor(repository)));
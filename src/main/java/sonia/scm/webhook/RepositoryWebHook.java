@@ -25,8 +25,6 @@ import sonia.scm.plugin.Extension;
 import sonia.scm.repository.PostReceiveRepositoryHookEvent;
 import sonia.scm.repository.Repository;
 
-import java.util.Set;
-
 @Extension
 @EagerSingleton
 public class RepositoryWebHook {
@@ -35,12 +33,15 @@ public class RepositoryWebHook {
 
   private final WebHookContext context;
 
-  private final Set<DtoAdapterWebHookSpecification> specifications;
+  private final AvailableWebHookSpecifications specifications;
+
+  private final WebHookDispatcher dispatcher;
 
   @Inject
-  public RepositoryWebHook(WebHookContext context, Set<DtoAdapterWebHookSpecification> specifications) {
+  public RepositoryWebHook(WebHookContext context, AvailableWebHookSpecifications specifications, WebHookDispatcher dispatcher) {
     this.context = context;
     this.specifications = specifications;
+    this.dispatcher = dispatcher;
   }
 
   @Subscribe
@@ -48,6 +49,10 @@ public class RepositoryWebHook {
     Repository repository = event.getRepository();
 
     if (repository != null) {
+      if (!context.isWebHookAvailable(repository)) {
+        logger.debug("no webhook defined for repository {}", repository.getName());
+        return;
+      }
       WebHookConfiguration configuration = context.getAllConfigurations(repository);
       if (configuration.isWebHookAvailable()) {
 
@@ -68,9 +73,10 @@ public class RepositoryWebHook {
       logger.debug("execute webhooks for repository {}", repository.getName());
     }
 
+    ChangesetSnapshot changesets = new ChangesetSnapshot(event);
     for (WebHook webHook : configuration.getWebhooks()) {
       try {
-        runWebhook(repository, event, webHook);
+        runWebhook(repository, event, changesets, webHook);
       } catch (Exception e) {
         logger.error("error while running webhook of type {} in repository {}", webHook.name, repository, e);
       }
@@ -78,19 +84,17 @@ public class RepositoryWebHook {
   }
 
   @SuppressWarnings({"unchecked"})
-  private void runWebhook(Repository repository, PostReceiveRepositoryHookEvent event, WebHook webHook) {
+  private void runWebhook(Repository repository, PostReceiveRepositoryHookEvent event, ChangesetSnapshot changesets, WebHook webHook) {
     if (webHook.getConfiguration() == null) {
       logger.warn("skipping webhook with unknown configuration type {} for repository {}", webHook.getName(), repository);
       return;
     }
-    specifications
-      .stream()
-      .filter(provider -> provider.handles(webHook.getConfiguration().getClass()))
-      .findFirst()
+    WebHookExecutor executor = specifications
+      .specificationFor(webHook.getConfiguration().getClass())
       .filter(specification -> specification.supportsRepository(repository))
       .orElseGet(NoSpecificationFound::new)
-      .createExecutor(webHook.getConfiguration(), repository, event)
-      .run();
+      .createExecutor(webHook.getConfiguration(), repository, event, changesets);
+    dispatcher.dispatch(CurrentWebHook.bind(webHook, repository, executor));
   }
 
   private static class NoSpecificationFound implements WebHookSpecification<SingleWebHookConfiguration> {
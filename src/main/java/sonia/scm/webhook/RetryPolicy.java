@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Defines whether and when a failed webhook request is sent again. The delay before the next attempt grows
+ * exponentially with every failed attempt, starting with {@link #getBaseDelayMillis()} and limited by
+ * {@link #getMaxDelayMillis()}. A random part of up to {@link #getJitterPercent()} percent is subtracted from each
+ * delay, so that retries for many failed requests do not hit the receiver at the same time.
+ * <p>
+ * Connection errors are always retried, responses only if their status code is listed in
+ * {@link #getRetryOnStatusCodes()}.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@ToString
+@EqualsAndHashCode
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class RetryPolicy {
+
+  static final int DEFAULT_MAX_ATTEMPTS = 5;
+  static final long DEFAULT_BASE_DELAY_MILLIS = 1000;
+  static final long DEFAULT_MAX_DELAY_MILLIS = 300000;
+  static final int DEFAULT_JITTER_PERCENT = 50;
+
+  @Min(1)
+  @Max(100)
+  private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+  @Min(1)
+  @Max(86400000)
+  private long baseDelayMillis = DEFAULT_BASE_DELAY_MILLIS;
+
+  @Min(1)
+  @Max(86400000)
+  private long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+
+  @Min(0)
+  @Max(100)
+  private int jitterPercent = DEFAULT_JITTER_PERCENT;
+
+  @NotNull
+  private List<Integer> retryOnStatusCodes = new ArrayList<>(List.of(408, 429, 500, 502, 503, 504));
+
+  /**
+   * Returns {@code true}, if a request with the given status code should be sent again. Negative status codes stand
+   * for requests without a response.
+   */
+  boolean retriesStatusCode(int statusCode) {
+    return statusCode < 0 || retryOnStatusCodes.contains(statusCode);
+  }
+
+  /**
+   * Computes the delay after the given (one based) attempt has failed.
+   *
+   * @param random random value between 0 (inclusive) and 1 (exclusive) to compute the jitter
+   */
+  long delayAfterAttempt(int attempt, double random) {
+    // limit the shift, so that the delay cannot overflow
+    int exponent = Math.min(Math.max(attempt - 1, 0), 30);
+    long delay = Math.min(maxDelayMillis, baseDelayMillis << exponent);
+    long jitter = (long) (delay * jitterPercent / 100d * random);
+    return delay - jitter;
+  }
+}
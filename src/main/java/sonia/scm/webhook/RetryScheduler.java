@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs retries of failed webhook requests after their backoff delay and replays of recorded webhooks after the delay of
+ * their rate limit (see {@link WebHookReplayer}). Waiting retries are only entries in the queue
+ * of a single timer thread, so that even a large number of them does not block any threads. The timer thread never
+ * runs a retry itself, it only hands due retries over to the {@link WebHookDispatcher}. This way a retry, which
+ * takes long (e.g. because it renders a large request), does not hold up the other retries.
+ */
+@Singleton
+class RetryScheduler implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RetryScheduler.class);
+
+  private final WebHookDispatcher dispatcher;
+  private final ScheduledThreadPoolExecutor executor;
+
+  @Inject
+  RetryScheduler(WebHookDispatcher dispatcher) {
+    this.dispatcher = dispatcher;
+    executor = new ScheduledThreadPoolExecutor(
+      1, new ThreadFactoryBuilder().setNameFormat("WebHookRetryScheduler").setDaemon(true).build()
+    );
+    executor.setRemoveOnCancelPolicy(true);
+  }
+
+  void schedule(Runnable retry, long delayMillis) {
+    executor.schedule(() -> handOver(retry), delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void handOver(Runnable retry) {
+    try {
+      // failures of the retry itself are logged by the dispatcher
+      dispatcher.dispatch(retry::run);
+    } catch (RuntimeException e) {
+      LOG.error("failed to submit webhook retry", e);
+    }
+  }
+
+  int getPendingRetries() {
+    return executor.getQueue().size();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
@@ -16,6 +16,9 @@
 
 package sonia.scm.webhook;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -43,4 +46,29 @@ public class SimpleWebHook implements SingleWebHookConfiguration {
   private boolean sendCommitData;
   private HttpMethod method = HttpMethod.AUTO;
   private List<WebhookHeader> headers = new ArrayList<>();
+  @Valid
+  private RetryPolicy retryPolicy;
+  @Valid
+  private RateLimit rateLimit;
+  @Min(0)
+  @Max(60000)
+  private long coalesceMillis;
+  @Valid
+  private CommitDeliveryPolicy commitDeliveryPolicy;
+
+  public SimpleWebHook(String urlPattern, boolean executeOnEveryCommit, boolean sendCommitData, HttpMethod method, List<WebhookHeader> headers) {
+    this(urlPattern, executeOnEveryCommit, sendCommitData, method, headers, null);
+  }
+
+  public SimpleWebHook(String urlPattern, boolean executeOnEveryCommit, boolean sendCommitData, HttpMethod method, List<WebhookHeader> headers, RetryPolicy retryPolicy) {
+    this(urlPattern, executeOnEveryCommit, sendCommitData, method, headers, retryPolicy, null);
+  }
+
+  public SimpleWebHook(String urlPattern, boolean executeOnEveryCommit, boolean sendCommitData, HttpMethod method, List<WebhookHeader> headers, RetryPolicy retryPolicy, RateLimit rateLimit) {
+    this(urlPattern, executeOnEveryCommit, sendCommitData, method, headers, retryPolicy, rateLimit, 0);
+  }
+
+  public SimpleWebHook(String urlPattern, boolean executeOnEveryCommit, boolean sendCommitData, HttpMethod method, List<WebhookHeader> headers, RetryPolicy retryPolicy, RateLimit rateLimit, long coalesceMillis) {
+    this(urlPattern, executeOnEveryCommit, sendCommitData, method, headers, retryPolicy, rateLimit, coalesceMillis, null);
+  }
 }
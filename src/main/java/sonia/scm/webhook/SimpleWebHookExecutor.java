@@ -16,40 +16,56 @@
 
 package sonia.scm.webhook;
 
-import com.cloudogu.scm.el.ElParser;
-import com.cloudogu.scm.el.Expression;
-import com.cloudogu.scm.el.env.ImmutableEncodedChangeset;
-import com.cloudogu.scm.el.env.ImmutableEncodedRepository;
+import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.Repository;
 import sonia.scm.webhook.execution.WebHookExecution;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 class SimpleWebHookExecutor implements WebHookExecutor {
 
   private static final Logger LOG = LoggerFactory.getLogger(SimpleWebHookExecutor.class);
 
-  private final Expression expression;
+  private final UrlTemplate urlTemplate;
   private final SimpleWebHook webHook;
   private final Repository repository;
-  private final Iterable<Changeset> changesets;
+  private final List<Changeset> changesets;
+  private final Supplier<Changesets> payload;
   private final WebHookSender sender;
+  private final PushCoalescer coalescer;
+  private final Executor commitExecutor;
 
   SimpleWebHookExecutor(WebHookSender sender,
-                        ElParser elParser,
+                        UrlTemplates urlTemplates,
                         SimpleWebHook webHook,
                         Repository repository,
-                        Iterable<Changeset> changesets) {
+                        List<Changeset> changesets) {
+    this(sender, urlTemplates, webHook, repository, changesets, () -> new Changesets(changesets), null, Runnable::run);
+  }
+
+  SimpleWebHookExecutor(WebHookSender sender,
+                        UrlTemplates urlTemplates,
+                        SimpleWebHook webHook,
+                        Repository repository,
+                        List<Changeset> changesets,
+                        Supplier<Changesets> payload,
+                        PushCoalescer coalescer,
+                        Executor commitExecutor) {
     this.sender = sender;
-    this.expression = elParser.parse(webHook.getUrlPattern());
+    this.urlTemplate = urlTemplates.compile(webHook.getUrlPattern());
     this.webHook = webHook;
     this.repository = repository;
     this.changesets = changesets;
+    this.payload = payload;
+    this.coalescer = coalescer;
+    this.commitExecutor = commitExecutor;
   }
 
   @Override
@@ -58,83 +74,100 @@ class SimpleWebHookExecutor implements WebHookExecutor {
 
     if (webHook.isExecuteOnEveryCommit()) {
       handleEachCommit();
+    } else if (coalescer != null && webHook.getCoalesceMillis() > 0) {
+      coalescer.coalesce(repository, webHook, changesets, this::handleMergedCommits);
     } else {
-      handleAllCommitsAtOnce();
+      handleAllCommitsAtOnce(changesets, payload);
     }
   }
 
-  private void handleAllCommitsAtOnce() {
-    String url = createUrl(repository, changesets);
+  private void handleMergedCommits(List<Changeset> merged) {
+    handleAllCommitsAtOnce(merged, () -> new Changesets(merged));
+  }
+
+  private CompletableFuture<Void> handleAllCommitsAtOnce(List<Changeset> changesets, Supplier<Changesets> payload) {
+    String url = urlTemplate.render(repository, changesets);
 
     if (webHook.isSendCommitData()) {
-      execute(webHook, url, new Changesets(changesets));
+      return execute(webHook, url, payload.get());
     } else {
-      execute(webHook, url, null);
+      return execute(webHook, url, null);
     }
   }
 
   private void handleEachCommit() {
-    if (changesets != null) {
+    if (changesets == null) {
+      return;
+    }
+    CommitDeliveryPolicy policy = webHook.getCommitDeliveryPolicy();
+    if (policy == null) {
       for (Changeset changeset : changesets) {
-        String url = createUrl(repository, changeset);
-        if (webHook.isSendCommitData()) {
-          execute(webHook, url, changeset);
-        } else {
-          execute(webHook, url, null);
-        }
+        handleCommit(changeset);
       }
+      return;
     }
-  }
-
-  private String createUrl(Repository repository, Changeset changeset) {
-    Map<String, Object> env = createBaseEnvironment(repository);
-
-    if (changeset != null) {
-      ImmutableEncodedChangeset iec = new ImmutableEncodedChangeset(changeset);
-
-      env.put("changeset", iec);
-      env.put("commit", iec);
+    boolean ordered = policy.isOrderedPerBranch();
+    // the changesets of a push are ordered the latest first
+    List<Changeset> commits = ordered ? Lists.reverse(changesets) : changesets;
+    int individual = Math.min(commits.size(), policy.getMaxDeliveries());
+
+    // the next request is rendered by the commit executor, not by the thread which has delivered the previous one
+    CommitFanOut fanOut = new CommitFanOut(policy.getParallelism(), commitExecutor);
+    List<CompletableFuture<Void>> delivered = new ArrayList<>(individual);
+    for (Changeset changeset : commits.subList(0, individual)) {
+      String lane = ordered ? branchOf(changeset) : null;
+      delivered.add(fanOut.submit(lane, CurrentWebHook.rebindTask(() -> handleCommit(changeset))));
     }
 
-    return expression.evaluate(env);
-  }
-
-  private String createUrl(Repository repository,
-                           Iterable<Changeset> changesets) {
-    Map<String, Object> env = createBaseEnvironment(repository);
-    if (changesets != null) {
-      Iterator<Changeset> it = changesets.iterator();
-      Changeset changeset = it.next();
-
-      env.put("last", new ImmutableEncodedChangeset(changeset));
-
-      while (it.hasNext()) {
-        changeset = it.next();
+    if (individual < commits.size()) {
+      List<Changeset> overflow = new ArrayList<>(commits.subList(individual, commits.size()));
+      List<Changeset> summarized = ordered ? Lists.reverse(overflow) : overflow;
+      LOG.info("push to repository {} contains {} commits, sending {} of them in a single request",
+        repository, commits.size(), summarized.size());
+      Supplier<CompletableFuture<Void>> summary =
+        CurrentWebHook.rebindTask(() -> handleAllCommitsAtOnce(summarized, () -> new Changesets(summarized)));
+      if (ordered) {
+        // the summary contains the latest commits, so it has to wait for all others
+        CompletableFuture.allOf(delivered.toArray(CompletableFuture[]::new)).whenComplete((result, failure) -> sendSummary(summary));
+      } else {
+        fanOut.submit(null, summary);
       }
-
-      env.put("first", new ImmutableEncodedChangeset(changeset));
     }
-
-    return expression.evaluate(env);
   }
 
-  private Map<String, Object> createBaseEnvironment(Repository repository) {
-    Map<String, Object> env = new HashMap<>();
+  private void sendSummary(Supplier<CompletableFuture<Void>> summary) {
+    try {
+      commitExecutor.execute(summary::get);
+    } catch (RuntimeException e) {
+      LOG.error("failed to send summary of commits of webhook for repository {}", repository, e);
+    }
+  }
 
-    env.put("repository", new ImmutableEncodedRepository(repository));
+  private CompletableFuture<Void> handleCommit(Changeset changeset) {
+    String url = urlTemplate.render(repository, changeset);
+    if (webHook.isSendCommitData()) {
+      return execute(webHook, url, changeset);
+    } else {
+      return execute(webHook, url, null);
+    }
+  }
 
-    return env;
+  private static String branchOf(Changeset changeset) {
+    List<String> branches = changeset.getBranches();
+    return branches == null || branches.isEmpty() ? "" : branches.get(0);
   }
 
-  private void execute(SimpleWebHook webHook, String url, Object data) {
+  private CompletableFuture<Void> execute(SimpleWebHook webHook, String url, Object data) {
     WebHookExecution.WebHookExecutionBuilder builder =
       WebHookExecution
         .builder()
         .httpMethod(webHook.getMethod())
         .url(url)
         .headers(webHook.getHeaders().stream().map(WebHookExecutionHeader::from).toList())
-        .payload(data);
+        .payload(data)
+        .retryPolicy(webHook.getRetryPolicy())
+        .rateLimit(webHook.getRateLimit());
     WebHookExecution execution = builder.build();
-    sender.execute(execution);
+    return sender.execute(execution);
   }
 }
@@ -16,32 +16,30 @@
 
 package sonia.scm.webhook;
 
-import com.cloudogu.scm.el.ElParser;
 import com.google.inject.Inject;
-import lombok.extern.slf4j.Slf4j;
 import sonia.scm.plugin.Extension;
-import sonia.scm.repository.Changeset;
 import sonia.scm.repository.PostReceiveRepositoryHookEvent;
 import sonia.scm.repository.Repository;
-import sonia.scm.repository.api.HookContext;
-import sonia.scm.repository.api.HookFeature;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 @Extension
-@Slf4j
 public class SimpleWebHookSpecification implements WebHookSpecification<SimpleWebHook> {
 
   public static final String DUMMY_SECRET = "__DUMMY__";
   private final WebHookSender sender;
-  private final ElParser elParser;
+  private final UrlTemplates urlTemplates;
+  private final PushCoalescer coalescer;
+  private final WebHookDispatcher dispatcher;
 
   @Inject
-  public SimpleWebHookSpecification(WebHookSender sender, ElParser elParser) {
+  public SimpleWebHookSpecification(WebHookSender sender, UrlTemplates urlTemplates, PushCoalescer coalescer, WebHookDispatcher dispatcher) {
     this.sender = sender;
-    this.elParser = elParser;
+    this.urlTemplates = urlTemplates;
+    this.coalescer = coalescer;
+    this.dispatcher = dispatcher;
   }
 
   @Override
@@ -51,8 +49,16 @@ public class SimpleWebHookSpecification implements WebHookSpecification<SimpleWe
 
   @Override
   public WebHookExecutor createExecutor(SimpleWebHook webHook, Repository repository, PostReceiveRepositoryHookEvent event) {
-    Iterable<Changeset> changesets = getChangesets(event, repository);
-    return new SimpleWebHookExecutor(sender, elParser, webHook, repository, changesets);
+    return createExecutor(webHook, repository, event, new ChangesetSnapshot(event));
+  }
+
+  @Override
+  public WebHookExecutor createExecutor(SimpleWebHook webHook, Repository repository, PostReceiveRepositoryHookEvent event, ChangesetSnapshot changesets) {
+    // resolved while the hook is processed, the executor itself runs asynchronously
+    return new SimpleWebHookExecutor(
+      sender, urlTemplates, webHook, repository, changesets.getChangesets(), changesets::getPayload, coalescer,
+      task -> dispatcher.dispatch(task::run)
+    );
   }
 
   @Override
@@ -90,25 +96,4 @@ public class SimpleWebHookSpecification implements WebHookSpecification<SimpleWe
   public Class<SimpleWebHook> getDtoType() {
     return WebHookSpecification.super.getDtoType();
   }
-
-  private Iterable<Changeset> getChangesets(PostReceiveRepositoryHookEvent event, Repository repository) {
-    Iterable<Changeset> changesets = null;
-
-    if (event.getContext() != null) {
-      HookContext eventContext = event.getContext();
-
-      if (eventContext.isFeatureSupported(HookFeature.CHANGESET_PROVIDER)) {
-        changesets = eventContext.getChangesetProvider()
-          .setDisablePreProcessors(true)
-          .getChangesets();
-      } else {
-        log.debug("{} does not support changeset provider",
-          repository.getType());
-      }
-    } else {
-      log.debug("{} has no hook context support", repository.getType());
-    }
-
-    return changesets;
-  }
 }
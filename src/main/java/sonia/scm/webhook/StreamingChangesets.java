@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.io.ByteSource;
+import sonia.scm.net.ahc.ContentTransformer;
+import sonia.scm.repository.Changeset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Serializes changesets to the same json as {@link Changesets}, but one changeset at a time, while the stream is
+ * read. So the memory needed for the payload does not depend on the number of changesets.
+ */
+class StreamingChangesets extends ByteSource {
+
+  private static final byte[] PREFIX = "{\"changeset\":[".getBytes(StandardCharsets.UTF_8);
+  private static final byte SEPARATOR = ',';
+  private static final byte[] SUFFIX = "]}".getBytes(StandardCharsets.UTF_8);
+
+  private final Iterable<Changeset> changesets;
+  private final ContentTransformer transformer;
+
+  StreamingChangesets(Iterable<Changeset> changesets, ContentTransformer transformer) {
+    this.changesets = changesets;
+    this.transformer = transformer;
+  }
+
+  @Override
+  public InputStream openStream() {
+    return new ChangesetInputStream(changesets.iterator());
+  }
+
+  private class ChangesetInputStream extends InputStream {
+
+    private final Iterator<Changeset> iterator;
+
+    private byte[] buffer = PREFIX;
+    private int position;
+    private boolean first = true;
+    private boolean done;
+
+    private ChangesetInputStream(Iterator<Changeset> iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!fill()) {
+        return -1;
+      }
+      return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!fill()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.length - position);
+      System.arraycopy(buffer, position, b, off, count);
+      position += count;
+      return count;
+    }
+
+    private boolean fill() throws IOException {
+      while (position >= buffer.length) {
+        if (done) {
+          return false;
+        }
+        if (iterator.hasNext()) {
+          buffer = next(iterator.next());
+        } else {
+          buffer = SUFFIX;
+          done = true;
+        }
+        position = 0;
+      }
+      return true;
+    }
+
+    private byte[] next(Changeset changeset) throws IOException {
+      byte[] serialized = transformer.marshall(changeset).read();
+      if (first) {
+        first = false;
+        return serialized;
+      }
+      byte[] separated = new byte[serialized.length + 1];
+      separated[0] = SEPARATOR;
+      System.arraycopy(serialized, 0, separated, 1, serialized.length);
+      return separated;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.io.ByteSource;
+import sonia.scm.net.HttpURLConnectionFactory;
+import sonia.scm.net.ahc.AdvancedHttpRequestWithBody;
+import sonia.scm.net.ahc.BaseHttpRequest;
+import sonia.scm.net.ahc.Content;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+/**
+ * Request with a body, which is serialized while it is written to the receiver (see {@link StreamingChangesets}).
+ * The advanced http client of the core buffers the whole body, so these requests are sent with a connection of the
+ * {@link HttpURLConnectionFactory} (which applies the proxy and ssl settings of the core) using chunked transfer
+ * encoding. Because the body is never held in memory as a whole, such requests are neither journaled in the
+ * {@link Outbox} nor archived in the {@link DeliveryArchive}.
+ */
+class StreamingWebhookRequest extends WebhookRequest {
+
+  private final AdvancedHttpRequestWithBody request;
+  private final ByteSource body;
+  private final HttpURLConnectionFactory connectionFactory;
+
+  StreamingWebhookRequest(AdvancedHttpRequestWithBody request, ByteSource body, HttpURLConnectionFactory connectionFactory) {
+    super(request);
+    this.request = request;
+    this.body = body;
+    this.connectionFactory = connectionFactory;
+  }
+
+  @Override
+  WebhookRequest addHeader(WebHookExecutionHeader header) {
+    // headers computed from the content (e.g. signatures) read the stream once more, but do not buffer it either
+    request.header(header.getKey(), header.getValue(new StreamedContent(body)));
+    return this;
+  }
+
+  @Override
+  boolean isJournaled() {
+    return false;
+  }
+
+  @Override
+  long getContentLength() {
+    return -1;
+  }
+
+  @Override
+  byte[] getBody() throws IOException {
+    return body.read();
+  }
+
+  @Override
+  int execute() throws IOException {
+    HttpURLConnection connection = connectionFactory.create(URI.create(getUrl()).toURL());
+    connection.setRequestMethod(getMethod());
+    connection.setDoOutput(true);
+    connection.setChunkedStreamingMode(0);
+    getHeaders().forEach(connection::addRequestProperty);
+    try (OutputStream output = connection.getOutputStream()) {
+      body.copyTo(output);
+    }
+    int statusCode = connection.getResponseCode();
+    discardResponse(connection, statusCode);
+    return completed(statusCode, connection::getHeaderField);
+  }
+
+  /**
+   * Reads the body of the response completely, so that the connection can be reused.
+   */
+  private static void discardResponse(HttpURLConnection connection, int statusCode) throws IOException {
+    InputStream input = statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
+    if (input != null) {
+      try (input) {
+        input.transferTo(OutputStream.nullOutputStream());
+      }
+    }
+  }
+
+  private static class StreamedContent implements Content {
+
+    private final ByteSource body;
+
+    private StreamedContent(ByteSource body) {
+      this.body = body;
+    }
+
+    @Override
+    public void prepare(BaseHttpRequest<?> request) {
+      // the content type is set by the webhook http client
+    }
+
+    @Override
+    public void process(OutputStream output) throws IOException {
+      body.copyTo(output);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket, which hands out reservations instead of blocking the caller. A reservation always takes a token, even
+ * if the bucket is empty. In this case the bucket goes into debt and the caller is told how long to wait, so that
+ * queued requests are spread evenly at the configured rate.
+ */
+class TokenBucket {
+
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final LongSupplier nanoTime;
+
+  private double ratePerSecond;
+  private int burst;
+  private double tokens;
+  private long lastRefill;
+
+  TokenBucket(double ratePerSecond, int burst) {
+    this(ratePerSecond, burst, System::nanoTime);
+  }
+
+  TokenBucket(double ratePerSecond, int burst, LongSupplier nanoTime) {
+    this.nanoTime = nanoTime;
+    this.ratePerSecond = ratePerSecond;
+    this.burst = burst;
+    this.tokens = burst;
+    this.lastRefill = nanoTime.getAsLong();
+  }
+
+  /**
+   * Takes a token and returns the time in nanoseconds the caller has to wait before using it.
+   */
+  synchronized long reserve() {
+    refill();
+    tokens -= 1;
+    if (tokens >= 0) {
+      return 0;
+    }
+    return (long) Math.ceil(-tokens * NANOS_PER_SECOND / ratePerSecond);
+  }
+
+  /**
+   * Changes rate and burst, keeping the tokens (or the debt) the bucket currently has.
+   */
+  synchronized void update(double ratePerSecond, int burst) {
+    if (this.ratePerSecond != ratePerSecond || this.burst != burst) {
+      refill();
+      this.ratePerSecond = ratePerSecond;
+      this.burst = burst;
+      tokens = Math.min(tokens, burst);
+    }
+  }
+
+  private void refill() {
+    long now = nanoTime.getAsLong();
+    tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerSecond / NANOS_PER_SECOND);
+    lastRefill = now;
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.cloudogu.scm.el.Expression;
+import com.cloudogu.scm.el.env.ImmutableEncodedChangeset;
+import com.cloudogu.scm.el.env.ImmutableEncodedRepository;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Repository;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Url pattern of a {@link SimpleWebHook}. Patterns without placeholders are returned as they are, without creating
+ * an environment for and evaluating the expression.
+ */
+class UrlTemplate {
+
+  private final String literal;
+  private final Expression expression;
+
+  private UrlTemplate(String literal, Expression expression) {
+    this.literal = literal;
+    this.expression = expression;
+  }
+
+  static UrlTemplate literal(String url) {
+    return new UrlTemplate(url, null);
+  }
+
+  static UrlTemplate of(Expression expression) {
+    return new UrlTemplate(null, expression);
+  }
+
+  /**
+   * Returns {@code true}, if the pattern can not contain any expression which has to be evaluated.
+   */
+  static boolean isLiteral(String urlPattern) {
+    return urlPattern != null
+      && !urlPattern.contains("${")
+      && !urlPattern.contains("#{")
+      && urlPattern.indexOf('\\') < 0;
+  }
+
+  boolean isLiteral() {
+    return literal != null;
+  }
+
+  String render(Repository repository, Changeset changeset) {
+    if (literal != null) {
+      return literal;
+    }
+    Map<String, Object> env = createBaseEnvironment(repository);
+
+    if (changeset != null) {
+      ImmutableEncodedChangeset iec = new ImmutableEncodedChangeset(changeset);
+
+      env.put("changeset", iec);
+      env.put("commit", iec);
+    }
+
+    return expression.evaluate(env);
+  }
+
+  String render(Repository repository, Iterable<Changeset> changesets) {
+    if (literal != null) {
+      return literal;
+    }
+    Map<String, Object> env = createBaseEnvironment(repository);
+    if (changesets != null) {
+      Iterator<Changeset> it = changesets.iterator();
+      Changeset changeset = it.next();
+
+      env.put("last", new ImmutableEncodedChangeset(changeset));
+
+      while (it.hasNext()) {
+        changeset = it.next();
+      }
+
+      env.put("first", new ImmutableEncodedChangeset(changeset));
+    }
+
+    return expression.evaluate(env);
+  }
+
+  private Map<String, Object> createBaseEnvironment(Repository repository) {
+    Map<String, Object> env = new HashMap<>();
+
+    env.put("repository", new ImmutableEncodedRepository(repository));
+
+    return env;
+  }
+}
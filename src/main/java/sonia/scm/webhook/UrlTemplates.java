@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.cloudogu.scm.el.ElParser;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of parsed url patterns of {@link SimpleWebHook}s. The cache is filled whenever a configuration is stored,
+ * so that the patterns do not have to be parsed again for every push. Patterns without placeholders are not parsed
+ * at all (see {@link UrlTemplate#isLiteral(String)}).
+ */
+@Singleton
+class UrlTemplates {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UrlTemplates.class);
+
+  private static final int MAX_TEMPLATES = 1000;
+
+  private final ElParser elParser;
+  private final Cache<String, UrlTemplate> templates = CacheBuilder.newBuilder()
+    .maximumSize(MAX_TEMPLATES)
+    .build();
+
+  @Inject
+  UrlTemplates(ElParser elParser) {
+    this.elParser = elParser;
+  }
+
+  UrlTemplate compile(String urlPattern) {
+    if (urlPattern == null) {
+      return UrlTemplate.of(elParser.parse(null));
+    }
+    UrlTemplate template = templates.getIfPresent(urlPattern);
+    if (template == null) {
+      template = parse(urlPattern);
+      templates.put(urlPattern, template);
+    }
+    return template;
+  }
+
+  private UrlTemplate parse(String urlPattern) {
+    if (UrlTemplate.isLiteral(urlPattern)) {
+      return UrlTemplate.literal(urlPattern);
+    }
+    return UrlTemplate.of(elParser.parse(urlPattern));
+  }
+
+  void compileAll(WebHookConfiguration configuration) {
+    if (configuration == null) {
+      return;
+    }
+    for (WebHook webHook : configuration.getWebhooks()) {
+      if (webHook.getConfiguration() instanceof SimpleWebHook) {
+        String urlPattern = ((SimpleWebHook) webHook.getConfiguration()).getUrlPattern();
+        try {
+          compile(urlPattern);
+        } catch (RuntimeException e) {
+          LOG.warn("could not parse url pattern {} of webhook {}", urlPattern, webHook.getId(), e);
+        }
+      }
+    }
+  }
+}
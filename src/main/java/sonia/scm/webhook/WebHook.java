@@ -20,6 +20,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import jakarta.validation.Valid;
 import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
 import jakarta.xml.bind.annotation.XmlRootElement;
@@ -33,6 +34,7 @@ import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 public class WebHook {
   String name;
   String id;
+  @Valid
   @XmlJavaTypeAdapter(XmlConfiguration.WebHookConfigurationXmlAdapter.class)
   SingleWebHookConfiguration configuration;
 
@@ -42,6 +44,17 @@ public class WebHook {
     this.configuration = configuration;
   }
 
+  /**
+   * Returns a copy of this webhook, which shares the configuration with this webhook.
+   */
+  WebHook copy() {
+    WebHook copy = new WebHook();
+    copy.name = name;
+    copy.id = id;
+    copy.configuration = configuration;
+    return copy;
+  }
+
   boolean isConfigurationFor(Class<? extends SingleWebHookConfiguration> clazz) {
     return configuration.getClass().isAssignableFrom(clazz);
   }
@@ -20,6 +20,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import jakarta.validation.Valid;
 import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
 import jakarta.xml.bind.annotation.XmlElement;
@@ -38,6 +39,7 @@ import java.util.List;
 @NoArgsConstructor
 public class WebHookConfiguration {
 
+  @Valid
   @XmlElement(name = "webhook")
   private final List<WebHook> webhooks = new ArrayList<>();
 
@@ -54,6 +56,18 @@ public class WebHookConfiguration {
     return new WebHookConfiguration(allHooks);
   }
 
+  /**
+   * Returns a copy of this configuration with copies of all webhooks, which share their configurations with the
+   * webhooks of this configuration.
+   */
+  WebHookConfiguration copy() {
+    WebHookConfiguration copy = new WebHookConfiguration();
+    for (WebHook webHook : webhooks) {
+      copy.webhooks.add(webHook.copy());
+    }
+    return copy;
+  }
+
   public boolean isWebHookAvailable() {
     return !webhooks.isEmpty();
   }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.github.legman.Subscribe;
+import com.google.inject.Inject;
+import sonia.scm.EagerSingleton;
+import sonia.scm.HandlerEventType;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.RepositoryEvent;
+
+/**
+ * Removes the cached configuration of repositories, which are deleted or modified (e.g. renamed), and the delivery
+ * history and archived requests of deleted repositories. Deleted repositories are also removed from the repositories
+ * with webhooks (see {@link WebHookContext#isWebHookAvailable(sonia.scm.repository.Repository)}).
+ */
+@Extension
+@EagerSingleton
+public class WebHookConfigurationInvalidator {
+
+  private final WebHookContext context;
+  private final DeliveryHistory history;
+  private final DeliveryArchive archive;
+
+  @Inject
+  public WebHookConfigurationInvalidator(WebHookContext context, DeliveryHistory history, DeliveryArchive archive) {
+    this.context = context;
+    this.history = history;
+    this.archive = archive;
+  }
+
+  @Subscribe(async = false)
+  public void handleEvent(RepositoryEvent event) {
+    HandlerEventType eventType = event.getEventType();
+    if (eventType == HandlerEventType.DELETE || eventType == HandlerEventType.MODIFY) {
+      context.invalidate(event.getItem());
+      if (event.getOldItem() != null) {
+        context.invalidate(event.getOldItem());
+      }
+    }
+    if (eventType == HandlerEventType.DELETE) {
+      context.remove(event.getItem());
+      history.delete(event.getItem());
+      archive.delete(event.getItem());
+    }
+  }
+}
@@ -22,12 +22,17 @@ import sonia.scm.config.ConfigurationPermissions;
 import sonia.scm.plugin.PluginLoader;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryDAO;
 import sonia.scm.repository.RepositoryManager;
 import sonia.scm.repository.RepositoryPermissions;
 import sonia.scm.store.ConfigurationStore;
 import sonia.scm.store.ConfigurationStoreFactory;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 /**
@@ -38,18 +43,40 @@ public class WebHookContext {
 
   private static final String WEB_HOOK_ID = "webhook";
   private static final String STORE_NAME = "webhook";
+  private static final String DISPATCH_STORE_NAME = "webhook-dispatch";
 
   private final ConfigurationStoreFactory storeFactory;
   private final ClassLoader uberClassLoader;
   private final RepositoryManager repositoryManager;
+  private final RepositoryDAO repositoryDAO;
   private final ConfigurationUpdater configurationUpdater;
+  private final UrlTemplates urlTemplates;
+
+  private volatile DispatchConfiguration dispatchConfiguration;
+
+  /**
+   * Merged global and repository configuration by repository id. The generation is incremented with every change,
+   * so that a configuration which was read concurrently to a change is not cached.
+   */
+  private final Map<String, WebHookConfiguration> mergedConfigurations = new ConcurrentHashMap<>();
+  private final AtomicLong configurationGeneration = new AtomicLong();
+
+  /**
+   * Ids of repositories with repository specific webhooks, or {@code null} until the configurations have been loaded
+   * for the first time. Together with {@link #globalWebHooksAvailable}, this tells without reading any store, whether
+   * webhooks are configured for a repository. Both are updated whenever a configuration is stored.
+   */
+  private volatile Set<String> repositoriesWithWebHooks;
+  private volatile boolean globalWebHooksAvailable;
 
   @Inject
-  public WebHookContext(ConfigurationStoreFactory storeFactory, RepositoryManager repositoryManager, PluginLoader pluginLoader, ConfigurationUpdater configurationUpdater) {
+  public WebHookContext(ConfigurationStoreFactory storeFactory, RepositoryManager repositoryManager, RepositoryDAO repositoryDAO, PluginLoader pluginLoader, ConfigurationUpdater configurationUpdater, UrlTemplates urlTemplates) {
     this.storeFactory = storeFactory;
     this.repositoryManager = repositoryManager;
+    this.repositoryDAO = repositoryDAO;
     this.uberClassLoader = pluginLoader.getUberClassLoader();
     this.configurationUpdater = configurationUpdater;
+    this.urlTemplates = urlTemplates;
   }
 
   public static boolean isReadPermitted() {
@@ -90,10 +117,28 @@ public class WebHookContext {
 
   public void setGlobalConfiguration(WebHookConfiguration globalConfiguration) {
     ConfigurationStore<WebHookConfiguration> store = getGlobalStore();
-    withUberClassLoader(() -> {
-      store.set(configurationUpdater.update(store.get(), globalConfiguration));
-      return null;
+    WebHookConfiguration updatedConfiguration = withUberClassLoader(() -> {
+      WebHookConfiguration configuration = configurationUpdater.update(store.get(), globalConfiguration);
+      store.set(configuration);
+      return configuration;
     });
+    updateGlobalAvailability(updatedConfiguration.isWebHookAvailable());
+    invalidateAll();
+    urlTemplates.compileAll(updatedConfiguration);
+  }
+
+  public DispatchConfiguration getDispatchConfiguration() {
+    DispatchConfiguration configuration = dispatchConfiguration;
+    if (configuration == null) {
+      configuration = getDispatchStore().getOptional().orElse(new DispatchConfiguration());
+      dispatchConfiguration = configuration;
+    }
+    return configuration;
+  }
+
+  public void setDispatchConfiguration(DispatchConfiguration configuration) {
+    getDispatchStore().set(configuration);
+    dispatchConfiguration = configuration;
   }
 
   public WebHookConfiguration getRepositoryConfigurations(String namespace, String name) {
@@ -101,17 +146,113 @@ public class WebHookContext {
     return getFromStore(repositoryStore).orElse(new WebHookConfiguration());
   }
 
+  /**
+   * Returns {@code true}, if global or repository specific webhooks are configured for the given repository. Only the
+   * first call reads the stores of all repositories, afterwards this check does not read any store.
+   */
+  public boolean isWebHookAvailable(Repository repository) {
+    Set<String> repositories = getRepositoriesWithWebHooks();
+    return globalWebHooksAvailable || repositories.contains(repository.getId());
+  }
+
+  private Set<String> getRepositoriesWithWebHooks() {
+    Set<String> repositories = repositoriesWithWebHooks;
+    if (repositories == null) {
+      repositories = loadRepositoriesWithWebHooks();
+    }
+    return repositories;
+  }
+
+  private synchronized Set<String> loadRepositoriesWithWebHooks() {
+    if (repositoriesWithWebHooks == null) {
+      Set<String> repositories = ConcurrentHashMap.newKeySet();
+      for (Repository repository : repositoryDAO.getAll()) {
+        if (getFromStore(getRepositoryStore(repository)).map(WebHookConfiguration::isWebHookAvailable).orElse(false)) {
+          repositories.add(repository.getId());
+        }
+      }
+      globalWebHooksAvailable = getGlobalConfiguration().isWebHookAvailable();
+      repositoriesWithWebHooks = repositories;
+    }
+    return repositoriesWithWebHooks;
+  }
+
+  private synchronized void updateGlobalAvailability(boolean available) {
+    if (repositoriesWithWebHooks != null) {
+      globalWebHooksAvailable = available;
+    }
+  }
+
+  private synchronized void updateAvailability(Repository repository, boolean available) {
+    if (repositoriesWithWebHooks != null) {
+      if (available) {
+        repositoriesWithWebHooks.add(repository.getId());
+      } else {
+        repositoriesWithWebHooks.remove(repository.getId());
+      }
+    }
+  }
+
+  /**
+   * Returns the merged global and repository specific webhooks. The result is a copy of the cached configuration, so
+   * changes of the list or the webhooks do not affect the cache. The configurations of the webhooks are shared,
+   * {@link WebHookService#getConfigurations(Class, Repository)} returns copies of them.
+   */
   public WebHookConfiguration getAllConfigurations(Repository repository) {
-    WebHookConfiguration repositoryConfiguration = getRepositoryConfigurations(repository.getNamespace(), repository.getName());
-    return getGlobalConfiguration().merge(repositoryConfiguration);
+    if (!isWebHookAvailable(repository)) {
+      return new WebHookConfiguration();
+    }
+    WebHookConfiguration configuration = mergedConfigurations.get(repository.getId());
+    if (configuration == null) {
+      long generation = configurationGeneration.get();
+      WebHookConfiguration repositoryConfiguration = getRepositoryConfigurations(repository.getNamespace(), repository.getName());
+      configuration = getGlobalConfiguration().merge(repositoryConfiguration);
+      if (generation == configurationGeneration.get()) {
+        cache(repository, configuration, generation);
+      }
+    }
+    return configuration.copy();
+  }
+
+  private void cache(Repository repository, WebHookConfiguration configuration, long generation) {
+    String id = repository.getId();
+    mergedConfigurations.put(id, configuration);
+    if (generation != configurationGeneration.get()) {
+      // the configuration has been changed while it was read, so the cached one may already be outdated
+      mergedConfigurations.remove(id, configuration);
+    }
   }
 
   public void setRepositoryConfiguration(WebHookConfiguration configuration, String namespace, String name) {
-    ConfigurationStore<WebHookConfiguration> repositoryStore = getRepositoryStore(namespace, name);
-    withUberClassLoader(() -> {
-      repositoryStore.set(configurationUpdater.update(repositoryStore.get(), configuration));
-      return null;
+    Repository repository = repositoryManager.get(new NamespaceAndName(namespace, name));
+    ConfigurationStore<WebHookConfiguration> repositoryStore = getRepositoryStore(repository);
+    WebHookConfiguration updatedConfiguration = withUberClassLoader(() -> {
+      WebHookConfiguration update = configurationUpdater.update(repositoryStore.get(), configuration);
+      repositoryStore.set(update);
+      return update;
     });
+    updateAvailability(repository, updatedConfiguration.isWebHookAvailable());
+    invalidate(repository);
+    urlTemplates.compileAll(updatedConfiguration);
+  }
+
+  void invalidate(Repository repository) {
+    configurationGeneration.incrementAndGet();
+    if (repository != null) {
+      mergedConfigurations.remove(repository.getId());
+    }
+  }
+
+  /**
+   * Forgets the deleted repository, so that it is no longer counted as a repository with webhooks.
+   */
+  void remove(Repository repository) {
+    updateAvailability(repository, false);
+  }
+
+  void invalidateAll() {
+    configurationGeneration.incrementAndGet();
+    mergedConfigurations.clear();
   }
 
   private ConfigurationStore<WebHookConfiguration> getRepositoryStore(String namespace, String name) {
@@ -127,6 +268,10 @@ public class WebHookContext {
     return storeFactory.withType(WebHookConfiguration.class).withName(STORE_NAME).build();
   }
 
+  private ConfigurationStore<DispatchConfiguration> getDispatchStore() {
+    return storeFactory.withType(DispatchConfiguration.class).withName(DISPATCH_STORE_NAME).build();
+  }
+
   private <T> T withUberClassLoader(Supplier<T> runnable) {
     ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
     Thread.currentThread().setContextClassLoader(uberClassLoader);
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decouples the execution of webhooks from the thread handling the repository event. Executors are put into a bounded
+ * queue and run by a pool of worker threads, whose size can be changed in the {@link DispatchConfiguration}.
+ */
+@Singleton
+class WebHookDispatcher implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WebHookDispatcher.class);
+
+  private final WebHookContext context;
+
+  private int currentWorkerThreads;
+  private int currentQueueCapacity;
+  private ThreadPoolExecutor executor;
+
+  @Inject
+  WebHookDispatcher(WebHookContext context) {
+    this.context = context;
+  }
+
+  void dispatch(WebHookExecutor webHookExecutor) {
+    executorFor(context.getDispatchConfiguration()).execute(wrap(webHookExecutor));
+  }
+
+  private Runnable wrap(WebHookExecutor webHookExecutor) {
+    Runnable runnable = () -> {
+      try {
+        webHookExecutor.run();
+      } catch (Exception e) {
+        LOG.error("error while running webhook executor {}", webHookExecutor, e);
+      }
+    };
+    Subject subject = ThreadContext.getSubject();
+    if (subject != null) {
+      return subject.associateWith(runnable);
+    }
+    return runnable;
+  }
+
+  private synchronized ThreadPoolExecutor executorFor(DispatchConfiguration configuration) {
+    if (executor == null || hasPoolChanged(configuration)) {
+      ThreadPoolExecutor previous = executor;
+      executor = createExecutor(configuration);
+      currentWorkerThreads = configuration.getWorkerThreads();
+      currentQueueCapacity = configuration.getQueueCapacity();
+      if (previous != null) {
+        LOG.info("webhook dispatch configuration changed, draining previous worker pool");
+        previous.shutdown();
+      }
+    }
+    return executor;
+  }
+
+  private boolean hasPoolChanged(DispatchConfiguration configuration) {
+    return configuration.getWorkerThreads() != currentWorkerThreads
+      || configuration.getQueueCapacity() != currentQueueCapacity;
+  }
+
+  private ThreadPoolExecutor createExecutor(DispatchConfiguration configuration) {
+    LOG.debug("creating webhook worker pool with {} threads and a queue capacity of {}",
+      configuration.getWorkerThreads(), configuration.getQueueCapacity());
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(
+      configuration.getWorkerThreads(),
+      configuration.getWorkerThreads(),
+      60L,
+      TimeUnit.SECONDS,
+      new ArrayBlockingQueue<>(configuration.getQueueCapacity()),
+      new ThreadFactoryBuilder().setNameFormat("WebHookDispatcher-%d").setDaemon(true).build(),
+      new RunOnCallerWhenFull()
+    );
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /**
+   * Returns the number of executors waiting for a worker thread.
+   */
+  synchronized int getQueuedExecutors() {
+    return executor != null ? executor.getQueue().size() : 0;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+  private static class RunOnCallerWhenFull implements RejectedExecutionHandler {
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor pool) {
+      LOG.warn("webhook dispatch queue is full, running webhook on the calling thread");
+      runnable.run();
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metrics of webhook deliveries. Request metrics are tagged with the specification of the webhook and the target
+ * host, but not with the id of the webhook, because the percentile histogram of the request duration multiplies the
+ * number of time series by every tag.
+ */
+@Singleton
+class WebHookMetrics {
+
+  private static final String NO_RESPONSE = "none";
+
+  private final MeterRegistry registry;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  @Inject
+  WebHookMetrics(MeterRegistry registry, WebHookDispatcher dispatcher, HostScheduler scheduler, RetryScheduler retryScheduler) {
+    this.registry = registry;
+    Gauge.builder("scm.webhook.deliveries.inflight", inFlight, AtomicInteger::get)
+      .description("Number of webhook requests waiting for a response")
+      .register(registry);
+    Gauge.builder("scm.webhook.dispatch.queued", dispatcher, WebHookDispatcher::getQueuedExecutors)
+      .description("Number of webhooks waiting for a worker thread")
+      .register(registry);
+    Gauge.builder("scm.webhook.deliveries.queued", scheduler, HostScheduler::getPendingDeliveries)
+      .description("Number of webhook requests waiting for a free slot of their host")
+      .register(registry);
+    Gauge.builder("scm.webhook.deliveries.retries", retryScheduler, RetryScheduler::getPendingRetries)
+      .description("Number of webhook requests waiting for their next attempt")
+      .register(registry);
+  }
+
+  /**
+   * Marks the start of a request and returns the start time for {@link #requestFinished(Delivery, int, long)}.
+   */
+  long requestStarted(Delivery delivery) {
+    inFlight.incrementAndGet();
+    long contentLength = delivery.getRequest().getContentLength();
+    if (contentLength >= 0) {
+      DistributionSummary.builder("scm.webhook.request.size")
+        .description("Size of the bodies of webhook requests")
+        .baseUnit("bytes")
+        .tags(tagsOf(delivery))
+        .register(registry)
+        .record(contentLength);
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * Records the duration and the result of a request. A negative status code stands for a request without response.
+   */
+  void requestFinished(Delivery delivery, int statusCode, long start) {
+    inFlight.decrementAndGet();
+    Tags tags = tagsOf(delivery);
+    Timer.builder("scm.webhook.request.duration")
+      .description("Duration of webhook requests")
+      .publishPercentileHistogram()
+      .tags(tags)
+      .register(registry)
+      .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    Counter.builder("scm.webhook.requests")
+      .description("Number of webhook requests by status code")
+      .tags(tags)
+      .tag("status", statusCode < 0 ? NO_RESPONSE : String.valueOf(statusCode))
+      .register(registry)
+      .increment();
+  }
+
+  private static Tags tagsOf(Delivery delivery) {
+    return Tags.of(
+      "specification", delivery.getSpecification(),
+      "host", delivery.getHost()
+    );
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides how long a delivery has to wait before it may be sent. Deliveries of webhooks with a {@link RateLimit} take
+ * a token of the bucket of their webhook, and every delivery waits while its host has asked to pause with a
+ * {@code Retry-After} header. Waiting deliveries are queued by the caller, they are never dropped.
+ */
+@Singleton
+class WebHookRateLimiter {
+
+  /**
+   * Upper bound for pauses requested by receivers, so that a single bogus header cannot stop the deliveries for good.
+   */
+  static final long MAX_PAUSE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private static final long IDLE_BUCKET_MINUTES = 10;
+
+  private final LongSupplier nanoTime;
+
+  private final Cache<String, TokenBucket> buckets = CacheBuilder.newBuilder()
+    .expireAfterAccess(IDLE_BUCKET_MINUTES, TimeUnit.MINUTES)
+    .build();
+  private final Map<String, Long> pausedHosts = new ConcurrentHashMap<>();
+
+  @Inject
+  WebHookRateLimiter() {
+    this(System::nanoTime);
+  }
+
+  WebHookRateLimiter(LongSupplier nanoTime) {
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * Reserves the delivery a slot and returns the delay in milliseconds until it may be sent.
+   */
+  long reserve(Delivery delivery) {
+    long delay = remainingPause(delivery.getHost());
+    RateLimit rateLimit = delivery.getRateLimit();
+    if (rateLimit != null) {
+      TokenBucket bucket = bucket(delivery);
+      bucket.update(rateLimit.getRequestsPerSecond(), rateLimit.getBurst());
+      // tokens reserved now are used when the pause is over, so the pause is added to the delay of the bucket
+      delay += toMillis(bucket.reserve());
+    }
+    return delay;
+  }
+
+  /**
+   * Returns the time in milliseconds, until deliveries to the host may be sent again.
+   */
+  long remainingPause(String host) {
+    Long until = pausedHosts.get(host);
+    if (until == null) {
+      return 0;
+    }
+    long remaining = until - nanoTime.getAsLong();
+    if (remaining <= 0) {
+      pausedHosts.remove(host, until);
+      return 0;
+    }
+    return toMillis(remaining);
+  }
+
+  /**
+   * Stops deliveries to the host for the given time (e.g. because of a {@code Retry-After} header).
+   */
+  void pause(String host, long millis) {
+    long until = nanoTime.getAsLong() + TimeUnit.MILLISECONDS.toNanos(Math.min(millis, MAX_PAUSE_MILLIS));
+    pausedHosts.merge(host, until, Math::max);
+  }
+
+  private TokenBucket bucket(Delivery delivery) {
+    RateLimit rateLimit = delivery.getRateLimit();
+    try {
+      return buckets.get(keyOf(delivery), () -> new TokenBucket(rateLimit.getRequestsPerSecond(), rateLimit.getBurst(), nanoTime));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("could not create token bucket", e.getCause());
+    }
+  }
+
+  private static String keyOf(Delivery delivery) {
+    // global webhooks share their id across all repositories, so their limit applies to all of them together
+    if (CurrentWebHook.UNKNOWN.equals(delivery.getWebHookId())) {
+      return "host:" + delivery.getHost();
+    }
+    return "webhook:" + delivery.getWebHookId();
+  }
+
+  private static long toMillis(long nanos) {
+    return (nanos + 999_999) / 1_000_000;
+  }
+}
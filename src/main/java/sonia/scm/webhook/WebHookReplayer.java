@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.NotFoundException;
+import sonia.scm.repository.Repository;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
+
+/**
+ * Delivers recorded webhooks again, e.g. after an outage of the receiver.
+ * <p>
+ * Replays are handed over to the {@link WebHookSender} at a limited rate (see
+ * {@link DispatchConfiguration#getReplayRatePerSecond()}), so that replaying many deliveries at once does not flood
+ * the receivers. Until then, they wait in the {@link RetryScheduler}, which hands them over to the worker pool of the
+ * {@link WebHookDispatcher} when they are due. So the archived request is loaded and redelivered on a worker thread
+ * and never on the timer thread. A request, which is already waiting for its replay, is not replayed twice.
+ */
+@Singleton
+public class WebHookReplayer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WebHookReplayer.class);
+
+  private final WebHookContext context;
+  private final DeliveryHistory history;
+  private final DeliveryArchive archive;
+  private final WebHookSender sender;
+  private final RetryScheduler scheduler;
+
+  private final Set<String> pending = ConcurrentHashMap.newKeySet();
+  private final TokenBucket rateLimit;
+
+  @Inject
+  WebHookReplayer(WebHookContext context, DeliveryHistory history, DeliveryArchive archive, WebHookSender sender, RetryScheduler scheduler) {
+    this.context = context;
+    this.history = history;
+    this.archive = archive;
+    this.sender = sender;
+    this.scheduler = scheduler;
+    int rate = context.getDispatchConfiguration().getReplayRatePerSecond();
+    this.rateLimit = new TokenBucket(rate, rate);
+  }
+
+  /**
+   * Delivers the request of the recorded delivery attempt once again.
+   *
+   * @throws NotFoundException if there is no such delivery or its request has not been archived
+   */
+  public void redeliver(Repository repository, long sequence) {
+    DeliveryRecord delivery = history.getDeliveries(repository)
+      .stream()
+      .filter(candidate -> candidate.getSequence() == sequence)
+      .filter(candidate -> isArchived(repository.getId(), candidate))
+      .findFirst()
+      .orElseThrow(() -> notFound(entity("WebHookDelivery", String.valueOf(sequence)).in(repository.getNamespaceAndName())));
+    schedule(repository.getId(), delivery);
+  }
+
+  /**
+   * Delivers the requests to the given host once again, whose latest attempt in the given time window has failed.
+   *
+   * @return number of scheduled replays
+   */
+  public int replayFailed(String host, Instant from, Instant to) {
+    int scheduled = 0;
+    for (String repositoryId : history.getRepositoryIds()) {
+      Set<Long> seen = new HashSet<>();
+      // the deliveries are ordered from the latest to the oldest, so only the latest attempt of a request is looked at
+      for (DeliveryRecord delivery : history.getDeliveries(repositoryId)) {
+        if (delivery.isRedeliverable()
+          && seen.add(delivery.getRequestId())
+          && !delivery.isSuccessful()
+          && !delivery.getTimestamp().isBefore(from)
+          && !delivery.getTimestamp().isAfter(to)
+          && host.equalsIgnoreCase(WebHookSender.hostOf(delivery.getUrl()))
+          && isArchived(repositoryId, delivery)
+          && schedule(repositoryId, delivery)) {
+          scheduled++;
+        }
+      }
+    }
+    LOG.info("scheduled {} failed webhook deliveries to {} for replay", scheduled, host);
+    return scheduled;
+  }
+
+  private boolean isArchived(String repositoryId, DeliveryRecord delivery) {
+    return delivery.isRedeliverable() && archive.contains(repositoryId, delivery.getRequestId());
+  }
+
+  private boolean schedule(String repositoryId, DeliveryRecord delivery) {
+    String key = repositoryId + "/" + delivery.getRequestId();
+    if (!pending.add(key)) {
+      LOG.debug("webhook {} of repository {} is already waiting for its replay", delivery.getRequestId(), repositoryId);
+      return false;
+    }
+    long delay = limitRate();
+    scheduler.schedule(() -> {
+      try {
+        replay(repositoryId, delivery);
+      } finally {
+        pending.remove(key);
+      }
+    }, TimeUnit.NANOSECONDS.toMillis(delay));
+    return true;
+  }
+
+  private void replay(String repositoryId, DeliveryRecord delivery) {
+    archive.load(repositoryId, delivery.getRequestId()).ifPresentOrElse(
+      request -> sender.redeliver(repositoryId, delivery.getWebHookId(), request),
+      () -> LOG.warn("webhook {} of repository {} is no longer archived and cannot be replayed", delivery.getRequestId(), repositoryId)
+    );
+  }
+
+  private long limitRate() {
+    int rate = context.getDispatchConfiguration().getReplayRatePerSecond();
+    rateLimit.update(rate, rate);
+    return rateLimit.reserve();
+  }
+}
@@ -22,33 +22,244 @@ import org.slf4j.LoggerFactory;
 import sonia.scm.webhook.execution.WebHookExecution;
 
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class provides a general-purpose means for other plugins to run their own WebHookExecutions.
+ * <p>
+ * Deliveries, which have to wait (for their retry, their rate limit, a pause of their host or the
+ * {@code Retry-After} of a 429 response), are put into the {@link RetryScheduler}. When they are due, it hands them
+ * over to the {@link WebHookDispatcher}, and the requests are sent by the {@link DeliveryExecutor}. So none of these
+ * paths sends a request on the timer thread.
  */
 public class WebHookSender {
 
   private static final Logger LOG = LoggerFactory.getLogger(WebHookSender.class);
 
+  private static final String UNKNOWN_HOST = "unknown";
+  private static final int NO_RESPONSE = -1;
+  private static final int TOO_MANY_REQUESTS = 429;
+  /**
+   * Upper bound for attempts of a request, which are repeated because the receiver answered with
+   * {@code 429 Too Many Requests} and a {@code Retry-After} header.
+   */
+  static final int MAX_RATE_LIMITED_ATTEMPTS = 10;
+
   private final WebhookHttpClient httpClient;
+  private final HostScheduler scheduler;
+  private final CircuitBreakers circuitBreakers;
+  private final Outbox outbox;
+  private final RetryScheduler retryScheduler;
+  private final WebHookMetrics metrics;
+  private final DeliveryHistory history;
+  private final DeliveryArchive archive;
+  private final WebHookRateLimiter rateLimiter;
 
   @Inject
-  WebHookSender(WebhookHttpClient httpClient) {
+  WebHookSender(WebhookHttpClient httpClient, HostScheduler scheduler, CircuitBreakers circuitBreakers, Outbox outbox, RetryScheduler retryScheduler, WebHookMetrics metrics, DeliveryHistory history, DeliveryArchive archive, WebHookRateLimiter rateLimiter) {
     this.httpClient = httpClient;
+    this.scheduler = scheduler;
+    this.circuitBreakers = circuitBreakers;
+    this.outbox = outbox;
+    this.retryScheduler = retryScheduler;
+    this.metrics = metrics;
+    this.history = history;
+    this.archive = archive;
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Sends the request of the execution asynchronously. The returned future is completed, once the request has been
+   * delivered successfully or has been given up after its last attempt.
+   */
+  CompletableFuture<Void> execute(WebHookExecution webHook) {
+    WebhookRequest request = webHook
+      .getHttpMethod()
+      .create(httpClient, webHook.getUrl(), webHook.getPayload())
+      .headers(webHook.getHeaders())
+      .accept(webHook.getPrepare());
+    long entryId = journal(webHook.getUrl(), request, webHook.getRetryPolicy(), webHook.getRateLimit());
+    String repositoryId = CurrentWebHook.repositoryId();
+    long requestId = archive.store(repositoryId, webHook.getUrl(), request, webHook.getRetryPolicy(), webHook.getRateLimit());
+    Delivery delivery = new Delivery(
+      webHook.getUrl(), hostOf(webHook.getUrl()), request, entryId, webHook.getRetryPolicy(),
+      CurrentWebHook.id(), CurrentWebHook.specification(), repositoryId, requestId, webHook.getRateLimit()
+    );
+    submit(delivery);
+    return delivery.getCompletion();
   }
 
-  void execute(WebHookExecution webHook) {
-    LOG.info("execute webhook for url {}", webHook.getUrl());
+  /**
+   * Sends an archived request once again, as if it had been triggered right now.
+   */
+  void redeliver(String repositoryId, String webHookId, OutboxEntry archived) {
+    LOG.info("redelivering webhook {} for url {}", archived.getId(), archived.getUrl());
+    WebhookRequest request = httpClient
+      .create(archived.getMethod(), archived.getUrl(), archived.getBody())
+      .rawHeaders(archived.getHeaders());
+    long entryId = journal(archived.getUrl(), request, archived.getRetryPolicy(), archived.getRateLimit());
+    submit(new Delivery(
+      archived.getUrl(), hostOf(archived.getUrl()), request, entryId, archived.getRetryPolicy(),
+      webHookId, CurrentWebHook.UNKNOWN, repositoryId, archived.getId(), archived.getRateLimit()
+    ));
+  }
+
+  void replay(OutboxEntry entry) {
+    LOG.debug("replaying webhook {} for url {} from outbox", entry.getId(), entry.getUrl());
+    WebhookRequest request = httpClient
+      .create(entry.getMethod(), entry.getUrl(), entry.getBody())
+      .rawHeaders(entry.getHeaders());
+    submit(new Delivery(
+      entry.getUrl(), hostOf(entry.getUrl()), request, entry.getId(), entry.getRetryPolicy(),
+      CurrentWebHook.UNKNOWN, CurrentWebHook.UNKNOWN, null, DeliveryArchive.NOT_ARCHIVED, entry.getRateLimit()
+    ));
+  }
+
+  private long journal(String url, WebhookRequest request, RetryPolicy retryPolicy, RateLimit rateLimit) {
+    if (!outbox.isEnabled() || !request.isJournaled()) {
+      return Outbox.NO_ENTRY;
+    }
+    try {
+      return outbox.append(request.getMethod(), url, request.getHeaders(), request.getBody(), retryPolicy, rateLimit);
+    } catch (IOException e) {
+      LOG.warn("could not serialize payload of webhook for {}, it will not be journaled", url, e);
+      return Outbox.NO_ENTRY;
+    }
+  }
+
+  private void submit(Delivery delivery) {
+    long delay = rateLimiter.reserve(delivery);
+    if (delay > 0) {
+      LOG.debug("delaying webhook for url {} by {} ms because of its rate limit", delivery.getUrl(), delay);
+      retryScheduler.schedule(() -> enqueue(delivery), delay);
+    } else {
+      enqueue(delivery);
+    }
+  }
+
+  private void enqueue(Delivery delivery) {
+    // the receiver may have asked for a pause, while the delivery was waiting for its rate limit
+    long pause = rateLimiter.remainingPause(delivery.getHost());
+    if (pause > 0) {
+      retryScheduler.schedule(() -> enqueue(delivery), pause);
+    } else {
+      scheduler.submit(delivery.getHost(), () -> sendOrComplete(delivery), delivery::complete);
+    }
+  }
+
+  private void sendOrComplete(Delivery delivery) {
+    try {
+      send(delivery);
+    } catch (RuntimeException e) {
+      // nobody must wait for a delivery, which cannot finish regularly
+      delivery.complete();
+      throw e;
+    }
+  }
 
+  static String hostOf(String url) {
     try {
-      webHook
-        .getHttpMethod()
-        .create(httpClient, webHook.getUrl(), webHook.getPayload())
-        .headers(webHook.getHeaders())
-        .accept(webHook.getPrepare())
-        .execute();
+      String authority = new URI(url).getAuthority();
+      if (authority != null) {
+        return authority;
+      }
+    } catch (URISyntaxException e) {
+      LOG.debug("could not parse url {}", url, e);
+    }
+    return UNKNOWN_HOST;
+  }
+
+  private void send(Delivery delivery) {
+    String url = delivery.getUrl();
+    String host = delivery.getHost();
+    if (!circuitBreakers.tryAcquire(host)) {
+      LOG.warn("skipping webhook for url {}, because the circuit breaker for host {} is open", url, host);
+      history.record(delivery, NO_RESPONSE, 0, -1, "circuit breaker for host " + host + " is open");
+      retryOrGiveUp(delivery, NO_RESPONSE);
+      return;
+    }
+
+    LOG.info("execute webhook for url {}", url);
+
+    int statusCode = NO_RESPONSE;
+    long retryAfter = 0;
+    boolean failed = true;
+    String error = null;
+    long start = metrics.requestStarted(delivery);
+    long sent = System.nanoTime();
+    try {
+      statusCode = delivery.getRequest().execute();
+      if (statusCode == TOO_MANY_REQUESTS) {
+        retryAfter = pauseHost(delivery);
+      }
+      failed = isServerError(statusCode);
     } catch (IOException ex) {
-      LOG.error("error during webhook execution for {}", webHook.getUrl(), ex);
+      LOG.error("error during webhook execution for {}", url, ex);
+      error = ex.toString();
+    } finally {
+      metrics.requestFinished(delivery, statusCode, start);
+      history.record(delivery, statusCode, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sent), delivery.getRequest().getResponseSize(), error);
+      if (failed) {
+        circuitBreakers.onFailure(host);
+      } else {
+        circuitBreakers.onSuccess(host);
+      }
+    }
+
+    if (isSuccessful(statusCode)) {
+      outbox.markDone(delivery.getOutboxEntryId());
+      delivery.complete();
+    } else if (retryAfter > 0 && delivery.getAttempt() < MAX_RATE_LIMITED_ATTEMPTS) {
+      // the receiver has told us when to try again, so the request is sent again regardless of its retry policy
+      LOG.info("sending webhook for url {} again after the pause requested by host {}", url, host);
+      retryScheduler.schedule(() -> submit(delivery.nextAttempt()), retryAfter);
+    } else {
+      retryOrGiveUp(delivery, statusCode);
+    }
+  }
+
+  /**
+   * Pauses the host of the delivery, if the receiver asked for it, and returns the length of the pause in
+   * milliseconds or 0.
+   */
+  private long pauseHost(Delivery delivery) {
+    long retryAfter = delivery.getRequest().getRetryAfterMillis();
+    if (retryAfter <= 0) {
+      return 0;
+    }
+    LOG.warn("host {} asked to pause webhooks for {} ms", delivery.getHost(), retryAfter);
+    rateLimiter.pause(delivery.getHost(), retryAfter);
+    return Math.min(retryAfter, WebHookRateLimiter.MAX_PAUSE_MILLIS);
+  }
+
+  private void retryOrGiveUp(Delivery delivery, int statusCode) {
+    RetryPolicy retryPolicy = delivery.getRetryPolicy();
+    if (retryPolicy == null) {
+      outbox.markDone(delivery.getOutboxEntryId());
+      delivery.complete();
+      return;
     }
+    int attempt = delivery.getAttempt();
+    if (!retryPolicy.retriesStatusCode(statusCode) || attempt >= retryPolicy.getMaxAttempts()) {
+      LOG.warn("giving up webhook for url {} after {} attempt(s)", delivery.getUrl(), attempt);
+      outbox.markDone(delivery.getOutboxEntryId());
+      delivery.complete();
+      return;
+    }
+    long delay = retryPolicy.delayAfterAttempt(attempt, ThreadLocalRandom.current().nextDouble());
+    LOG.info("retrying webhook for url {} in {} ms (attempt {} of {})", delivery.getUrl(), delay, attempt + 1, retryPolicy.getMaxAttempts());
+    retryScheduler.schedule(() -> submit(delivery.nextAttempt()), delay);
+  }
+
+  private static boolean isSuccessful(int statusCode) {
+    return statusCode >= 200 && statusCode < 300;
+  }
+
+  private static boolean isServerError(int statusCode) {
+    return statusCode >= 500;
   }
 }
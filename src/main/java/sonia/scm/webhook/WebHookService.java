@@ -23,6 +23,9 @@ import sonia.scm.webhook.execution.WebHookExecution;
 import java.util.List;
 
 public final class WebHookService {
+
+  private static final XmlConfiguration.WebHookConfigurationXmlAdapter ADAPTER = new XmlConfiguration.WebHookConfigurationXmlAdapter();
+
   private final WebHookContext context;
   private final WebHookSender sender;
 
@@ -32,6 +35,10 @@ public final class WebHookService {
     this.sender = sender;
   }
 
+  /**
+   * Returns copies of the configurations of the given type, so that changes of them do not affect the cached
+   * configurations of the webhooks.
+   */
   @SuppressWarnings("unchecked")
   public <T extends SingleWebHookConfiguration> List<T> getConfigurations(Class<T> configurationType, Repository repository) {
     WebHookConfiguration configurations = context.getAllConfigurations(repository);
@@ -40,9 +47,18 @@ public final class WebHookService {
       .stream()
       .filter(w -> w.isConfigurationFor(configurationType))
       .map(WebHook::getConfiguration)
+      .map(WebHookService::copy)
       .toList();
   }
 
+  private static SingleWebHookConfiguration copy(SingleWebHookConfiguration configuration) {
+    try {
+      return ADAPTER.unmarshal(ADAPTER.marshal(configuration));
+    } catch (Exception e) {
+      throw new IllegalStateException("could not copy webhook configuration of type " + configuration.getClass().getName(), e);
+    }
+  }
+
   public void execute(WebHookExecution execution) {
     sender.execute(execution);
   }
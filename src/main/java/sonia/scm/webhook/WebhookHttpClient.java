@@ -16,28 +16,68 @@
 
 package sonia.scm.webhook;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import jakarta.inject.Inject;
 import jakarta.inject.Provider;
+import jakarta.inject.Singleton;
+import jakarta.ws.rs.core.MediaType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.net.HttpURLConnectionFactory;
 import sonia.scm.net.ahc.AdvancedHttpClient;
+import sonia.scm.net.ahc.AdvancedHttpRequestWithBody;
+import sonia.scm.net.ahc.Content;
+import sonia.scm.net.ahc.ContentTransformer;
+import sonia.scm.repository.Changeset;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+@Singleton
 class WebhookHttpClient {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WebhookHttpClient.class);
+
+  private static final long MAX_CACHED_PAYLOAD_BYTES = 64L * 1024 * 1024;
+
   private final Provider<AdvancedHttpClient> clientProvider;
+  private final HttpURLConnectionFactory connectionFactory;
+  private final WebHookContext context;
+  private final Set<ContentTransformer> transformers;
+
+  /**
+   * Serialized payloads by the identity of the payload object. Webhooks triggered by the same push share their
+   * payload objects (see {@link ChangesetSnapshot}), so every distinct payload is serialized only once and the same
+   * bytes are written to all requests. Entries are dropped, once the payload object is no longer referenced.
+   */
+  private final Cache<Object, byte[]> serializedPayloads = CacheBuilder.newBuilder()
+    .weakKeys()
+    .maximumWeight(MAX_CACHED_PAYLOAD_BYTES)
+    .weigher((Object payload, byte[] serialized) -> serialized.length)
+    .build();
 
   @Inject
-  WebhookHttpClient(Provider<AdvancedHttpClient> clientProvider) {
+  WebhookHttpClient(Provider<AdvancedHttpClient> clientProvider, HttpURLConnectionFactory connectionFactory, WebHookContext context, Set<ContentTransformer> transformers) {
     this.clientProvider = clientProvider;
+    this.connectionFactory = connectionFactory;
+    this.context = context;
+    this.transformers = transformers;
   }
 
   WebhookRequest post(String url, Object data) {
     if (data != null) {
-      return new WebhookRequestWithContent(clientProvider.get().post(url).jsonContent(data));
+      return jsonContent(clientProvider.get().post(url), data);
     }
     return new WebhookRequest(clientProvider.get().post(url));
   }
 
   WebhookRequest put(String url, Object data) {
     if (data != null) {
-      return new WebhookRequestWithContent(clientProvider.get().put(url).jsonContent(data));
+      return jsonContent(clientProvider.get().put(url), data);
     }
     return new WebhookRequest(clientProvider.get().put(url));
   }
@@ -52,4 +92,68 @@ class WebhookHttpClient {
     }
     return get(url);
   }
+
+  /**
+   * Creates a request with an already serialized body, e.g. for deliveries recovered from the {@link Outbox}.
+   */
+  WebhookRequest create(String method, String url, byte[] body) {
+    AdvancedHttpClient client = clientProvider.get();
+    if ("GET".equalsIgnoreCase(method)) {
+      return new WebhookRequest(client.get(url));
+    }
+    AdvancedHttpRequestWithBody request = "PUT".equalsIgnoreCase(method) ? client.put(url) : client.post(url);
+    if (body != null) {
+      return new WebhookRequestWithContent(request.rawContent(body), body);
+    }
+    return new WebhookRequest(request);
+  }
+
+  private WebhookRequest jsonContent(AdvancedHttpRequestWithBody request, Object data) {
+    if (isStreamed(data)) {
+      Optional<ContentTransformer> transformer = transformers.stream()
+        .filter(t -> t.isResponsible(Changeset.class, MediaType.APPLICATION_JSON))
+        .findFirst();
+      if (transformer.isPresent()) {
+        StreamingChangesets content = new StreamingChangesets(((Changesets) data).getChangesets(), transformer.get());
+        return new StreamingWebhookRequest(request.contentType(MediaType.APPLICATION_JSON), content, connectionFactory);
+      }
+      LOG.debug("found no json transformer for changesets, payload will not be streamed");
+    }
+    byte[] serialized = serializedPayloads.getIfPresent(data);
+    if (serialized != null) {
+      return new WebhookRequestWithContent(request.rawContent(serialized).contentType(MediaType.APPLICATION_JSON), serialized);
+    }
+    // concurrent requests for the same payload may serialize it more than once, which is cheaper than blocking them
+    request.jsonContent(data);
+    serialized = serialize(request.getContent());
+    if (serialized != null) {
+      serializedPayloads.put(data, serialized);
+    }
+    return new WebhookRequestWithContent(request, serialized);
+  }
+
+  private boolean isStreamed(Object data) {
+    if (!(data instanceof Changesets)) {
+      return false;
+    }
+    Iterable<Changeset> changesets = ((Changesets) data).getChangesets();
+    int threshold = context.getDispatchConfiguration().getStreamingPayloadThreshold();
+    return threshold > 0
+      && changesets instanceof Collection
+      && ((Collection<?>) changesets).size() >= threshold;
+  }
+
+  private static byte[] serialize(Content content) {
+    if (content == null) {
+      return null;
+    }
+    try {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      content.process(output);
+      return output.toByteArray();
+    } catch (IOException e) {
+      LOG.debug("could not read serialized payload, it will not be shared", e);
+      return null;
+    }
+  }
 }
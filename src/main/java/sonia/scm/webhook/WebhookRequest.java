@@ -16,13 +16,22 @@
 
 package sonia.scm.webhook;
 
+import com.google.common.collect.Multimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sonia.scm.net.ahc.AdvancedHttpResponse;
 import sonia.scm.net.ahc.BaseHttpRequest;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 class WebhookRequest {
 
@@ -30,6 +39,8 @@ class WebhookRequest {
   private static final Logger LOG = LoggerFactory.getLogger(WebhookRequest.class);
 
   private final BaseHttpRequest<?> request;
+  private volatile long responseSize = -1;
+  private volatile long retryAfterMillis = -1;
 
   WebhookRequest(BaseHttpRequest<?> request) {
     this.request = request;
@@ -47,19 +58,119 @@ class WebhookRequest {
     return this;
   }
 
+  WebhookRequest rawHeaders(Multimap<String, String> headers) {
+    headers.forEach(request::header);
+    return this;
+  }
+
   WebhookRequest accept(Consumer<BaseHttpRequest<?>> function) {
     function.accept(request);
     return this;
   }
 
-  void execute() throws IOException {
+  String getMethod() {
+    return request.getMethod();
+  }
+
+  String getUrl() {
+    return request.getUrl();
+  }
+
+  Multimap<String, String> getHeaders() {
+    return request.getHeaders();
+  }
+
+  /**
+   * Returns {@code true}, if the request can be journaled in the {@link Outbox} and archived in the
+   * {@link DeliveryArchive}.
+   */
+  boolean isJournaled() {
+    return true;
+  }
+
+  /**
+   * Returns the serialized body of the request or {@code null}, if the request has no body.
+   */
+  byte[] getBody() throws IOException {
+    return null;
+  }
+
+  /**
+   * Returns the size of the body in bytes, {@code 0} if the request has no body, or {@code -1} if the size is not
+   * known without serializing the body.
+   */
+  long getContentLength() {
+    return 0;
+  }
+
+  /**
+   * Returns the size of the body of the last response as announced by the receiver, or {@code -1} if it is not known.
+   */
+  long getResponseSize() {
+    return responseSize;
+  }
+
+  /**
+   * Returns the time in milliseconds the receiver asked to wait with a {@code Retry-After} header in the last response,
+   * or {@code -1} if it did not.
+   */
+  long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+
+  int execute() throws IOException {
+    AdvancedHttpResponse response = request.spanKind(SPAN_KIND).request();
+    return completed(response.getStatus(), response::getFirstHeader);
+  }
+
+  /**
+   * Records the response of the receiver.
+   *
+   * @param headers returns the first value of the response header with the given name or {@code null}
+   */
+  int completed(int statusCode, UnaryOperator<String> headers) {
     String url = request.getUrl();
-    int statusCode = request.spanKind(SPAN_KIND).request().getStatus();
+    responseSize = contentLengthOf(headers.apply("Content-Length"));
+    retryAfterMillis = retryAfterOf(headers.apply("Retry-After"));
 
     if ((statusCode >= 200) && (statusCode < 300)) {
       LOG.info("webhook {} ended successfully with status code {}", url, statusCode);
     } else {
       LOG.warn("webhook {} failed with statusCode {}", url, statusCode);
     }
+    return statusCode;
+  }
+
+  /**
+   * Parses the {@code Retry-After} header, which is either a number of seconds or a http date.
+   */
+  private static long retryAfterOf(String retryAfter) {
+    if (retryAfter == null || retryAfter.isBlank()) {
+      return -1;
+    }
+    String value = retryAfter.trim();
+    try {
+      return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+    } catch (NumberFormatException e) {
+      // not a number of seconds, so it has to be a date
+    }
+    try {
+      Instant until = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+      return Math.max(0, Duration.between(Instant.now(), until).toMillis());
+    } catch (DateTimeParseException e) {
+      LOG.debug("could not parse Retry-After header {}", value);
+      return -1;
+    }
+  }
+
+  private static long contentLengthOf(String contentLength) {
+    if (contentLength == null || contentLength.isEmpty()) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(contentLength.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
   }
 }
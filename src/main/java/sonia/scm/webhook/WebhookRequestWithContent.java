@@ -17,13 +17,26 @@
 package sonia.scm.webhook;
 
 import sonia.scm.net.ahc.AdvancedHttpRequestWithBody;
+import sonia.scm.net.ahc.Content;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 
 class WebhookRequestWithContent extends WebhookRequest {
   private final AdvancedHttpRequestWithBody request;
+  private final byte[] body;
 
   WebhookRequestWithContent(AdvancedHttpRequestWithBody request) {
+    this(request, null);
+  }
+
+  /**
+   * @param body the serialized content of the request, if it is already known
+   */
+  WebhookRequestWithContent(AdvancedHttpRequestWithBody request, byte[] body) {
     super(request);
     this.request = request;
+    this.body = body;
   }
 
   @Override
@@ -31,4 +44,23 @@ class WebhookRequestWithContent extends WebhookRequest {
     request.header(header.getKey(), header.getValue(request.getContent()));
     return this;
   }
+
+  @Override
+  long getContentLength() {
+    return body != null ? body.length : -1;
+  }
+
+  @Override
+  byte[] getBody() throws IOException {
+    if (body != null) {
+      return body;
+    }
+    Content content = request.getContent();
+    if (content == null) {
+      return null;
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    content.process(output);
+    return output.toByteArray();
+  }
 }
@@ -28,11 +28,16 @@ import org.w3c.dom.Element;
 import javax.xml.XMLConstants;
 import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+import jakarta.xml.bind.Unmarshaller;
 import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
 import jakarta.xml.bind.annotation.XmlAnyElement;
 import jakarta.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 
 /**
  * XML representation of {@link WebHook#configuration}.
@@ -48,20 +53,32 @@ class XmlConfiguration {
 
   public static class WebHookConfigurationXmlAdapter extends XmlAdapter<XmlConfiguration, SingleWebHookConfiguration> {
 
-    private static final LoadingCache<Class<?>, JAXBContext> cache = CacheBuilder.newBuilder()
+    private static final LoadingCache<Class<?>, JaxbPool> cache = CacheBuilder.newBuilder()
       .maximumSize(1000)
       .build(
-        new CacheLoader<Class<?>, JAXBContext>() {
+        new CacheLoader<Class<?>, JaxbPool>() {
           @Override
-          public JAXBContext load(Class<?> c) throws JAXBException {
-            return JAXBContext.newInstance(c);
+          public JaxbPool load(Class<?> c) throws JAXBException {
+            return new JaxbPool(JAXBContext.newInstance(c));
           }
         });
 
+    private static final DocumentBuilderFactory documentBuilderFactory = createDocumentBuilderFactory();
+    private static final Pool<DocumentBuilder> documentBuilders = new Pool<>(() -> {
+      synchronized (documentBuilderFactory) {
+        return documentBuilderFactory.newDocumentBuilder();
+      }
+    });
+
     @Override
     public SingleWebHookConfiguration unmarshal(XmlConfiguration internal) throws Exception {
-      JAXBContext jaxbContext = cache.get(internal.configurationType);
-      return (SingleWebHookConfiguration) jaxbContext.createUnmarshaller().unmarshal(internal.configuration);
+      Pool<Unmarshaller> unmarshallers = cache.get(internal.configurationType).unmarshallers;
+      Unmarshaller unmarshaller = unmarshallers.borrow();
+      try {
+        return (SingleWebHookConfiguration) unmarshaller.unmarshal(internal.configuration);
+      } finally {
+        unmarshallers.release(unmarshaller);
+      }
     }
 
     @Override
@@ -71,19 +88,80 @@ class XmlConfiguration {
       }
       Class<?> configurationType = configuration.getClass();
 
+      Document document = newDocument();
+
+      Pool<Marshaller> marshallers = cache.get(configuration.getClass()).marshallers;
+      Marshaller marshaller = marshallers.borrow();
+      try {
+        marshaller.marshal(configuration, document);
+      } finally {
+        marshallers.release(marshaller);
+      }
+
+      Element configurationAsElement = document.getDocumentElement();
+
+      return new XmlConfiguration(configurationType, configurationAsElement);
+    }
+
+    private static Document newDocument() throws Exception {
+      DocumentBuilder documentBuilder = documentBuilders.borrow();
+      try {
+        return documentBuilder.newDocument();
+      } finally {
+        documentBuilder.reset();
+        documentBuilders.release(documentBuilder);
+      }
+    }
+
+    private static DocumentBuilderFactory createDocumentBuilderFactory() {
       DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
       factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
       factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
       factory.setAttribute(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      return factory;
+    }
+  }
 
-      Document document = factory.newDocumentBuilder().newDocument();
+  /**
+   * Marshallers and unmarshallers are not thread safe, but expensive to create. So we keep a few of them for every
+   * configuration type.
+   */
+  private static class JaxbPool {
 
-      JAXBContext jaxbContext = cache.get(configuration.getClass());
-      jaxbContext.createMarshaller().marshal(configuration, document);
+    private final Pool<Marshaller> marshallers;
+    private final Pool<Unmarshaller> unmarshallers;
 
-      Element configurationAsElement = document.getDocumentElement();
+    JaxbPool(JAXBContext context) {
+      this.marshallers = new Pool<>(context::createMarshaller);
+      this.unmarshallers = new Pool<>(context::createUnmarshaller);
+    }
+  }
 
-      return new XmlConfiguration(configurationType, configurationAsElement);
+  static class Pool<T> {
+
+    private static final int MAX_IDLE = 8;
+
+    private final Queue<T> idle = new ArrayBlockingQueue<>(MAX_IDLE);
+    private final Factory<T> factory;
+
+    Pool(Factory<T> factory) {
+      this.factory = factory;
+    }
+
+    T borrow() throws Exception {
+      T instance = idle.poll();
+      if (instance == null) {
+        return factory.create();
+      }
+      return instance;
+    }
+
+    void release(T instance) {
+      idle.offer(instance);
+    }
+
+    interface Factory<T> {
+      T create() throws Exception;
     }
   }
 }
@@ -23,6 +23,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import sonia.scm.net.ahc.BaseHttpRequest;
 import sonia.scm.webhook.HttpMethod;
+import sonia.scm.webhook.RateLimit;
+import sonia.scm.webhook.RetryPolicy;
 import sonia.scm.webhook.WebHookExecutionHeader;
 
 import java.util.List;
@@ -40,6 +42,8 @@ public class WebHookExecution {
   private Object payload;
   private MediaType payloadType;
   private Consumer<BaseHttpRequest<?>> prepare;
+  private RetryPolicy retryPolicy;
+  private RateLimit rateLimit;
 
   public Consumer<BaseHttpRequest<?>> getPrepare() {
     return prepare == null?  request -> {} : prepare;
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook.internal;
+
+import com.google.inject.Inject;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import sonia.scm.api.v2.resources.ErrorDto;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.web.VndMediaType;
+import sonia.scm.webhook.CircuitBreakerStatus;
+import sonia.scm.webhook.CircuitBreakers;
+import sonia.scm.webhook.WebHookContext;
+
+import java.util.List;
+
+import static de.otto.edison.hal.Links.linkingTo;
+
+@Path(CircuitBreakerResource.PATH)
+public class CircuitBreakerResource {
+
+  public static final String PATH = WebHookResource.PATH + "/circuit-breakers";
+
+  private final CircuitBreakers circuitBreakers;
+  private final ScmPathInfoStore scmPathInfoStore;
+
+  @Inject
+  public CircuitBreakerResource(CircuitBreakers circuitBreakers, ScmPathInfoStore scmPathInfoStore) {
+    this.circuitBreakers = circuitBreakers;
+    this.scmPathInfoStore = scmPathInfoStore;
+  }
+
+  @GET
+  @Path("")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Get circuit breakers",
+    description = "Returns the state of the circuit breaker for every host webhooks have been sent to.",
+    tags = "Webhook Plugin",
+    operationId = "webhook_get_circuit_breakers"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = CircuitBreakersDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"configuration:read:webhook\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public CircuitBreakersDto getCircuitBreakers() {
+    WebHookContext.checkReadPermission();
+    List<CircuitBreakerDto> dtos = circuitBreakers.getStatus()
+      .stream()
+      .map(this::map)
+      .toList();
+    WebHookConfigurationResourceLinks resourceLinks = new WebHookConfigurationResourceLinks(scmPathInfoStore.get());
+    return new CircuitBreakersDto(linkingTo().self(resourceLinks.circuitBreakers.self()).build(), dtos);
+  }
+
+  private CircuitBreakerDto map(CircuitBreakerStatus status) {
+    return new CircuitBreakerDto(
+      status.getHost(),
+      status.getState(),
+      status.getRecordedDeliveries(),
+      status.getFailureRate(),
+      status.getOpenUntil()
+    );
+  }
+}
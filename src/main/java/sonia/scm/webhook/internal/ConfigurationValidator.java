@@ -16,6 +16,7 @@
 
 package sonia.scm.webhook.internal;
 
+import com.google.inject.Singleton;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Validation;
@@ -23,10 +24,26 @@ import jakarta.validation.Validator;
 import jakarta.validation.ValidatorFactory;
 import java.util.Set;
 
+/**
+ * Validates webhook configurations. The validator is created only once, because bootstrapping the validation
+ * provider is expensive.
+ */
+@Singleton
 class ConfigurationValidator {
-  void validate(Object configuration) {
+
+  private final Validator validator;
+
+  ConfigurationValidator() {
     ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
-    Validator validator = factory.getValidator();
+    this.validator = factory.getValidator();
+  }
+
+  /**
+   * Validates the configuration including all nested objects marked with {@link jakarta.validation.Valid}, so that the
+   * violations of all webhooks of a {@link sonia.scm.webhook.WebHookConfiguration} are reported together with the path
+   * of their webhook (e.g. {@code webhooks[1].configuration.retryPolicy.maxAttempts}).
+   */
+  void validate(Object configuration) {
     Set<ConstraintViolation<Object>> violations = validator.validate(configuration);
     if (!violations.isEmpty()) {
       throw new ConstraintViolationException(violations);
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook.internal;
+
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import sonia.scm.api.v2.resources.ErrorDto;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.web.VndMediaType;
+import sonia.scm.webhook.DeliveryHistory;
+import sonia.scm.webhook.DeliveryRecord;
+import sonia.scm.webhook.WebHookContext;
+import sonia.scm.webhook.WebHookReplayer;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static de.otto.edison.hal.Links.linkingTo;
+
+@Path(DeliveryHistoryResource.PATH)
+public class DeliveryHistoryResource {
+
+  public static final String PATH = WebHookResource.PATH + "/deliveries";
+
+  private static final int MAX_PAGE_SIZE = 100;
+
+  private final DeliveryHistory history;
+  private final WebHookReplayer replayer;
+  private final RepositoryManager repositoryManager;
+  private final ScmPathInfoStore scmPathInfoStore;
+
+  @Inject
+  public DeliveryHistoryResource(DeliveryHistory history, WebHookReplayer replayer, RepositoryManager repositoryManager, ScmPathInfoStore scmPathInfoStore) {
+    this.history = history;
+    this.replayer = replayer;
+    this.repositoryManager = repositoryManager;
+    this.scmPathInfoStore = scmPathInfoStore;
+  }
+
+  @GET
+  @Path("/{namespace}/{name}")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Get webhook deliveries",
+    description = "Returns the latest delivery attempts of the webhooks of the repository, the latest attempt first.",
+    tags = "Webhook Plugin",
+    operationId = "webhook_get_deliveries"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = DeliveriesDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"configuration:read:webhook\" privilege")
+  @ApiResponse(
+    responseCode = "404",
+    description = "not found, no repository with the specified namespace and name available",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    ))
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public DeliveriesDto getDeliveries(@PathParam("namespace") String namespace,
+                                     @PathParam("name") String name,
+                                     @DefaultValue("0") @QueryParam("page") int requestedPage,
+                                     @DefaultValue("10") @QueryParam("pageSize") int requestedPageSize,
+                                     @Parameter(description = "only deliveries of the webhook with this id") @QueryParam("webhookId") String webHookId,
+                                     @Parameter(description = "only successful (true) or failed (false) deliveries") @QueryParam("successful") Boolean successful) {
+    Repository repository = repositoryManager.get(new NamespaceAndName(namespace, name));
+    WebHookContext.checkReadPermission(repository);
+    int page = Math.max(requestedPage, 0);
+    int pageSize = Math.min(Math.max(requestedPageSize, 1), MAX_PAGE_SIZE);
+
+    List<DeliveryRecord> deliveries = history.getDeliveries(repository)
+      .stream()
+      .filter(filter(webHookId, successful))
+      .toList();
+    List<DeliveryDto> dtos = deliveries.stream()
+      .skip((long) page * pageSize)
+      .limit(pageSize)
+      .map(this::map)
+      .toList();
+    int pageTotal = (deliveries.size() + pageSize - 1) / pageSize;
+
+    WebHookConfigurationResourceLinks resourceLinks = new WebHookConfigurationResourceLinks(scmPathInfoStore.get());
+    return new DeliveriesDto(linkingTo().self(resourceLinks.deliveries.self(namespace, name)).build(), page, pageTotal, dtos);
+  }
+
+  @POST
+  @Path("/{namespace}/{name}/{sequence}/redeliver")
+  @Operation(
+    summary = "Redeliver webhook",
+    description = "Sends the request of a recorded delivery once again.",
+    tags = "Webhook Plugin",
+    operationId = "webhook_redeliver"
+  )
+  @ApiResponse(responseCode = "202", description = "the request has been scheduled for redelivery")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"configuration:write:webhook\" privilege")
+  @ApiResponse(
+    responseCode = "404",
+    description = "not found, no repository with the specified namespace and name or no redeliverable delivery with this sequence available",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    ))
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response redeliver(@PathParam("namespace") String namespace, @PathParam("name") String name, @PathParam("sequence") long sequence) {
+    Repository repository = repositoryManager.get(new NamespaceAndName(namespace, name));
+    WebHookContext.checkWritePermission(repository);
+    replayer.redeliver(repository, sequence);
+    return Response.accepted().build();
+  }
+
+  @POST
+  @Path("/replay")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Replay failed webhooks",
+    description = "Sends the requests to a host once again, whose latest delivery attempt in the time window has failed.",
+    tags = "Webhook Plugin",
+    operationId = "webhook_replay_failed"
+  )
+  @ApiResponse(
+    responseCode = "202",
+    description = "the requests have been scheduled for replay",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = ReplayDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "missing host or invalid time window")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the \"configuration:write:webhook\" privilege")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response replayFailed(@Parameter(description = "host (and port) the requests were sent to") @QueryParam("host") String host,
+                               @Parameter(description = "start of the time window (ISO-8601), defaults to the oldest delivery") @QueryParam("from") String from,
+                               @Parameter(description = "end of the time window (ISO-8601), defaults to now") @QueryParam("to") String to) {
+    WebHookContext.checkWritePermission();
+    if (Strings.isNullOrEmpty(host)) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    Instant start;
+    Instant end;
+    try {
+      start = parse(from, Instant.MIN);
+      end = parse(to, Instant.MAX);
+    } catch (DateTimeParseException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    int replayed = replayer.replayFailed(host, start, end);
+    return Response.accepted(new ReplayDto(replayed)).build();
+  }
+
+  private static Instant parse(String value, Instant defaultValue) {
+    return Strings.isNullOrEmpty(value) ? defaultValue : Instant.parse(value);
+  }
+
+  private static Predicate<DeliveryRecord> filter(String webHookId, Boolean successful) {
+    Predicate<DeliveryRecord> filter = delivery -> true;
+    if (webHookId != null) {
+      filter = filter.and(delivery -> webHookId.equals(delivery.getWebHookId()));
+    }
+    if (successful != null) {
+      filter = filter.and(delivery -> delivery.isSuccessful() == successful);
+    }
+    return filter;
+  }
+
+  private DeliveryDto map(DeliveryRecord delivery) {
+    return new DeliveryDto(
+      delivery.getSequence(),
+      delivery.getTimestamp(),
+      delivery.getWebHookId(),
+      delivery.getUrl(),
+      delivery.getStatusCode() < 0 ? null : delivery.getStatusCode(),
+      delivery.getLatencyMillis(),
+      delivery.getResponseSize() < 0 ? null : delivery.getResponseSize(),
+      delivery.getAttempt(),
+      delivery.isSuccessful(),
+      delivery.isRedeliverable(),
+      delivery.getError()
+    );
+  }
+}
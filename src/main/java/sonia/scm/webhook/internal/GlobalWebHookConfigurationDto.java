@@ -16,5 +16,15 @@
 
 package sonia.scm.webhook.internal;
 
+import jakarta.validation.Valid;
+import lombok.Getter;
+import lombok.Setter;
+import sonia.scm.webhook.DispatchConfiguration;
+
+@Getter
+@Setter
 public class GlobalWebHookConfigurationDto extends WebHookConfigurationDto {
+
+  @Valid
+  private DispatchConfiguration dispatch;
 }
@@ -20,11 +20,15 @@ import sonia.scm.api.v2.resources.LinkBuilder;
 import sonia.scm.api.v2.resources.ScmPathInfo;
 
 public class WebHookConfigurationResourceLinks {
+  private final ScmPathInfo scmPathInfo;
   private final LinkBuilder linkBuilder;
   public final GlobalConfigurationLinks globalConfigurations = new GlobalConfigurationLinks();
   public final RepositoryConfigurationLinks repositoryConfigurations = new RepositoryConfigurationLinks();
+  public final CircuitBreakerLinks circuitBreakers = new CircuitBreakerLinks();
+  public final DeliveryLinks deliveries = new DeliveryLinks();
 
   public WebHookConfigurationResourceLinks(ScmPathInfo scmPathInfo) {
+    this.scmPathInfo = scmPathInfo;
     this.linkBuilder = new LinkBuilder(scmPathInfo, WebHookResource.class);
   }
 
@@ -57,4 +61,22 @@ public class WebHookConfigurationResourceLinks {
         .href();
     }
   }
+
+  public class CircuitBreakerLinks {
+
+    public String self() {
+      return new LinkBuilder(scmPathInfo, CircuitBreakerResource.class)
+        .method("getCircuitBreakers").parameters()
+        .href();
+    }
+  }
+
+  public class DeliveryLinks {
+
+    public String self(String namespace, String name) {
+      return new LinkBuilder(scmPathInfo, DeliveryHistoryResource.class)
+        .method("getDeliveries").parameters(namespace, name)
+        .href();
+    }
+  }
 }
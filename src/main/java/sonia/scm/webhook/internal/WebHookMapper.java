@@ -16,8 +16,9 @@
 
 package sonia.scm.webhook.internal;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import de.otto.edison.hal.Links;
 import org.mapstruct.AfterMapping;
 import org.mapstruct.Context;
@@ -36,13 +37,25 @@ import sonia.scm.webhook.WebHookConfiguration;
 import sonia.scm.webhook.WebHookContext;
 
 import jakarta.inject.Inject;
+import java.io.IOException;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static de.otto.edison.hal.Link.link;
 
 @Mapper
 public abstract class WebHookMapper implements InstantAttributeMapper {
 
+  /**
+   * Shared mapper for the configurations of all specifications, so that the serializers are only created once. The
+   * write side needs no cache of its own: {@link ObjectMapper#valueToTree(Object)} looks up the serializer of the
+   * type in the serializer cache of this mapper, which keeps it after the first call. Readers are cached, because
+   * {@link ObjectMapper#readerFor(Class)} creates a new reader on every call.
+   */
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
   @Inject
   AvailableWebHookSpecifications availableSpecifications;
 
@@ -59,6 +72,7 @@ public abstract class WebHookMapper implements InstantAttributeMapper {
   public abstract WebHookConfigurationDto map(WebHookConfiguration configuration, @Context Repository repository);
 
   @Mapping(ignore = true, target = "attributes")
+  @Mapping(ignore = true, target = "dispatch")
   public abstract GlobalWebHookConfigurationDto map(WebHookConfiguration configuration);
 
   @Mapping(ignore = true, target = "merge")
@@ -71,7 +85,7 @@ public abstract class WebHookMapper implements InstantAttributeMapper {
     Optional<DtoAdapterWebHookSpecification> specification = availableSpecifications.specificationFor(webHook.getName());
     specification
       .map(spec -> spec.mapToDto(webHook.getConfiguration()))
-      .ifPresent(dtoSpec -> dto.setConfiguration(new ObjectMapper().valueToTree(dtoSpec)));
+      .ifPresent(dtoSpec -> dto.setConfiguration(OBJECT_MAPPER.valueToTree(dtoSpec)));
     dto.setUnknown(specification.isEmpty());
     return dto;
   }
@@ -87,16 +101,25 @@ public abstract class WebHookMapper implements InstantAttributeMapper {
   }
 
   private SingleWebHookConfiguration parseConfiguration(WebHookDto dto, DtoAdapterWebHookSpecification specification) {
-    SingleWebHookConfiguration configuration;
     try {
-      configuration = specification.mapFromDto(new ObjectMapper().treeToValue(dto.getConfiguration(), specification.getDtoType()));
-      configurationValidator.validate(configuration);
-      return configuration;
-    } catch (JsonProcessingException e) {
+      return specification.mapFromDto(readConfiguration(dto.getConfiguration(), specification.getDtoType()));
+    } catch (IOException e) {
       throw new InvalidConfigurationException(specification, e);
     }
   }
 
+  private static Object readConfiguration(JsonNode configuration, Class<?> dtoType) throws IOException {
+    if (configuration == null) {
+      return null;
+    }
+    return READERS.computeIfAbsent(dtoType, OBJECT_MAPPER::readerFor).readValue(configuration);
+  }
+
+  @AfterMapping
+  void validate(@MappingTarget WebHookConfiguration configuration) {
+    configurationValidator.validate(configuration);
+  }
+
   @AfterMapping
   void addLinks(@MappingTarget WebHookConfigurationDto dto, @Context Repository repository) {
     WebHookConfigurationResourceLinks resourceLinks = new WebHookConfigurationResourceLinks(scmPathInfoStore.get());
@@ -113,6 +136,7 @@ public abstract class WebHookMapper implements InstantAttributeMapper {
     WebHookConfigurationResourceLinks resourceLinks = new WebHookConfigurationResourceLinks(scmPathInfoStore.get());
     Links.Builder links = Links.linkingTo();
     links.self(resourceLinks.globalConfigurations.self());
+    links.single(link("circuitBreakers", resourceLinks.circuitBreakers.self()));
     if (WebHookContext.isWritePermitted()) {
       links.single(link("update", resourceLinks.globalConfigurations.update()));
     }
@@ -30,6 +30,7 @@ import sonia.scm.repository.RepositoryManager;
 import sonia.scm.web.VndMediaType;
 import sonia.scm.webhook.WebHookContext;
 
+import jakarta.validation.Valid;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
@@ -74,7 +75,7 @@ public class WebHookResource {
     description = "success",
     content = @Content(
       mediaType = MediaType.APPLICATION_JSON,
-      schema = @Schema(implementation = WebHookConfigurationDto.class)
+      schema = @Schema(implementation = GlobalWebHookConfigurationDto.class)
     )
   )
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
@@ -87,9 +88,11 @@ public class WebHookResource {
       schema = @Schema(implementation = ErrorDto.class)
     )
   )
-  public WebHookConfigurationDto getConfiguration() {
+  public GlobalWebHookConfigurationDto getConfiguration() {
     WebHookContext.checkReadPermission();
-    return webHookMapper.map(context.getGlobalConfiguration());
+    GlobalWebHookConfigurationDto dto = webHookMapper.map(context.getGlobalConfiguration());
+    dto.setDispatch(context.getDispatchConfiguration());
+    return dto;
   }
 
   @POST
@@ -112,7 +115,7 @@ public class WebHookResource {
       schema = @Schema(implementation = ErrorDto.class)
     )
   )
-  public void setConfiguration(WebHookConfigurationDto configuration) {
+  public void setConfiguration(@Valid GlobalWebHookConfigurationDto configuration) {
     setConfigurations(configuration);
   }
 
@@ -136,7 +139,7 @@ public class WebHookResource {
       schema = @Schema(implementation = ErrorDto.class)
     )
   )
-  public void updateConfiguration(WebHookConfigurationDto configuration) {
+  public void updateConfiguration(@Valid GlobalWebHookConfigurationDto configuration) {
     setConfigurations(configuration);
   }
 
@@ -244,9 +247,12 @@ public class WebHookResource {
     setRepositoryConfigurations(configuration, namespace, name);
   }
 
-  private void setConfigurations(WebHookConfigurationDto configuration) {
+  private void setConfigurations(GlobalWebHookConfigurationDto configuration) {
     WebHookContext.checkWritePermission();
     context.setGlobalConfiguration(webHookMapper.map(configuration));
+    if (configuration.getDispatch() != null) {
+      context.setDispatchConfiguration(configuration.getDispatch());
+    }
   }
 
   private void setRepositoryConfigurations(WebHookConfigurationDto configuration, String namespace, String name) {
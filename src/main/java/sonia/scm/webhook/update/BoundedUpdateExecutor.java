@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook.update;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.migration.UpdateException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executes the tasks of an update step with a bounded number of workers. The queue is bounded as well and tasks are
+ * run by the submitting thread when it is full, so that the iteration over the stores does not get too far ahead of
+ * the workers. After the first failure, queued tasks are skipped and the failure is thrown by {@link #finish()}.
+ * With a parallelism of 1, all tasks are run by the submitting thread.
+ */
+class BoundedUpdateExecutor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BoundedUpdateExecutor.class);
+
+  /**
+   * System property with the number of workers of update steps. A value of 1 runs all tasks one after another.
+   */
+  static final String PARALLELISM_PROPERTY = "sonia.scm.webhook.update.parallelism";
+  private static final int MAX_DEFAULT_PARALLELISM = 8;
+
+  private final ThreadPoolExecutor executor;
+  private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+  BoundedUpdateExecutor(String name, int parallelism) {
+    if (parallelism <= 1) {
+      this.executor = null;
+      return;
+    }
+    this.executor = new ThreadPoolExecutor(
+      parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(parallelism * 2),
+      new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build(),
+      new ThreadPoolExecutor.CallerRunsPolicy()
+    );
+  }
+
+  static int defaultParallelism() {
+    return Integer.getInteger(PARALLELISM_PROPERTY, Math.min(Runtime.getRuntime().availableProcessors(), MAX_DEFAULT_PARALLELISM));
+  }
+
+  void execute(Task task) {
+    if (executor == null) {
+      run(task);
+    } else {
+      executor.execute(() -> run(task));
+    }
+  }
+
+  private void run(Task task) {
+    if (failure.get() != null) {
+      return;
+    }
+    try {
+      task.run();
+    } catch (Exception e) {
+      failure.compareAndSet(null, e);
+    }
+  }
+
+  /**
+   * Waits until all tasks are done and throws the first failure of any task.
+   */
+  void finish() {
+    if (executor != null) {
+      awaitTermination();
+    }
+    if (failure.get() != null) {
+      throw new UpdateException("failed to update webhook configurations", failure.get());
+    }
+  }
+
+  private void awaitTermination() {
+    executor.shutdown();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOG.info("update of webhook configurations still running, {} tasks queued", executor.getQueue().size());
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new UpdateException("update of webhook configurations has been interrupted", e);
+    }
+  }
+
+  interface Task {
+    void run() throws Exception;
+  }
+}
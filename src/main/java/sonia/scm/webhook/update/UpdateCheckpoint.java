@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook.update;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * File with the ids of all repositories, which have already been updated. If an update is interrupted, the next
+ * run skips these repositories. Ids lost due to a crash before they were written are harmless, because updating a
+ * repository twice does not change anything.
+ */
+class UpdateCheckpoint implements Closeable {
+
+  private final Path file;
+  private final Set<String> done;
+  private final BufferedWriter writer;
+
+  private UpdateCheckpoint(Path file, Set<String> done, BufferedWriter writer) {
+    this.file = file;
+    this.done = done;
+    this.writer = writer;
+  }
+
+  static UpdateCheckpoint open(Path file) throws IOException {
+    Set<String> done = new HashSet<>();
+    if (Files.exists(file)) {
+      for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+        if (!line.isEmpty()) {
+          done.add(line);
+        }
+      }
+    } else {
+      Files.createDirectories(file.getParent());
+    }
+    BufferedWriter writer = Files.newBufferedWriter(
+      file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND
+    );
+    return new UpdateCheckpoint(file, done, writer);
+  }
+
+  int size() {
+    return done.size();
+  }
+
+  boolean isDone(String repositoryId) {
+    return done.contains(repositoryId);
+  }
+
+  synchronized void markDone(String repositoryId) throws IOException {
+    writer.write(repositoryId);
+    writer.newLine();
+    writer.flush();
+  }
+
+  /**
+   * Removes the checkpoint after all repositories have been updated.
+   */
+  void complete() throws IOException {
+    close();
+    Files.deleteIfExists(file);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    writer.close();
+  }
+}
@@ -18,6 +18,10 @@ package sonia.scm.webhook.update;
 
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.SCMContextProvider;
+import sonia.scm.migration.UpdateException;
 import sonia.scm.migration.UpdateStep;
 import sonia.scm.plugin.Extension;
 import sonia.scm.security.KeyGenerator;
@@ -34,8 +38,13 @@ import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
 import jakarta.xml.bind.annotation.XmlElement;
 import jakarta.xml.bind.annotation.XmlRootElement;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -45,23 +54,82 @@ import static sonia.scm.version.Version.parse;
 @Extension
 public class WebhooksExtensibleUpdateStep implements UpdateStep {
 
+  private static final Logger LOG = LoggerFactory.getLogger(WebhooksExtensibleUpdateStep.class);
+
   private static final String STORE_NAME = "webhook";
 
   private final ConfigurationStoreFactory storeFactory;
   private final RepositoryUpdateIterator repositoryUpdateIterator;
   private final KeyGenerator keyGenerator;
+  private final Path checkpointFile;
+  private final int parallelism;
 
   @Inject
-  public WebhooksExtensibleUpdateStep(ConfigurationStoreFactory storeFactory, RepositoryUpdateIterator repositoryUpdateIterator, KeyGenerator keyGenerator) {
+  public WebhooksExtensibleUpdateStep(ConfigurationStoreFactory storeFactory, RepositoryUpdateIterator repositoryUpdateIterator, KeyGenerator keyGenerator, SCMContextProvider contextProvider) {
+    this(
+      storeFactory,
+      repositoryUpdateIterator,
+      keyGenerator,
+      contextProvider.resolve(Paths.get("webhook", "update-2.1.0.checkpoint")),
+      BoundedUpdateExecutor.defaultParallelism()
+    );
+  }
+
+  WebhooksExtensibleUpdateStep(ConfigurationStoreFactory storeFactory, RepositoryUpdateIterator repositoryUpdateIterator, KeyGenerator keyGenerator, Path checkpointFile, int parallelism) {
     this.storeFactory = storeFactory;
     this.repositoryUpdateIterator = repositoryUpdateIterator;
     this.keyGenerator = keyGenerator;
+    this.checkpointFile = checkpointFile;
+    this.parallelism = Math.max(1, parallelism);
   }
 
   @Override
   public void doUpdate() {
     doGlobalUpdate();
-    repositoryUpdateIterator.updateEachRepository(this::doRepositoryUpdate);
+    long start = System.nanoTime();
+    AtomicInteger updated = new AtomicInteger();
+    try (UpdateCheckpoint checkpoint = UpdateCheckpoint.open(checkpointFile)) {
+      if (checkpoint.size() > 0) {
+        LOG.info("resuming update of webhook configurations, skipping {} already updated repositories", checkpoint.size());
+      }
+      RepositoryUpdateIterator.Updater updater = repositoryId -> {
+        if (!checkpoint.isDone(repositoryId)) {
+          doTimedRepositoryUpdate(repositoryId);
+          checkpoint.markDone(repositoryId);
+          updated.incrementAndGet();
+        }
+      };
+      if (parallelism > 1) {
+        updateInParallel(updater);
+      } else {
+        repositoryUpdateIterator.updateEachRepository(updater);
+      }
+      checkpoint.complete();
+    } catch (IOException e) {
+      throw new UpdateException("could not access checkpoint of webhook update " + checkpointFile, e);
+    }
+    LOG.info(
+      "updated webhook configurations of {} repositories in {} ms",
+      updated.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+    );
+  }
+
+  private void updateInParallel(RepositoryUpdateIterator.Updater updater) {
+    BoundedUpdateExecutor executor = new BoundedUpdateExecutor("WebhookUpdate", parallelism);
+    try {
+      repositoryUpdateIterator.updateEachRepository(repositoryId -> executor.execute(() -> updater.update(repositoryId)));
+    } finally {
+      executor.finish();
+    }
+  }
+
+  private void doTimedRepositoryUpdate(String repositoryId) {
+    long start = System.nanoTime();
+    doRepositoryUpdate(repositoryId);
+    LOG.debug(
+      "updated webhook configuration of repository {} in {} ms",
+      repositoryId, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+    );
   }
 
   private void doGlobalUpdate() {
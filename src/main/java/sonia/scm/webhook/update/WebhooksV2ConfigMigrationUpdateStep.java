@@ -16,6 +16,7 @@
 
 package sonia.scm.webhook.update;
 
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,7 +25,6 @@ import sonia.scm.plugin.Extension;
 import sonia.scm.security.KeyGenerator;
 import sonia.scm.store.ConfigurationStore;
 import sonia.scm.store.ConfigurationStoreFactory;
-import sonia.scm.update.V1Properties;
 import sonia.scm.update.V1PropertyDAO;
 import sonia.scm.version.Version;
 import sonia.scm.webhook.SimpleWebHook;
@@ -34,15 +34,14 @@ import sonia.scm.webhook.WebHookConfiguration;
 
 import jakarta.inject.Inject;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static java.util.Arrays.stream;
 import static java.util.Collections.emptyList;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
-import static java.util.stream.Collectors.toSet;
 import static sonia.scm.update.V1PropertyReader.REPOSITORY_PROPERTY_READER;
 import static sonia.scm.version.Version.parse;
 
@@ -51,61 +50,119 @@ public class WebhooksV2ConfigMigrationUpdateStep implements UpdateStep {
 
   private static final Logger LOG = LoggerFactory.getLogger(WebhooksV2ConfigMigrationUpdateStep.class);
 
+  /**
+   * Number of repositories which are migrated by one worker. Each repository has its own store, so the
+   * configurations are still written one after another.
+   */
+  static final int BATCH_SIZE = 100;
+
+  private static final Splitter WEBHOOK_SPLITTER = Splitter.on('|').omitEmptyStrings();
+  private static final Splitter PROPERTY_SPLITTER = Splitter.on(';');
+
   private final V1PropertyDAO v1PropertyDAO;
   private final ConfigurationStoreFactory storeFactory;
   private final KeyGenerator keyGenerator;
+  private final int parallelism;
 
   @Inject
   public WebhooksV2ConfigMigrationUpdateStep(V1PropertyDAO v1PropertyDAO, ConfigurationStoreFactory storeFactory, KeyGenerator keyGenerator) {
+    this(v1PropertyDAO, storeFactory, keyGenerator, BoundedUpdateExecutor.defaultParallelism());
+  }
+
+  WebhooksV2ConfigMigrationUpdateStep(V1PropertyDAO v1PropertyDAO, ConfigurationStoreFactory storeFactory, KeyGenerator keyGenerator, int parallelism) {
     this.v1PropertyDAO = v1PropertyDAO;
     this.storeFactory = storeFactory;
     this.keyGenerator = keyGenerator;
+    this.parallelism = parallelism;
   }
 
   @Override public void doUpdate() {
-    v1PropertyDAO
-      .getProperties(REPOSITORY_PROPERTY_READER)
-      .havingAllOf("webhooks")
-      .forEachEntry((key, properties) ->
-        buildConfig(key, properties).ifPresent(configuration ->
-          setRepositoryConfiguration(configuration, key))
-      );
+    long start = System.nanoTime();
+    MigrationReport report = new MigrationReport();
+    BoundedUpdateExecutor executor = new BoundedUpdateExecutor("WebhookMigration", parallelism);
+    List<V1WebHooks> batch = new ArrayList<>(BATCH_SIZE);
+    try {
+      v1PropertyDAO
+        .getProperties(REPOSITORY_PROPERTY_READER)
+        .havingAllOf("webhooks")
+        .forEachEntry((key, properties) -> {
+          batch.add(new V1WebHooks(key, properties.get("webhooks")));
+          if (batch.size() >= BATCH_SIZE) {
+            List<V1WebHooks> fullBatch = new ArrayList<>(batch);
+            batch.clear();
+            executor.execute(() -> migrate(fullBatch, report));
+          }
+        });
+      if (!batch.isEmpty()) {
+        executor.execute(() -> migrate(batch, report));
+      }
+    } finally {
+      executor.finish();
+    }
+    LOG.info(
+      "migrated {} webhooks of {} repositories in {} ms, skipped {} repositories without webhooks and {} malformed webhooks",
+      report.migratedWebHooks, report.migratedRepositories, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+      report.skippedRepositories, report.malformedWebHooks
+    );
   }
 
-  private Optional<WebHookConfiguration> buildConfig(String repositoryId, V1Properties properties) {
-    LOG.debug("migrating repository specific webhook configuration for repository id {}", repositoryId);
+  private void migrate(List<V1WebHooks> batch, MigrationReport report) {
+    for (V1WebHooks webHooks : batch) {
+      buildConfig(webHooks, report).ifPresent(configuration -> setRepositoryConfiguration(configuration, webHooks.repositoryId));
+    }
+  }
+
+  private Optional<WebHookConfiguration> buildConfig(V1WebHooks v1WebHooks, MigrationReport report) {
+    LOG.debug("migrating repository specific webhook configuration for repository id {}", v1WebHooks.repositoryId);
 
-    String v1Webhook = properties.get("webhooks");
-    if (Strings.isNullOrEmpty(v1Webhook)) {
+    if (Strings.isNullOrEmpty(v1WebHooks.webHooks)) {
+      report.skippedRepositories.incrementAndGet();
       return empty();
     }
-    String[] splittedWebhooks = v1Webhook.split("\\|");
 
-    Set<WebHook> webhooksSet = stream(splittedWebhooks)
-      .map(this::createWebHook)
-      .map(config -> new WebHook(config, keyGenerator.createKey()))
-      .collect(toSet());
+    List<WebHook> webHooks = new ArrayList<>();
+    for (String v1WebHook : WEBHOOK_SPLITTER.split(v1WebHooks.webHooks)) {
+      Optional<SimpleWebHook> webHook = createWebHook(v1WebHook);
+      if (webHook.isPresent()) {
+        webHooks.add(new WebHook(webHook.get(), keyGenerator.createKey()));
+      } else {
+        LOG.warn("skipping malformed webhook '{}' of repository {}", v1WebHook, v1WebHooks.repositoryId);
+        report.malformedWebHooks.incrementAndGet();
+      }
+    }
 
-    return of(new WebHookConfiguration(webhooksSet));
+    if (webHooks.isEmpty()) {
+      report.skippedRepositories.incrementAndGet();
+      return empty();
+    }
+    report.migratedRepositories.incrementAndGet();
+    report.migratedWebHooks.addAndGet(webHooks.size());
+    return of(new WebHookConfiguration(webHooks));
   }
 
-  private SimpleWebHook createWebHook(String webhook) {
-    String[] splitProperties = webhook.split(";");
+  private Optional<SimpleWebHook> createWebHook(String webhook) {
+    List<String> properties = PROPERTY_SPLITTER.splitToList(webhook);
+    if (properties.size() < 3 || properties.get(0).isEmpty()) {
+      return empty();
+    }
 
     // Set HTTP method to AUTO if missing
-    if (splitProperties.length == 3) {
-      ArrayList<String> properties = new ArrayList<>(Arrays.asList(splitProperties));
-      properties.add("AUTO");
-      splitProperties = properties.toArray(splitProperties);
+    HttpMethod method = HttpMethod.AUTO;
+    if (properties.size() > 3 && !properties.get(3).isEmpty()) {
+      try {
+        method = HttpMethod.valueOf(properties.get(3));
+      } catch (IllegalArgumentException e) {
+        return empty();
+      }
     }
 
-    return new SimpleWebHook(
-      splitProperties[0],
-      Boolean.parseBoolean(splitProperties[1]),
-      Boolean.parseBoolean(splitProperties[2]),
-      Enum.valueOf(HttpMethod.class, splitProperties[3]),
+    return of(new SimpleWebHook(
+      properties.get(0),
+      Boolean.parseBoolean(properties.get(1)),
+      Boolean.parseBoolean(properties.get(2)),
+      method,
       emptyList()
-    );
+    ));
   }
 
   void setRepositoryConfiguration(WebHookConfiguration configuration, String repositoryId) {
@@ -130,4 +187,21 @@ public class WebhooksV2ConfigMigrationUpdateStep implements UpdateStep {
   public String getAffectedDataType() {
     return "sonia.scm.webhook.config.repository.xml";
   }
+
+  private static class V1WebHooks {
+    private final String repositoryId;
+    private final String webHooks;
+
+    V1WebHooks(String repositoryId, String webHooks) {
+      this.repositoryId = repositoryId;
+      this.webHooks = webHooks;
+    }
+  }
+
+  private static class MigrationReport {
+    private final AtomicInteger migratedRepositories = new AtomicInteger();
+    private final AtomicInteger migratedWebHooks = new AtomicInteger();
+    private final AtomicInteger skippedRepositories = new AtomicInteger();
+    private final AtomicInteger malformedWebHooks = new AtomicInteger();
+  }
 }
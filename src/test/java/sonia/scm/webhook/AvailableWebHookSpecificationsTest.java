@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.Test;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class AvailableWebHookSpecificationsTest {
+
+  private final SimpleWebHookSpecification specification = new SimpleWebHookSpecification(null, null, null, null);
+  private final AvailableWebHookSpecifications specifications = new AvailableWebHookSpecifications(singleton(specification));
+
+  @Test
+  void shouldFindSpecificationByName() {
+    assertThat(specifications.specificationFor("SimpleWebHook")).containsSame(specification);
+    assertThat(specifications.specificationFor("UnknownWebHook")).isEmpty();
+  }
+
+  @Test
+  void shouldFindSpecificationByType() {
+    assertThat(specifications.specificationFor(SimpleWebHook.class)).containsSame(specification);
+    assertThat(specifications.specificationFor(SingleWebHookConfiguration.class)).isEmpty();
+  }
+
+  @Test
+  void shouldFindSpecificationForSubType() {
+    assertThat(specifications.specificationFor(ExtendedWebHook.class)).containsSame(specification);
+  }
+
+  @Test
+  void shouldScanSpecificationsOnlyOncePerType() {
+    SimpleWebHookSpecification spied = spy(specification);
+    AvailableWebHookSpecifications specifications = new AvailableWebHookSpecifications(singleton(spied));
+
+    assertThat(specifications.specificationFor(ExtendedWebHook.class)).containsSame(spied);
+    assertThat(specifications.specificationFor(ExtendedWebHook.class)).containsSame(spied);
+    assertThat(specifications.specificationFor(SingleWebHookConfiguration.class)).isEmpty();
+    assertThat(specifications.specificationFor(SingleWebHookConfiguration.class)).isEmpty();
+
+    // one scan for each of the two types
+    verify(spied, times(2)).handles(any());
+  }
+
+  private static class ExtendedWebHook extends SimpleWebHook {
+    ExtendedWebHook() {
+      super("https://hitchhiker.com", false, false, HttpMethod.AUTO, emptyList());
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.PostReceiveRepositoryHookEvent;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.repository.api.HookChangesetBuilder;
+import sonia.scm.repository.api.HookContext;
+import sonia.scm.repository.api.HookFeature;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChangesetSnapshotTest {
+
+  @Mock
+  private PostReceiveRepositoryHookEvent event;
+  @Mock
+  private HookContext eventContext;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private HookChangesetBuilder changesetBuilder;
+
+  @Test
+  void shouldReadChangesetsOnlyOnce() {
+    when(event.getContext()).thenReturn(eventContext);
+    when(eventContext.isFeatureSupported(HookFeature.CHANGESET_PROVIDER)).thenReturn(true);
+    when(eventContext.getChangesetProvider()).thenReturn(changesetBuilder);
+    when(changesetBuilder.getChangesets()).thenReturn(List.of(new Changeset("42", 0L, null), new Changeset("21", 0L, null)));
+
+    ChangesetSnapshot snapshot = new ChangesetSnapshot(event);
+    List<Changeset> first = snapshot.getChangesets();
+    List<Changeset> second = snapshot.getChangesets();
+
+    assertThat(first).extracting("id").containsExactly("42", "21");
+    assertThat(second).isSameAs(first);
+    verify(changesetBuilder, times(1)).getChangesets();
+    verify(changesetBuilder).setDisablePreProcessors(true);
+  }
+
+  @Test
+  void shouldShareSamePayload() {
+    when(event.getContext()).thenReturn(eventContext);
+    when(eventContext.isFeatureSupported(HookFeature.CHANGESET_PROVIDER)).thenReturn(true);
+    when(eventContext.getChangesetProvider()).thenReturn(changesetBuilder);
+    when(changesetBuilder.getChangesets()).thenReturn(List.of(new Changeset("42", 0L, null)));
+
+    ChangesetSnapshot snapshot = new ChangesetSnapshot(event);
+
+    assertThat(snapshot.getPayload()).isSameAs(snapshot.getPayload());
+    assertThat(snapshot.getPayload().getChangesets()).isSameAs(snapshot.getChangesets());
+  }
+
+  @Test
+  void shouldReturnNullWithoutChangesetProvider() {
+    when(event.getRepository()).thenReturn(RepositoryTestData.createHeartOfGold());
+    when(event.getContext()).thenReturn(eventContext);
+    when(eventContext.isFeatureSupported(HookFeature.CHANGESET_PROVIDER)).thenReturn(false);
+
+    assertThat(new ChangesetSnapshot(event).getChangesets()).isNull();
+  }
+
+  @Test
+  void shouldReturnNullWithoutHookContext() {
+    when(event.getRepository()).thenReturn(RepositoryTestData.createHeartOfGold());
+
+    assertThat(new ChangesetSnapshot(event).getChangesets()).isNull();
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CircuitBreakerTest {
+
+  private final Clock clock = mock(Clock.class);
+  private final DispatchConfiguration configuration = new DispatchConfiguration();
+
+  private CircuitBreaker breaker;
+  private Instant now = Instant.parse("2025-01-01T10:00:00Z");
+
+  @BeforeEach
+  void init() {
+    configuration.setCircuitBreakerWindowSize(4);
+    configuration.setCircuitBreakerFailureRateThreshold(50);
+    configuration.setCircuitBreakerCoolDownSeconds(30);
+    when(clock.instant()).thenAnswer(invocation -> now);
+    breaker = new CircuitBreaker("hitchhiker.com", clock);
+  }
+
+  @Test
+  void shouldStayClosedUntilWindowIsFull() {
+    breaker.onFailure(configuration);
+    breaker.onFailure(configuration);
+    breaker.onFailure(configuration);
+
+    assertThat(breaker.getStatus().getState()).isEqualTo(CircuitState.CLOSED);
+    assertThat(breaker.tryAcquire()).isTrue();
+  }
+
+  @Test
+  void shouldOpenIfFailureRateIsReached() {
+    breaker.onSuccess(configuration);
+    breaker.onFailure(configuration);
+    breaker.onSuccess(configuration);
+    boolean opened = breaker.onFailure(configuration);
+
+    assertThat(opened).isTrue();
+    assertThat(breaker.getStatus().getState()).isEqualTo(CircuitState.OPEN);
+    assertThat(breaker.getStatus().getOpenUntil()).isEqualTo(now.plusSeconds(30));
+    assertThat(breaker.tryAcquire()).isFalse();
+  }
+
+  @Test
+  void shouldOnlyEvaluateLatestDeliveries() {
+    breaker.onFailure(configuration);
+    breaker.onSuccess(configuration);
+    breaker.onSuccess(configuration);
+    breaker.onSuccess(configuration);
+    breaker.onSuccess(configuration);
+
+    assertThat(breaker.getStatus().getFailureRate()).isZero();
+  }
+
+  @Test
+  void shouldAllowSingleTrialAfterCoolDown() {
+    open();
+    now = now.plusSeconds(31);
+
+    assertThat(breaker.tryAcquire()).isTrue();
+    assertThat(breaker.getStatus().getState()).isEqualTo(CircuitState.HALF_OPEN);
+    assertThat(breaker.tryAcquire()).isFalse();
+  }
+
+  @Test
+  void shouldCloseAfterSuccessfulTrial() {
+    open();
+    now = now.plusSeconds(31);
+    breaker.tryAcquire();
+
+    breaker.onSuccess(configuration);
+
+    assertThat(breaker.getStatus().getState()).isEqualTo(CircuitState.CLOSED);
+    assertThat(breaker.getStatus().getRecordedDeliveries()).isZero();
+    assertThat(breaker.tryAcquire()).isTrue();
+  }
+
+  @Test
+  void shouldOpenAgainAfterFailedTrial() {
+    open();
+    now = now.plusSeconds(31);
+    breaker.tryAcquire();
+
+    breaker.onFailure(configuration);
+
+    assertThat(breaker.getStatus().getState()).isEqualTo(CircuitState.OPEN);
+    assertThat(breaker.getStatus().getOpenUntil()).isEqualTo(now.plusSeconds(30));
+  }
+
+  @Test
+  void shouldAllowNewTrialAfterTrialOfPreviousOpenState() {
+    open();
+    now = now.plusSeconds(31);
+    breaker.tryAcquire();
+    breaker.onFailure(configuration);
+    now = now.plusSeconds(31);
+
+    assertThat(breaker.tryAcquire()).isTrue();
+    assertThat(breaker.tryAcquire()).isFalse();
+  }
+
+  @Test
+  void shouldBeIdleOnlyIfClosedAndUnused() {
+    breaker.onSuccess(configuration);
+    Instant used = now;
+    now = now.plusSeconds(60);
+
+    assertThat(breaker.isIdleSince(used.plusSeconds(1))).isTrue();
+    assertThat(breaker.isIdleSince(used)).isFalse();
+
+    open();
+    now = now.plusSeconds(60);
+
+    assertThat(breaker.isIdleSince(now)).isFalse();
+  }
+
+  private void open() {
+    for (int i = 0; i < 4; i++) {
+      breaker.onFailure(configuration);
+    }
+  }
+}
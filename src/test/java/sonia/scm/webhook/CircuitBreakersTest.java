@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CircuitBreakersTest {
+
+  private final Clock clock = mock(Clock.class);
+  private final WebHookContext context = mock(WebHookContext.class);
+  private final DispatchConfiguration configuration = new DispatchConfiguration();
+
+  private CircuitBreakers breakers;
+  private Instant now = Instant.parse("2025-01-01T10:00:00Z");
+
+  @BeforeEach
+  void init() {
+    configuration.setCircuitBreakerWindowSize(2);
+    configuration.setCircuitBreakerFailureRateThreshold(50);
+    configuration.setCircuitBreakerCoolDownSeconds(30);
+    when(clock.instant()).thenAnswer(invocation -> now);
+    when(context.getDispatchConfiguration()).thenReturn(configuration);
+    breakers = new CircuitBreakers(context, clock);
+  }
+
+  @Test
+  void shouldNotBlockHostAfterBreakersHaveBeenDisabledDuringTrial() {
+    breakers.onFailure("hitchhiker.com");
+    breakers.onFailure("hitchhiker.com");
+    now = now.plusSeconds(31);
+    assertThat(breakers.tryAcquire("hitchhiker.com")).isTrue();
+
+    configuration.setCircuitBreakerEnabled(false);
+    breakers.onSuccess("hitchhiker.com");
+    configuration.setCircuitBreakerEnabled(true);
+
+    assertThat(breakers.tryAcquire("hitchhiker.com")).isTrue();
+    assertThat(breakers.tryAcquire("hitchhiker.com")).isTrue();
+  }
+
+  @Test
+  void shouldEvictIdleClosedBreakers() {
+    breakers.onSuccess("hitchhiker.com");
+    breakers.onFailure("vogon.com");
+    breakers.onFailure("vogon.com");
+
+    now = now.plus(CircuitBreakers.IDLE_TIMEOUT).plusSeconds(1);
+    breakers.onSuccess("heart-of-gold.com");
+
+    assertThat(breakers.getStatus())
+      .extracting(CircuitBreakerStatus::getHost)
+      .containsExactly("heart-of-gold.com", "vogon.com");
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommitFanOutTest {
+
+  private final List<String> started = new ArrayList<>();
+  private final List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+
+  @Test
+  void shouldLimitParallelDeliveries() {
+    CommitFanOut fanOut = new CommitFanOut(2, Runnable::run);
+
+    fanOut.submit(null, delivery("1"));
+    fanOut.submit(null, delivery("2"));
+    fanOut.submit(null, delivery("3"));
+
+    assertThat(started).containsExactly("1", "2");
+
+    deliveries.get(1).complete(null);
+
+    assertThat(started).containsExactly("1", "2", "3");
+  }
+
+  @Test
+  void shouldStartDeliveriesOnExecutor() {
+    Queue<Runnable> tasks = new ArrayDeque<>();
+    CommitFanOut fanOut = new CommitFanOut(2, tasks::add);
+
+    fanOut.submit(null, delivery("1"));
+    fanOut.submit(null, delivery("2"));
+    fanOut.submit(null, delivery("3"));
+
+    assertThat(started).isEmpty();
+    assertThat(tasks).hasSize(2);
+
+    tasks.poll().run();
+    tasks.poll().run();
+    deliveries.get(0).complete(null);
+    tasks.poll().run();
+
+    assertThat(started).containsExactly("1", "2", "3");
+  }
+
+  @Test
+  void shouldDeliverLaneInOrder() {
+    CommitFanOut fanOut = new CommitFanOut(4, Runnable::run);
+
+    fanOut.submit("main", delivery("main-1"));
+    fanOut.submit("develop", delivery("develop-1"));
+    fanOut.submit("main", delivery("main-2"));
+
+    assertThat(started).containsExactly("main-1", "develop-1");
+
+    deliveries.get(1).complete(null);
+    assertThat(started).containsExactly("main-1", "develop-1");
+
+    deliveries.get(0).complete(null);
+    assertThat(started).containsExactly("main-1", "develop-1", "main-2");
+  }
+
+  @Test
+  void shouldCompleteAfterDelivery() {
+    CommitFanOut fanOut = new CommitFanOut(1, Runnable::run);
+
+    CompletableFuture<Void> done = fanOut.submit(null, delivery("1"));
+    assertThat(done).isNotDone();
+
+    deliveries.get(0).complete(null);
+    assertThat(done).isDone();
+  }
+
+  @Test
+  void shouldContinueAfterFailedDelivery() {
+    CommitFanOut fanOut = new CommitFanOut(1, Runnable::run);
+
+    CompletableFuture<Void> failed = fanOut.submit(null, () -> {
+      throw new IllegalStateException("could not create request");
+    });
+    fanOut.submit(null, delivery("2"));
+
+    assertThat(failed).isDone();
+    assertThat(started).containsExactly("2");
+  }
+
+  @Test
+  void shouldNotGrowStackForCompletedDeliveries() {
+    CommitFanOut fanOut = new CommitFanOut(1, Runnable::run);
+    List<CompletableFuture<Void>> done = new ArrayList<>();
+
+    fanOut.submit("main", delivery("1"));
+    for (int i = 0; i < 100000; i++) {
+      done.add(fanOut.submit("main", () -> CompletableFuture.completedFuture(null)));
+    }
+    deliveries.get(0).complete(null);
+
+    assertThat(done).allMatch(CompletableFuture::isDone);
+  }
+
+  private Supplier<CompletableFuture<Void>> delivery(String name) {
+    return () -> {
+      started.add(name);
+      CompletableFuture<Void> delivery = new CompletableFuture<>();
+      deliveries.add(delivery);
+      return delivery;
+    };
+  }
+}
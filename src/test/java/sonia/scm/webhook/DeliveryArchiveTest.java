@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class DeliveryArchiveTest {
+
+  private static final byte[] BODY = "{\"changeset\":[]}".getBytes(StandardCharsets.UTF_8);
+
+  private final Repository repository = new Repository("repo-1", "git", "hitchhiker", "heart-of-gold");
+
+  @TempDir
+  Path directory;
+
+  @Mock
+  private WebHookContext context;
+  @Mock
+  private WebhookRequest request;
+
+  private final DispatchConfiguration configuration = new DispatchConfiguration();
+
+  @Mock
+  private ExecutorService writer;
+
+  private DeliveryArchive archive;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    lenient().when(context.getDispatchConfiguration()).thenReturn(configuration);
+    lenient().when(request.isJournaled()).thenReturn(true);
+    lenient().when(request.getMethod()).thenReturn("POST");
+    lenient().when(request.getHeaders()).thenReturn(ImmutableListMultimap.of("X-Token", "42"));
+    lenient().when(request.getBody()).thenReturn(BODY);
+    archive = archive(MoreExecutors.newDirectExecutorService());
+  }
+
+  private DeliveryArchive archive(ExecutorService writer) {
+    return new DeliveryArchive(context, directory, Clock.fixed(Instant.ofEpochMilli(1700000000000L), ZoneOffset.UTC), writer);
+  }
+
+  @Test
+  void shouldLoadArchivedRequest() {
+    RetryPolicy retryPolicy = new RetryPolicy(3, 1000, 10000, 0, List.of(503));
+
+    long id = archive.store("repo-1", "https://hitchhiker.com/trigger", request, retryPolicy, null);
+
+    assertThat(archive.contains("repo-1", id)).isTrue();
+    OutboxEntry entry = archive.load("repo-1", id).orElseThrow();
+    assertThat(entry.getId()).isEqualTo(id);
+    assertThat(entry.getMethod()).isEqualTo("POST");
+    assertThat(entry.getUrl()).isEqualTo("https://hitchhiker.com/trigger");
+    assertThat(entry.getHeaders().get("X-Token")).containsExactly("42");
+    assertThat(entry.getBody()).isEqualTo(BODY);
+    assertThat(entry.getRetryPolicy().getMaxAttempts()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldWriteRequestInBackground() {
+    archive = archive(writer);
+
+    long id = archive.store("repo-1", "https://hitchhiker.com/trigger", request, null, null);
+
+    assertThat(Files.exists(directory.resolve("repo-1"))).isFalse();
+    assertThat(archive.contains("repo-1", id)).isTrue();
+    assertThat(archive.load("repo-1", id)).get().extracting(OutboxEntry::getUrl).isEqualTo("https://hitchhiker.com/trigger");
+
+    ArgumentCaptor<Runnable> write = ArgumentCaptor.forClass(Runnable.class);
+    verify(writer).execute(write.capture());
+    write.getValue().run();
+
+    assertThat(Files.exists(directory.resolve("repo-1").resolve(id + ".request"))).isTrue();
+    assertThat(archive.load("repo-1", id)).get().extracting(OutboxEntry::getBody).isEqualTo(BODY);
+  }
+
+  @Test
+  void shouldNotArchiveIfWriterIsBusy() {
+    archive = archive(writer);
+    doThrow(RejectedExecutionException.class).when(writer).execute(any());
+
+    long id = archive.store("repo-1", "https://hitchhiker.com/trigger", request, null, null);
+
+    assertThat(id).isEqualTo(DeliveryArchive.NOT_ARCHIVED);
+  }
+
+  @Test
+  void shouldNotArchiveStreamedRequest() {
+    lenient().when(request.isJournaled()).thenReturn(false);
+
+    assertThat(archive.store("repo-1", "https://hitchhiker.com/trigger", request, null, null)).isEqualTo(DeliveryArchive.NOT_ARCHIVED);
+  }
+
+  @Test
+  void shouldNotArchiveWithoutRepository() {
+    assertThat(archive.store(null, "https://hitchhiker.com/trigger", request, null, null)).isEqualTo(DeliveryArchive.NOT_ARCHIVED);
+  }
+
+  @Test
+  void shouldNotArchiveIfHistoryIsDisabled() {
+    configuration.setHistoryEnabled(false);
+
+    assertThat(archive.store("repo-1", "https://hitchhiker.com/trigger", request, null, null)).isEqualTo(DeliveryArchive.NOT_ARCHIVED);
+  }
+
+  @Test
+  void shouldPruneOldestRequests() throws IOException {
+    configuration.setHistorySize(10);
+    long first = archive.store("repo-1", "https://hitchhiker.com/trigger", request, null, null);
+    long last = first;
+    for (int i = 1; i < 32; i++) {
+      last = archive.store("repo-1", "https://hitchhiker.com/trigger", request, null, null);
+    }
+
+    assertThat(archive.contains("repo-1", first)).isFalse();
+    assertThat(archive.contains("repo-1", last)).isTrue();
+    try (Stream<Path> files = Files.list(directory.resolve("repo-1"))) {
+      assertThat(files.count()).isEqualTo(10);
+    }
+  }
+
+  @Test
+  void shouldDeleteRequestsOfRepository() {
+    long id = archive.store("repo-1", "https://hitchhiker.com/trigger", request, null, null);
+
+    archive.delete(repository);
+
+    assertThat(archive.load("repo-1", id)).isEmpty();
+    assertThat(Files.exists(directory.resolve("repo-1"))).isFalse();
+  }
+}
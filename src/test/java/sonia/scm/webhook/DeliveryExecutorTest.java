@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeliveryExecutorTest {
+
+  @Mock
+  private WebHookContext context;
+
+  @InjectMocks
+  private DeliveryExecutor executor;
+
+  @AfterEach
+  void close() {
+    executor.close();
+  }
+
+  @Test
+  void shouldRunOnPlatformThreadPool() throws InterruptedException {
+    when(context.getDispatchConfiguration()).thenReturn(new DispatchConfiguration());
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    CountDownLatch latch = new CountDownLatch(1);
+
+    executor.execute(() -> {
+      thread.set(Thread.currentThread());
+      latch.countDown();
+    });
+
+    assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(thread.get()).isNotSameAs(Thread.currentThread());
+    assertThat(thread.get().getName()).startsWith("WebHookDelivery-");
+  }
+
+  @Test
+  void shouldLimitConcurrentDeliveriesOnPlatformThreads() throws InterruptedException {
+    DispatchConfiguration configuration = new DispatchConfiguration();
+    configuration.setMaxConcurrentDeliveries(2);
+    when(context.getDispatchConfiguration()).thenReturn(configuration);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch finished = new CountDownLatch(10);
+
+    for (int i = 0; i < 10; i++) {
+      executor.execute(() -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        sleep();
+        running.decrementAndGet();
+        finished.countDown();
+      });
+    }
+
+    assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+  }
+
+  @Test
+  void shouldRunOnVirtualThread() throws InterruptedException {
+    assumeTrue(Runtime.version().feature() >= 21, "virtual threads are not supported");
+    when(context.getDispatchConfiguration()).thenReturn(virtualThreads(10));
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    CountDownLatch latch = new CountDownLatch(1);
+
+    executor.execute(() -> {
+      thread.set(Thread.currentThread());
+      latch.countDown();
+    });
+
+    assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(thread.get()).isNotSameAs(Thread.currentThread());
+  }
+
+  @Test
+  void shouldLimitConcurrentDeliveries() throws InterruptedException {
+    assumeTrue(Runtime.version().feature() >= 21, "virtual threads are not supported");
+    when(context.getDispatchConfiguration()).thenReturn(virtualThreads(2));
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch finished = new CountDownLatch(10);
+
+    for (int i = 0; i < 10; i++) {
+      executor.execute(() -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        sleep();
+        running.decrementAndGet();
+        finished.countDown();
+      });
+    }
+
+    assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+  }
+
+  private DispatchConfiguration virtualThreads(int maxConcurrentDeliveries) {
+    DispatchConfiguration configuration = new DispatchConfiguration();
+    configuration.setExecutionMode(ExecutionMode.VIRTUAL_THREADS);
+    configuration.setMaxConcurrentDeliveries(maxConcurrentDeliveries);
+    return configuration;
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(20);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class DeliveryHistoryTest {
+
+  private final Repository repository = new Repository("repo-1", "git", "hitchhiker", "heart-of-gold");
+
+  @TempDir
+  Path directory;
+
+  @Mock
+  private WebHookContext context;
+
+  private final Clock clock = Clock.fixed(Instant.ofEpochMilli(1700000000000L), ZoneOffset.UTC);
+  private final DispatchConfiguration configuration = new DispatchConfiguration();
+
+  private DeliveryHistory history;
+
+  @BeforeEach
+  void setUp() {
+    lenient().when(context.getDispatchConfiguration()).thenReturn(configuration);
+    history = new DeliveryHistory(context, directory, clock);
+  }
+
+  @AfterEach
+  void tearDown() {
+    history.contextDestroyed(null);
+  }
+
+  @Test
+  void shouldReturnLatestDeliveryFirst() {
+    history.record(delivery("https://hitchhiker.com/one"), 200, 42, 7, null);
+    history.record(delivery("https://hitchhiker.com/two").nextAttempt(), -1, 21, -1, "java.net.ConnectException: refused");
+
+    List<DeliveryRecord> deliveries = history.getDeliveries(repository);
+
+    assertThat(deliveries).hasSize(2);
+    DeliveryRecord latest = deliveries.get(0);
+    assertThat(latest.getSequence()).isEqualTo(2);
+    assertThat(latest.getUrl()).isEqualTo("https://hitchhiker.com/two");
+    assertThat(latest.getStatusCode()).isEqualTo(-1);
+    assertThat(latest.getResponseSize()).isEqualTo(-1);
+    assertThat(latest.getAttempt()).isEqualTo(2);
+    assertThat(latest.getError()).isEqualTo("java.net.ConnectException: refused");
+    assertThat(latest.isSuccessful()).isFalse();
+    DeliveryRecord first = deliveries.get(1);
+    assertThat(first.getTimestamp()).isEqualTo(Instant.ofEpochMilli(1700000000000L));
+    assertThat(first.getWebHookId()).isEqualTo("42");
+    assertThat(first.getStatusCode()).isEqualTo(200);
+    assertThat(first.getLatencyMillis()).isEqualTo(42);
+    assertThat(first.getResponseSize()).isEqualTo(7);
+    assertThat(first.getError()).isNull();
+    assertThat(first.isSuccessful()).isTrue();
+    assertThat(first.getRequestId()).isEqualTo(7);
+    assertThat(first.isRedeliverable()).isTrue();
+  }
+
+  @Test
+  void shouldOverwriteOldestDeliveries() throws IOException {
+    configuration.setHistorySize(10);
+    for (int i = 1; i <= 25; i++) {
+      history.record(delivery("https://hitchhiker.com/" + i), 200, 1, 0, null);
+    }
+
+    List<DeliveryRecord> deliveries = history.getDeliveries(repository);
+
+    assertThat(deliveries).extracting(DeliveryRecord::getSequence)
+      .containsExactly(25L, 24L, 23L, 22L, 21L, 20L, 19L, 18L, 17L, 16L);
+    assertThat(deliveries.get(9).getUrl()).isEqualTo("https://hitchhiker.com/16");
+    assertThat(Files.size(directory.resolve("repo-1.ring"))).isEqualTo(12 + 10 * DeliveryHistory.RECORD_SIZE);
+  }
+
+  @Test
+  void shouldKeepDeliveriesAfterRestart() {
+    history.record(delivery("https://hitchhiker.com/one"), 200, 1, 0, null);
+    history.record(delivery("https://hitchhiker.com/two"), 500, 1, 0, null);
+    history.contextDestroyed(null);
+
+    history = new DeliveryHistory(context, directory, clock);
+    history.record(delivery("https://hitchhiker.com/three"), 204, 1, 0, null);
+
+    assertThat(history.getDeliveries(repository))
+      .extracting(DeliveryRecord::getSequence, DeliveryRecord::getUrl)
+      .containsExactly(
+        tuple(3L, "https://hitchhiker.com/three"),
+        tuple(2L, "https://hitchhiker.com/two"),
+        tuple(1L, "https://hitchhiker.com/one")
+      );
+  }
+
+  @Test
+  void shouldKeepLatestDeliveriesIfHistorySizeIsReduced() {
+    configuration.setHistorySize(20);
+    for (int i = 1; i <= 15; i++) {
+      history.record(delivery("https://hitchhiker.com/" + i), 200, 1, 0, null);
+    }
+
+    configuration.setHistorySize(10);
+    history.record(delivery("https://hitchhiker.com/16"), 200, 1, 0, null);
+
+    assertThat(history.getDeliveries(repository)).extracting(DeliveryRecord::getSequence)
+      .containsExactly(16L, 15L, 14L, 13L, 12L, 11L, 10L, 9L, 8L, 7L);
+  }
+
+  @Test
+  void shouldTruncateLongValuesWithoutBreakingCharacters() {
+    String url = "https://hitchhiker.com/" + "\u00e4".repeat(1000);
+    String error = "x".repeat(2000);
+
+    history.record(delivery(url), 200, 1, 0, error);
+
+    DeliveryRecord delivery = history.getDeliveries(repository).get(0);
+    assertThat(url).startsWith(delivery.getUrl());
+    assertThat(delivery.getUrl().getBytes(StandardCharsets.UTF_8)).hasSizeLessThanOrEqualTo(DeliveryHistory.MAX_URL_BYTES);
+    assertThat(delivery.getUrl()).endsWith("\u00e4");
+    assertThat(error).startsWith(delivery.getError());
+    assertThat(delivery.getError()).isNotEmpty();
+  }
+
+  @Test
+  void shouldIgnoreCorruptedDelivery() throws IOException {
+    history.record(delivery("https://hitchhiker.com/one"), 200, 1, 0, null);
+    history.record(delivery("https://hitchhiker.com/two"), 200, 1, 0, null);
+    history.contextDestroyed(null);
+
+    try (FileChannel channel = FileChannel.open(directory.resolve("repo-1.ring"), StandardOpenOption.WRITE)) {
+      // overwrite a part of the url of the first delivery
+      channel.write(ByteBuffer.wrap("broken".getBytes(StandardCharsets.UTF_8)), 12 + DeliveryHistory.RECORD_SIZE + 60);
+    }
+    history = new DeliveryHistory(context, directory, clock);
+
+    assertThat(history.getDeliveries(repository))
+      .extracting(DeliveryRecord::getUrl)
+      .containsExactly("https://hitchhiker.com/two");
+  }
+
+  @Test
+  void shouldNotRecordDeliveriesWithoutRepository() {
+    history.record(new Delivery("https://hitchhiker.com", "hitchhiker.com", null, Outbox.NO_ENTRY, null), 200, 1, 0, null);
+
+    assertThat(directory.toFile().list()).isEmpty();
+  }
+
+  @Test
+  void shouldNotRecordDeliveriesIfDisabled() {
+    configuration.setHistoryEnabled(false);
+
+    history.record(delivery("https://hitchhiker.com"), 200, 1, 0, null);
+
+    assertThat(history.getDeliveries(repository)).isEmpty();
+    assertThat(directory.toFile().list()).isEmpty();
+  }
+
+  @Test
+  void shouldDeleteHistory() {
+    history.record(delivery("https://hitchhiker.com"), 200, 1, 0, null);
+
+    history.delete(repository);
+
+    assertThat(history.getDeliveries(repository)).isEmpty();
+    assertThat(Files.exists(directory.resolve("repo-1.ring"))).isFalse();
+  }
+
+  @Test
+  void shouldRecordDeliveriesOfMoreRepositoriesThanOpenRingsConcurrently() throws Exception {
+    int repositories = DeliveryHistory.MAX_OPEN_RINGS * 2;
+    int deliveriesPerRepository = 5;
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < deliveriesPerRepository; i++) {
+        for (int r = 0; r < repositories; r++) {
+          String repositoryId = "repo-" + r;
+          futures.add(executor.submit(() -> {
+            history.record(delivery("https://hitchhiker.com", repositoryId), 200, 1, 0, null);
+            history.getDeliveries(repositoryId);
+          }));
+        }
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (int r = 0; r < repositories; r++) {
+      assertThat(history.getDeliveries("repo-" + r)).hasSize(deliveriesPerRepository);
+    }
+  }
+
+  private Delivery delivery(String url) {
+    return delivery(url, repository.getId());
+  }
+
+  private Delivery delivery(String url, String repositoryId) {
+    return new Delivery(url, "hitchhiker.com", null, Outbox.NO_ENTRY, null, "42", "SimpleWebHook", repositoryId, 7, null);
+  }
+}
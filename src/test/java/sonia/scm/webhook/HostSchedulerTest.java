@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HostSchedulerTest {
+
+  @Mock
+  private WebHookContext context;
+  @Mock
+  private DeliveryExecutor deliveryExecutor;
+
+  private HostScheduler scheduler;
+
+  private final Queue<Runnable> started = new ArrayDeque<>();
+
+  @BeforeEach
+  void initScheduler() {
+    scheduler = new HostScheduler(context, deliveryExecutor);
+  }
+
+  @Test
+  void shouldStartDeliveryDirectlyIfHostHasCapacity() {
+    mockLimitPerHost(1);
+    queueStartedDeliveries();
+    List<String> executed = new ArrayList<>();
+
+    scheduler.submit("hitchhiker.com", () -> executed.add("a"));
+
+    assertThat(executed).isEmpty();
+    assertThat(started).hasSize(1);
+
+    runStartedDeliveries();
+
+    assertThat(executed).containsExactly("a");
+  }
+
+  @Test
+  void shouldScheduleQueuedDeliveriesRoundRobin() {
+    mockLimitPerHost(1);
+    queueStartedDeliveries();
+    List<String> executed = new ArrayList<>();
+
+    scheduler.submit("slow.com", () -> {
+      executed.add("slow-1");
+      scheduler.submit("slow.com", () -> executed.add("slow-2"));
+      scheduler.submit("slow.com", () -> executed.add("slow-3"));
+      scheduler.submit("fast.com", () -> executed.add("fast-1"));
+      scheduler.submit("fast.com", () -> executed.add("fast-2"));
+    });
+    runStartedDeliveries();
+
+    assertThat(executed).containsExactly("slow-1", "fast-1", "slow-2", "fast-2", "slow-3");
+  }
+
+  @Test
+  void shouldCountPendingDeliveries() {
+    mockLimitPerHost(1);
+    queueStartedDeliveries();
+    List<Integer> pending = new ArrayList<>();
+
+    scheduler.submit("slow.com", () -> {
+      scheduler.submit("slow.com", () -> pending.add(scheduler.getPendingDeliveries()));
+      scheduler.submit("slow.com", () -> pending.add(scheduler.getPendingDeliveries()));
+      pending.add(scheduler.getPendingDeliveries());
+    });
+    runStartedDeliveries();
+
+    assertThat(pending).containsExactly(2, 1, 0);
+    assertThat(scheduler.getPendingDeliveries()).isZero();
+  }
+
+  @Test
+  void shouldLimitConcurrentDeliveriesPerHost() throws InterruptedException {
+    mockLimitPerHost(2);
+    doAnswer(invocation -> {
+      new Thread(invocation.getArgument(0, Runnable.class)).start();
+      return null;
+    }).when(deliveryExecutor).execute(any());
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch finished = new CountDownLatch(6);
+    List<String> otherHost = Collections.synchronizedList(new ArrayList<>());
+
+    for (int i = 0; i < 5; i++) {
+      scheduler.submit("slow.com", () -> {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        sleep();
+        running.decrementAndGet();
+        finished.countDown();
+      });
+    }
+    scheduler.submit("fast.com", () -> {
+      otherHost.add("fast");
+      finished.countDown();
+    });
+
+    assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(maxRunning.get()).isEqualTo(2);
+    assertThat(otherHost).containsExactly("fast");
+  }
+
+  @Test
+  void shouldContinueWithNextDeliveryAfterFailure() {
+    mockLimitPerHost(1);
+    queueStartedDeliveries();
+    List<String> executed = new ArrayList<>();
+
+    scheduler.submit("hitchhiker.com", () -> {
+      scheduler.submit("hitchhiker.com", () -> executed.add("second"));
+      throw new IllegalStateException("failure");
+    });
+    scheduler.submit("hitchhiker.com", () -> executed.add("third"));
+    runStartedDeliveries();
+
+    assertThat(executed).containsExactly("third", "second");
+  }
+
+  @Test
+  void shouldReleaseSlotOfRejectedDelivery() {
+    mockLimitPerHost(1);
+    doThrow(new RejectedExecutionException("closed"))
+      .doAnswer(invocation -> {
+        invocation.getArgument(0, Runnable.class).run();
+        return null;
+      })
+      .when(deliveryExecutor).execute(any());
+    List<String> executed = new ArrayList<>();
+
+    scheduler.submit("hitchhiker.com", () -> executed.add("rejected"), () -> executed.add("notified"));
+    scheduler.submit("hitchhiker.com", () -> executed.add("second"));
+
+    assertThat(executed).containsExactly("notified", "second");
+  }
+
+  private void mockLimitPerHost(int limit) {
+    DispatchConfiguration configuration = new DispatchConfiguration();
+    configuration.setMaxConcurrentDeliveriesPerHost(limit);
+    when(context.getDispatchConfiguration()).thenReturn(configuration);
+  }
+
+  private void queueStartedDeliveries() {
+    doAnswer(invocation -> started.add(invocation.getArgument(0, Runnable.class))).when(deliveryExecutor).execute(any());
+  }
+
+  /**
+   * Runs the started deliveries one after the other like a single thread of the {@link DeliveryExecutor}.
+   */
+  private void runStartedDeliveries() {
+    Runnable delivery;
+    while ((delivery = started.poll()) != null) {
+      try {
+        delivery.run();
+      } catch (RuntimeException e) {
+        // thrown by the delivery, the executor continues with the next one
+      }
+    }
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(50);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
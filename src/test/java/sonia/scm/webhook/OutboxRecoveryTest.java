@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.collect.ImmutableListMultimap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRecoveryTest {
+
+  @Mock
+  private Outbox outbox;
+  @Mock
+  private WebHookSender sender;
+  @Mock
+  private WebHookDispatcher dispatcher;
+
+  @InjectMocks
+  private OutboxRecovery recovery;
+
+  @Test
+  void shouldReplayRecoveredEntriesOnDispatcher() throws IOException {
+    OutboxEntry first = entry(1);
+    OutboxEntry second = entry(2);
+    when(outbox.recover()).thenReturn(List.of(first, second));
+
+    recovery.contextInitialized(null);
+
+    ArgumentCaptor<WebHookExecutor> replay = ArgumentCaptor.forClass(WebHookExecutor.class);
+    verify(dispatcher).dispatch(replay.capture());
+    verifyNoInteractions(sender);
+
+    replay.getValue().run();
+
+    verify(sender).replay(first);
+    verify(sender).replay(second);
+  }
+
+  @Test
+  void shouldNotDispatchWithoutRecoveredEntries() throws IOException {
+    when(outbox.recover()).thenReturn(List.of());
+
+    recovery.contextInitialized(null);
+
+    verifyNoInteractions(dispatcher, sender);
+  }
+
+  @Test
+  void shouldNotDispatchIfOutboxCannotBeRecovered() throws IOException {
+    when(outbox.recover()).thenThrow(new IOException("corrupt journal"));
+
+    recovery.contextInitialized(null);
+
+    verifyNoInteractions(dispatcher, sender);
+  }
+
+  private static OutboxEntry entry(long id) {
+    return new OutboxEntry(id, 0, "POST", "https://hitchhiker.com/ci", ImmutableListMultimap.of(), new byte[0], null);
+  }
+}
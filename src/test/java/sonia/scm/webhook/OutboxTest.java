@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.collect.ImmutableListMultimap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxTest {
+
+  private static final byte[] BODY = "{\"changeset\":[]}".getBytes(StandardCharsets.UTF_8);
+
+  @TempDir
+  Path directory;
+
+  @Mock
+  private WebHookContext context;
+
+  private final Clock clock = Clock.fixed(Instant.ofEpochMilli(1700000000000L), ZoneOffset.UTC);
+
+  private Outbox outbox;
+
+  @BeforeEach
+  void setUp() {
+    lenient().when(context.getDispatchConfiguration()).thenReturn(new DispatchConfiguration());
+    outbox = new Outbox(context, directory, clock);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    outbox.close();
+  }
+
+  @Test
+  void shouldRecoverPendingEntriesAfterRestart() throws IOException {
+    long first = outbox.append("POST", "https://hitchhiker.com/one", ImmutableListMultimap.of("Content-Type", "application/json", "X-Token", "42"), BODY, null, null);
+    long second = outbox.append("GET", "https://hitchhiker.com/two", ImmutableListMultimap.of(), null, null, null);
+    outbox.markDone(first);
+
+    List<OutboxEntry> entries = restart().recover();
+
+    assertThat(entries).hasSize(1);
+    OutboxEntry entry = entries.get(0);
+    assertThat(entry.getId()).isEqualTo(second);
+    assertThat(entry.getTimestamp()).isEqualTo(1700000000000L);
+    assertThat(entry.getMethod()).isEqualTo("GET");
+    assertThat(entry.getUrl()).isEqualTo("https://hitchhiker.com/two");
+    assertThat(entry.getHeaders().isEmpty()).isTrue();
+    assertThat(entry.getBody()).isNull();
+  }
+
+  @Test
+  void shouldRecoverHeadersAndBody() throws IOException {
+    outbox.append("POST", "https://hitchhiker.com/one", ImmutableListMultimap.of("Content-Type", "application/json", "X-Token", "42"), BODY, null, null);
+
+    OutboxEntry entry = restart().recover().get(0);
+
+    assertThat(entry.getHeaders().entries())
+      .extracting(e -> e.getKey() + "=" + e.getValue())
+      .containsExactly("Content-Type=application/json", "X-Token=42");
+    assertThat(entry.getBody()).isEqualTo(BODY);
+  }
+
+  @Test
+  void shouldRecoverRetryPolicy() throws IOException {
+    RetryPolicy retryPolicy = new RetryPolicy(3, 500, 10000, 20, List.of(503));
+    outbox.append("GET", "https://hitchhiker.com", ImmutableListMultimap.of(), null, retryPolicy, null);
+
+    OutboxEntry entry = restart().recover().get(0);
+
+    assertThat(entry.getRetryPolicy()).isEqualTo(retryPolicy);
+  }
+
+  @Test
+  void shouldRecoverRateLimit() throws IOException {
+    RateLimit rateLimit = new RateLimit(2.5, 10);
+    outbox.append("GET", "https://hitchhiker.com", ImmutableListMultimap.of(), null, null, rateLimit);
+
+    OutboxEntry entry = restart().recover().get(0);
+
+    assertThat(entry.getRateLimit()).isEqualTo(rateLimit);
+  }
+
+  @Test
+  void shouldRecoverEntriesOnlyOnce() throws IOException {
+    outbox.append("GET", "https://hitchhiker.com", ImmutableListMultimap.of(), null, null, null);
+
+    Outbox restarted = restart();
+
+    assertThat(restarted.recover()).hasSize(1);
+    assertThat(restarted.recover()).isEmpty();
+  }
+
+  @Test
+  void shouldMarkRecoveredEntriesAsDone() throws IOException {
+    outbox.append("GET", "https://hitchhiker.com", ImmutableListMultimap.of(), null, null, null);
+
+    Outbox restarted = restart();
+    restarted.markDone(restarted.recover().get(0).getId());
+
+    assertThat(restart().recover()).isEmpty();
+  }
+
+  @Test
+  void shouldNotReuseIdsOfPendingEntries() throws IOException {
+    long first = outbox.append("GET", "https://hitchhiker.com", ImmutableListMultimap.of(), null, null, null);
+
+    long second = restart().append("GET", "https://hitchhiker.com", ImmutableListMultimap.of(), null, null, null);
+
+    assertThat(second).isGreaterThan(first);
+  }
+
+  @Test
+  void shouldIgnoreIncompleteRecordAtEndOfJournal() throws IOException {
+    outbox.append("GET", "https://hitchhiker.com", ImmutableListMultimap.of(), null, null, null);
+    outbox.close();
+    Files.write(directory.resolve("journal"), new byte[]{0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+
+    Outbox restarted = restart();
+    assertThat(restarted.recover()).hasSize(1);
+    restarted.append("GET", "https://hitchhiker.com/after", ImmutableListMultimap.of(), null, null, null);
+
+    assertThat(restart().recover())
+      .extracting(OutboxEntry::getUrl)
+      .containsExactly("https://hitchhiker.com", "https://hitchhiker.com/after");
+  }
+
+  @Test
+  void shouldNotAppendAfterClose() throws IOException {
+    outbox.close();
+
+    long id = outbox.append("GET", "https://hitchhiker.com", ImmutableListMultimap.of(), null, null, null);
+
+    assertThat(id).isEqualTo(Outbox.NO_ENTRY);
+  }
+
+  @Test
+  void shouldBeDisabledByConfiguration() {
+    DispatchConfiguration configuration = new DispatchConfiguration();
+    configuration.setOutboxEnabled(false);
+    lenient().when(context.getDispatchConfiguration()).thenReturn(configuration);
+
+    assertThat(outbox.isEnabled()).isFalse();
+  }
+
+  private Outbox restart() throws IOException {
+    outbox.close();
+    outbox = new Outbox(context, directory, clock);
+    return outbox;
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class PushCoalescerTest {
+
+  private final Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+  private final Repository puzzle42 = RepositoryTestData.create42Puzzle();
+
+  @Mock
+  private WebHookDispatcher dispatcher;
+
+  @Mock
+  private ScheduledExecutorService executor;
+
+  private final List<List<Changeset>> deliveries = new ArrayList<>();
+
+  private PushCoalescer coalescer;
+
+  @BeforeEach
+  void setUp() {
+    heartOfGold.setId("hog");
+    puzzle42.setId("42");
+    coalescer = new PushCoalescer(dispatcher, executor);
+    lenient().doAnswer(invocation -> {
+      invocation.getArgument(0, WebHookExecutor.class).run();
+      return null;
+    }).when(dispatcher).dispatch(any());
+  }
+
+  @Test
+  void shouldMergePushesWithinWindow() {
+    SimpleWebHook webHook = webHook(2000);
+
+    coalescer.coalesce(heartOfGold, webHook, List.of(changeset("2"), changeset("1")), deliveries::add);
+    coalescer.coalesce(heartOfGold, webHook, List.of(changeset("4"), changeset("3")), deliveries::add);
+
+    assertThat(deliveries).isEmpty();
+    flush(1);
+
+    assertThat(deliveries).hasSize(1);
+    assertThat(deliveries.get(0)).extracting(Changeset::getId).containsExactly("4", "3", "2", "1");
+  }
+
+  @Test
+  void shouldRemoveDuplicateChangesets() {
+    SimpleWebHook webHook = webHook(2000);
+
+    coalescer.coalesce(heartOfGold, webHook, List.of(changeset("1")), deliveries::add);
+    coalescer.coalesce(heartOfGold, webHook, List.of(changeset("2"), changeset("1")), deliveries::add);
+    flush(1);
+
+    assertThat(deliveries.get(0)).extracting(Changeset::getId).containsExactly("2", "1");
+  }
+
+  @Test
+  void shouldKeepRepositoriesApart() {
+    SimpleWebHook webHook = webHook(2000);
+
+    coalescer.coalesce(heartOfGold, webHook, List.of(changeset("1")), deliveries::add);
+    coalescer.coalesce(puzzle42, webHook, List.of(changeset("2")), deliveries::add);
+    flush(2);
+
+    assertThat(deliveries).hasSize(2);
+  }
+
+  @Test
+  void shouldStartNewWindowAfterFlush() {
+    SimpleWebHook webHook = webHook(2000);
+
+    coalescer.coalesce(heartOfGold, webHook, List.of(changeset("1")), deliveries::add);
+    flush(1);
+    coalescer.coalesce(heartOfGold, webHook, List.of(changeset("2")), deliveries::add);
+    flush(2);
+
+    assertThat(deliveries).hasSize(2);
+    assertThat(deliveries.get(1)).extracting(Changeset::getId).containsExactly("2");
+  }
+
+  @Test
+  void shouldDeliverNullWithoutChangesets() {
+    SimpleWebHook webHook = webHook(2000);
+
+    coalescer.coalesce(heartOfGold, webHook, null, deliveries::add);
+    coalescer.coalesce(heartOfGold, webHook, null, deliveries::add);
+    flush(1);
+
+    assertThat(deliveries).containsExactly((List<Changeset>) null);
+  }
+
+  @Test
+  void shouldDeliverPendingPushesOnClose() {
+    SimpleWebHook webHook = webHook(2000);
+
+    coalescer.coalesce(heartOfGold, webHook, List.of(changeset("1")), deliveries::add);
+    coalescer.close();
+
+    verify(executor).shutdownNow();
+    verifyNoInteractions(dispatcher);
+    assertThat(deliveries).hasSize(1);
+  }
+
+  private void flush(int expectedWindows) {
+    ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass(Runnable.class);
+    verify(executor, times(expectedWindows)).schedule(flush.capture(), eq(2000L), eq(TimeUnit.MILLISECONDS));
+    flush.getAllValues().forEach(Runnable::run);
+  }
+
+  private SimpleWebHook webHook(long coalesceMillis) {
+    SimpleWebHook webHook = new SimpleWebHook();
+    webHook.setUrlPattern("https://hitchhiker.com/ci");
+    webHook.setCoalesceMillis(coalesceMillis);
+    return webHook;
+  }
+
+  private Changeset changeset(String id) {
+    return new Changeset(id, 0L, null);
+  }
+}
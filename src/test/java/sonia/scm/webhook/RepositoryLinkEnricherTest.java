@@ -84,6 +84,7 @@ public class RepositoryLinkEnricherTest {
     enricher.enrich(context, appender);
 
     verify(appender).appendLink("webHookConfig", "https://scm-manager.org/scm/api/v2/plugins/webhook/space/name");
+    verify(appender).appendLink("webHookDeliveries", "https://scm-manager.org/scm/api/v2/plugins/webhook/deliveries/space/name");
   }
 
   @Test
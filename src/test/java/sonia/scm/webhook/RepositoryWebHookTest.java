@@ -26,12 +26,19 @@ import sonia.scm.repository.PostReceiveRepositoryHookEvent;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryTestData;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,7 +46,8 @@ class RepositoryWebHookTest {
 
   @Mock
   private WebHookContext context;
-  private Set<DtoAdapterWebHookSpecification> specifications;
+  @Mock
+  private WebHookDispatcher dispatcher;
 
   private RepositoryWebHook hook;
 
@@ -51,13 +59,31 @@ class RepositoryWebHookTest {
 
   @BeforeEach
   void initHook() {
-    specifications = Sets.newHashSet(specification, new OtherWebHookSpecification(), new MalfunctioningWebHookSpecification());
-    hook = new RepositoryWebHook(context, specifications);
+    Set<DtoAdapterWebHookSpecification> specifications = Sets.newHashSet(specification, new OtherWebHookSpecification(), new MalfunctioningWebHookSpecification());
+    hook = new RepositoryWebHook(context, new AvailableWebHookSpecifications(specifications), dispatcher);
+  }
+
+  @BeforeEach
+  void initDispatcher() {
+    lenient().doAnswer(invocation -> {
+      invocation.getArgument(0, WebHookExecutor.class).run();
+      return null;
+    }).when(dispatcher).dispatch(any());
   }
 
   @BeforeEach
   void initEvent() {
     when(event.getRepository()).thenReturn(repository);
+    lenient().when(context.isWebHookAvailable(repository)).thenReturn(true);
+  }
+
+  @Test
+  void shouldSkipRepositoriesWithoutWebHooks() {
+    when(context.isWebHookAvailable(repository)).thenReturn(false);
+
+    hook.handleEvent(event);
+
+    verify(context, never()).getAllConfigurations(repository);
   }
 
   @Test
@@ -71,6 +97,32 @@ class RepositoryWebHookTest {
     assertThat(specification.executedEvent).isSameAs(event);
   }
 
+  @Test
+  void shouldDispatchExecutorInsteadOfRunningIt() {
+    reset(dispatcher);
+    when(context.getAllConfigurations(repository))
+      .thenReturn(new WebHookConfiguration(singletonList(new WebHook(new TestWebHookConfiguration(), "42"))));
+
+    hook.handleEvent(event);
+
+    verify(dispatcher).dispatch(any());
+    assertThat(specification.executedRepository).isNull();
+  }
+
+  @Test
+  void shouldShareChangesetsWithAllWebHooksOfEvent() {
+    when(context.getAllConfigurations(repository))
+      .thenReturn(new WebHookConfiguration(List.of(
+        new WebHook(new TestWebHookConfiguration(), "1"),
+        new WebHook(new TestWebHookConfiguration(), "2")
+      )));
+
+    hook.handleEvent(event);
+
+    assertThat(specification.changesets).hasSize(2);
+    assertThat(specification.changesets.get(0)).isSameAs(specification.changesets.get(1));
+  }
+
   @Test
   void shouldNotExecuteEventIfRepositoryNotSupportedBySpecification() {
     when(context.getAllConfigurations(repository))
@@ -109,12 +161,19 @@ class RepositoryWebHookTest {
     TestWebHookConfiguration executedConfiguration;
     Repository executedRepository;
     PostReceiveRepositoryHookEvent executedEvent;
+    final List<ChangesetSnapshot> changesets = new ArrayList<>();
 
     @Override
     public Class<TestWebHookConfiguration> getSpecificationType() {
       return TestWebHookConfiguration.class;
     }
 
+    @Override
+    public WebHookExecutor createExecutor(TestWebHookConfiguration webHook, Repository repository, PostReceiveRepositoryHookEvent event, ChangesetSnapshot changesets) {
+      this.changesets.add(changesets);
+      return createExecutor(webHook, repository, event);
+    }
+
     @Override
     public WebHookExecutor createExecutor(TestWebHookConfiguration webHook, Repository repository, PostReceiveRepositoryHookEvent event) {
       return () -> {
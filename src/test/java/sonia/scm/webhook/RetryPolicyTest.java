@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryPolicyTest {
+
+  @Test
+  void shouldDoubleDelayWithEveryAttempt() {
+    RetryPolicy retryPolicy = new RetryPolicy(10, 1000, 60000, 0, List.of());
+
+    assertThat(retryPolicy.delayAfterAttempt(1, 0.5)).isEqualTo(1000);
+    assertThat(retryPolicy.delayAfterAttempt(2, 0.5)).isEqualTo(2000);
+    assertThat(retryPolicy.delayAfterAttempt(3, 0.5)).isEqualTo(4000);
+  }
+
+  @Test
+  void shouldLimitDelayToMaxDelay() {
+    RetryPolicy retryPolicy = new RetryPolicy(100, 1000, 60000, 0, List.of());
+
+    assertThat(retryPolicy.delayAfterAttempt(7, 0)).isEqualTo(60000);
+    assertThat(retryPolicy.delayAfterAttempt(100, 0)).isEqualTo(60000);
+  }
+
+  @Test
+  void shouldSubtractJitter() {
+    RetryPolicy retryPolicy = new RetryPolicy(10, 1000, 60000, 50, List.of());
+
+    assertThat(retryPolicy.delayAfterAttempt(1, 0)).isEqualTo(1000);
+    assertThat(retryPolicy.delayAfterAttempt(1, 0.5)).isEqualTo(750);
+    assertThat(retryPolicy.delayAfterAttempt(2, 0.99)).isBetween(1000L, 1020L);
+  }
+
+  @Test
+  void shouldAlwaysRetryRequestsWithoutResponse() {
+    RetryPolicy retryPolicy = new RetryPolicy(10, 1000, 60000, 50, List.of(503));
+
+    assertThat(retryPolicy.retriesStatusCode(-1)).isTrue();
+    assertThat(retryPolicy.retriesStatusCode(503)).isTrue();
+    assertThat(retryPolicy.retriesStatusCode(404)).isFalse();
+  }
+}
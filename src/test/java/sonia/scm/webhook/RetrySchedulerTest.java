@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class RetrySchedulerTest {
+
+  @Mock
+  private WebHookDispatcher dispatcher;
+
+  private RetryScheduler scheduler;
+
+  @BeforeEach
+  void setUp() {
+    lenient().doAnswer(invocation -> {
+      try {
+        invocation.getArgument(0, WebHookExecutor.class).run();
+      } catch (RuntimeException e) {
+        // the dispatcher logs failures of executors
+      }
+      return null;
+    }).when(dispatcher).dispatch(any());
+    scheduler = new RetryScheduler(dispatcher);
+  }
+
+  @AfterEach
+  void tearDown() {
+    scheduler.close();
+  }
+
+  @Test
+  void shouldRunRetryAfterDelay() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+
+    scheduler.schedule(latch::countDown, 10);
+
+    assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void shouldHandRetryOverToDispatcher() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+
+    scheduler.schedule(latch::countDown, 0);
+
+    assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    verify(dispatcher).dispatch(any());
+  }
+
+  @Test
+  void shouldKeepWaitingRetriesInQueue() {
+    scheduler.schedule(() -> {}, 60000);
+    scheduler.schedule(() -> {}, 60000);
+
+    assertThat(scheduler.getPendingRetries()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldContinueAfterFailingRetry() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+
+    scheduler.schedule(() -> {
+      throw new IllegalStateException("failed");
+    }, 0);
+    scheduler.schedule(latch::countDown, 10);
+
+    assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+}
@@ -28,6 +28,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
@@ -38,8 +39,12 @@ import sonia.scm.repository.Repository;
 import sonia.scm.webhook.execution.WebHookExecution;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.Queue;
+import java.util.function.Consumer;
 
+import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.assertj.core.util.Lists.list;
@@ -49,8 +54,11 @@ import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -78,6 +86,30 @@ class SimpleWebHookExecutorTest {
   @Mock(answer = Answers.RETURNS_SELF)
   private WebhookRequest request;
 
+  @Mock
+  private HostScheduler scheduler;
+
+  @Mock
+  private CircuitBreakers circuitBreakers;
+
+  @Mock
+  private Outbox outbox;
+
+  @Mock
+  private RetryScheduler retryScheduler;
+
+  @Mock
+  private WebHookMetrics metrics;
+
+  @Mock
+  private DeliveryHistory history;
+
+  @Mock
+  private DeliveryArchive archive;
+
+  @Mock
+  private WebHookRateLimiter rateLimiter;
+
   @InjectMocks
   @Spy
   private WebHookSender sender;
@@ -102,6 +134,11 @@ class SimpleWebHookExecutorTest {
   @BeforeEach
   void setup() {
     mockedExecutionHeaderStatic = mockStatic(WebHookExecutionHeader.class);
+    lenient().doAnswer(invocation -> {
+      invocation.getArgument(1, Runnable.class).run();
+      return null;
+    }).when(scheduler).submit(any(), any(), any());
+    lenient().when(circuitBreakers.tryAcquire(any())).thenReturn(true);
   }
 
   @AfterEach
@@ -122,7 +159,7 @@ class SimpleWebHookExecutorTest {
 
       mockWebhook("http://test.com", httpMethod, HEADERS, EXECUTION_HEADERS);
 
-      new SimpleWebHookExecutor(sender, elParser, webHook, repository, CHANGESETS).run();
+      new SimpleWebHookExecutor(sender, new UrlTemplates(elParser), webHook, repository, CHANGESETS).run();
 
       verifyResult();
     }
@@ -133,7 +170,7 @@ class SimpleWebHookExecutorTest {
       mockWebhook("http://test.com", httpMethod, HEADERS, EXECUTION_HEADERS, true);
       when(webHook.isExecuteOnEveryCommit()).thenReturn(false);
 
-      new SimpleWebHookExecutor(sender, elParser, webHook, repository, CHANGESETS).run();
+      new SimpleWebHookExecutor(sender, new UrlTemplates(elParser), webHook, repository, CHANGESETS).run();
 
       verifyResult(true);
     }
@@ -142,10 +179,28 @@ class SimpleWebHookExecutorTest {
     void shouldNotFailIfChangesetsAreNull() {
       mockWebhook("http://test.com", HttpMethod.AUTO, HEADERS, EXECUTION_HEADERS, true);
 
-      new SimpleWebHookExecutor(sender, elParser, webHook, repository, null).run();
+      new SimpleWebHookExecutor(sender, new UrlTemplates(elParser), webHook, repository, null).run();
 
       verify(expression).evaluate(any());
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldSendMergedPushesOnce() throws IOException {
+      mockWebhook("http://test.com", HttpMethod.AUTO, HEADERS, EXECUTION_HEADERS, true);
+      when(webHook.getCoalesceMillis()).thenReturn(2000L);
+      PushCoalescer coalescer = mock(PushCoalescer.class);
+
+      new SimpleWebHookExecutor(sender, new UrlTemplates(elParser), webHook, repository, CHANGESETS, () -> new Changesets(CHANGESETS), coalescer, Runnable::run).run();
+
+      verify(sender, never()).execute(any());
+      ArgumentCaptor<Consumer<List<Changeset>>> delivery = ArgumentCaptor.forClass(Consumer.class);
+      verify(coalescer).coalesce(eq(repository), eq(webHook), eq(CHANGESETS), delivery.capture());
+
+      delivery.getValue().accept(list(new Changeset("64", 40L, null), CHANGESETS.get(0)));
+
+      verifyResult(true);
+    }
   }
 
   @Test
@@ -153,7 +208,7 @@ class SimpleWebHookExecutorTest {
     mockWebhook("http://test.com", HttpMethod.AUTO, HEADERS, EXECUTION_HEADERS, false);
     when(webHook.isExecuteOnEveryCommit()).thenReturn(true);
 
-    new SimpleWebHookExecutor(sender, elParser, webHook, repository, CHANGESETS).run();
+    new SimpleWebHookExecutor(sender, new UrlTemplates(elParser), webHook, repository, CHANGESETS).run();
 
     // Once per changeset
     verify(expression, times(3)).evaluate(argThat(arg -> {
@@ -168,7 +223,7 @@ class SimpleWebHookExecutorTest {
     mockWebhook("http://test.com", HttpMethod.AUTO, HEADERS, EXECUTION_HEADERS, true, true);
     when(webHook.isExecuteOnEveryCommit()).thenReturn(true);
 
-    new SimpleWebHookExecutor(sender, elParser, webHook, repository, CHANGESETS).run();
+    new SimpleWebHookExecutor(sender, new UrlTemplates(elParser), webHook, repository, CHANGESETS).run();
 
     // Once per changeset
     verify(expression, times(3)).evaluate(argThat(arg -> {
@@ -178,12 +233,42 @@ class SimpleWebHookExecutorTest {
     }));
   }
 
+  @Test
+  void shouldSummarizeCommitsExceedingMaxDeliveries() {
+    mockWebhook("http://test.com", HttpMethod.AUTO, HEADERS, EXECUTION_HEADERS, false);
+    when(webHook.isExecuteOnEveryCommit()).thenReturn(true);
+    when(webHook.getCommitDeliveryPolicy()).thenReturn(new CommitDeliveryPolicy(1, true, 2));
+
+    new SimpleWebHookExecutor(sender, new UrlTemplates(elParser), webHook, repository, CHANGESETS).run();
+
+    verify(sender, times(3)).execute(any(WebHookExecution.class));
+    // two commits on their own, the latest one in the summary
+    verify(expression, times(2)).evaluate(argThat(map -> map.containsKey("commit")));
+    verify(expression).evaluate(argThat(map -> map.containsKey("first") && map.containsKey("last")));
+  }
+
+  @Test
+  void shouldSendCommitsAndSummaryOnCommitExecutor() {
+    mockWebhook("http://test.com", HttpMethod.AUTO, HEADERS, EXECUTION_HEADERS, false);
+    when(webHook.isExecuteOnEveryCommit()).thenReturn(true);
+    when(webHook.getCommitDeliveryPolicy()).thenReturn(new CommitDeliveryPolicy(2, true, 2));
+    Queue<Runnable> tasks = new ArrayDeque<>();
+
+    new SimpleWebHookExecutor(sender, new UrlTemplates(elParser), webHook, repository, CHANGESETS, () -> new Changesets(CHANGESETS), null, tasks::add).run();
+
+    verify(sender, never()).execute(any(WebHookExecution.class));
+    while (!tasks.isEmpty()) {
+      tasks.poll().run();
+    }
+    verify(sender, times(3)).execute(any(WebHookExecution.class));
+  }
+
   @Test
   void shouldNotFailIfChangesetsAreNullForEachCommit() {
     SimpleWebHook localWebHookMock = mock(SimpleWebHook.class);
     when(localWebHookMock.isExecuteOnEveryCommit()).thenReturn(true);
 
-    new SimpleWebHookExecutor(sender, elParser, localWebHookMock, repository, null).run();
+    new SimpleWebHookExecutor(sender, new UrlTemplates(elParser), localWebHookMock, repository, null).run();
 
     verifyNoInteractions(expression);
   }
@@ -192,10 +277,23 @@ class SimpleWebHookExecutorTest {
   void shouldNotFailIfChangesetIsNull() {
     mockWebhook("http://test.com", HttpMethod.AUTO, HEADERS, EXECUTION_HEADERS, true);
 
-    new SimpleWebHookExecutor(sender, elParser, webHook, repository, null).run();
+    new SimpleWebHookExecutor(sender, new UrlTemplates(elParser), webHook, repository, null).run();
     verify(expression).evaluate(any());
   }
 
+  @Test
+  void shouldNotEvaluateLiteralUrl() throws IOException {
+    when(webHook.getMethod()).thenReturn(HttpMethod.GET);
+    when(webHook.getHeaders()).thenReturn(emptyList());
+    when(webHook.getUrlPattern()).thenReturn("http://test.com/hook");
+    mockRequest(httpClient::get, "http://test.com/hook");
+
+    new SimpleWebHookExecutor(sender, new UrlTemplates(elParser), webHook, repository, CHANGESETS).run();
+
+    verify(request).execute();
+    verifyNoInteractions(elParser, expression);
+  }
+
   void verifyResult() throws IOException {
     verifyResult(false);
   }
@@ -225,8 +323,9 @@ class SimpleWebHookExecutorTest {
     when(webHook.getMethod()).thenReturn(httpMethod);
     when(webHook.getHeaders()).thenReturn(headers);
     when(webHook.isSendCommitData()).thenReturn(sendCommitData);
-    when(webHook.getUrlPattern()).thenReturn(url);
-    when(elParser.parse(url)).thenReturn(expression);
+    String urlPattern = url + "/${repository.name}";
+    when(webHook.getUrlPattern()).thenReturn(urlPattern);
+    when(elParser.parse(urlPattern)).thenReturn(expression);
     when(expression.evaluate(anyMap())).thenReturn(url);
 
     if (headers.size() != executionHeaders.size()) {
@@ -73,7 +73,7 @@ class SimpleWebHookSpecificationTest {
 
     @Test
     void shouldGetChangesetsFromEvent() {
-      SimpleWebHookSpecification specification = new SimpleWebHookSpecification(sender, elParser);
+      SimpleWebHookSpecification specification = new SimpleWebHookSpecification(sender, new UrlTemplates(elParser), null, null);
 
       SimpleWebHookExecutor executor = (SimpleWebHookExecutor) specification.createExecutor(new SimpleWebHook(), repository, event);
 
@@ -96,7 +96,7 @@ class SimpleWebHookSpecificationTest {
       )
     );
 
-    SimpleWebHook mappedHook =  new SimpleWebHookSpecification(sender, elParser).mapToDto(simpleWebHook);
+    SimpleWebHook mappedHook =  new SimpleWebHookSpecification(sender, new UrlTemplates(elParser), null, null).mapToDto(simpleWebHook);
 
     assertThat(mappedHook.getHeaders().get(0).getValue()).isEqualTo("__DUMMY__");
     assertThat(mappedHook.getHeaders().get(1).getValue()).isEqualTo("no_secret");
@@ -119,7 +119,7 @@ class SimpleWebHookSpecificationTest {
       )
     );
 
-    new SimpleWebHookSpecification(sender, elParser).updateBeforeStore(oldSimpleWebHook, newSimpleWebHook);
+    new SimpleWebHookSpecification(sender, new UrlTemplates(elParser), null, null).updateBeforeStore(oldSimpleWebHook, newSimpleWebHook);
 
     assertThat(newSimpleWebHook.getHeaders().get(0).getValue()).isEqualTo("mySecret");
     assertThat(newSimpleWebHook.getHeaders().get(1).getValue()).isEqualTo("secret2");
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.io.ByteSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.net.ahc.ContentTransformer;
+import sonia.scm.repository.Changeset;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingChangesetsTest {
+
+  @Mock
+  private ContentTransformer transformer;
+
+  @BeforeEach
+  void mockTransformer() {
+    lenient().when(transformer.marshall(any())).thenAnswer(invocation -> {
+      Changeset changeset = invocation.getArgument(0);
+      return ByteSource.wrap(("{\"id\":\"" + changeset.getId() + "\"}").getBytes(StandardCharsets.UTF_8));
+    });
+  }
+
+  @Test
+  void shouldWriteChangesetsAsJsonArray() throws IOException {
+    StreamingChangesets content = new StreamingChangesets(
+      List.of(new Changeset("42", 0L, null), new Changeset("21", 0L, null)), transformer
+    );
+
+    assertThat(content.asCharSource(StandardCharsets.UTF_8).read())
+      .isEqualTo("{\"changeset\":[{\"id\":\"42\"},{\"id\":\"21\"}]}");
+  }
+
+  @Test
+  void shouldWriteEmptyArray() throws IOException {
+    StreamingChangesets content = new StreamingChangesets(List.of(), transformer);
+
+    assertThat(content.asCharSource(StandardCharsets.UTF_8).read()).isEqualTo("{\"changeset\":[]}");
+  }
+
+  @Test
+  void shouldReadByteByByte() throws IOException {
+    StreamingChangesets content = new StreamingChangesets(List.of(new Changeset("42", 0L, null)), transformer);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (InputStream input = content.openStream()) {
+      int b;
+      while ((b = input.read()) != -1) {
+        output.write(b);
+      }
+    }
+
+    assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo("{\"changeset\":[{\"id\":\"42\"}]}");
+  }
+
+  @Test
+  void shouldBeReadableMoreThanOnce() throws IOException {
+    StreamingChangesets content = new StreamingChangesets(List.of(new Changeset("42", 0L, null)), transformer);
+
+    assertThat(content.read()).isEqualTo(content.read());
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.io.ByteSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.net.HttpURLConnectionFactory;
+import sonia.scm.net.ahc.AdvancedHttpRequestWithBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingWebhookRequestTest {
+
+  private static final String URL = "https://hitchhiker.com/hook";
+  private static final byte[] BODY = "{\"changeset\":[]}".getBytes(StandardCharsets.UTF_8);
+
+  @Mock(answer = Answers.RETURNS_SELF)
+  private AdvancedHttpRequestWithBody request;
+  @Mock
+  private HttpURLConnectionFactory connectionFactory;
+  @Mock
+  private HttpURLConnection connection;
+
+  private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+  private StreamingWebhookRequest streamingRequest;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    lenient().when(request.getUrl()).thenReturn(URL);
+    lenient().when(request.getMethod()).thenReturn("POST");
+    lenient().when(request.getHeaders()).thenReturn(ImmutableListMultimap.of("Content-Type", "application/json"));
+    lenient().when(connectionFactory.create(URI.create(URL).toURL())).thenReturn(connection);
+    lenient().when(connection.getOutputStream()).thenReturn(sent);
+    lenient().when(connection.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+    streamingRequest = new StreamingWebhookRequest(request, ByteSource.wrap(BODY), connectionFactory);
+  }
+
+  @Test
+  void shouldWriteBodyWithChunkedTransferEncoding() throws IOException {
+    when(connection.getResponseCode()).thenReturn(200);
+
+    int statusCode = streamingRequest.execute();
+
+    assertThat(statusCode).isEqualTo(200);
+    assertThat(sent.toByteArray()).isEqualTo(BODY);
+    verify(connection).setRequestMethod("POST");
+    verify(connection).setChunkedStreamingMode(0);
+    verify(connection).addRequestProperty("Content-Type", "application/json");
+  }
+
+  @Test
+  void shouldReadRetryAfterOfResponse() throws IOException {
+    when(connection.getResponseCode()).thenReturn(429);
+    when(connection.getErrorStream()).thenReturn(new ByteArrayInputStream("slow down".getBytes(StandardCharsets.UTF_8)));
+    when(connection.getHeaderField("Retry-After")).thenReturn("2");
+
+    int statusCode = streamingRequest.execute();
+
+    assertThat(statusCode).isEqualTo(429);
+    assertThat(streamingRequest.getRetryAfterMillis()).isEqualTo(2000);
+  }
+
+  @Test
+  void shouldComputeHeaderFromStreamedContent() {
+    streamingRequest.addHeader(new WebHookExecutionHeader("X-Length", content -> {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      try {
+        content.process(output);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      return String.valueOf(output.size());
+    }));
+
+    verify(request).header("X-Length", String.valueOf(BODY.length));
+  }
+
+  @Test
+  void shouldNotBeJournaled() {
+    assertThat(streamingRequest.isJournaled()).isFalse();
+    assertThat(streamingRequest.getContentLength()).isEqualTo(-1);
+  }
+}
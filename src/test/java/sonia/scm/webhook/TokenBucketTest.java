@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+  private final AtomicLong nanoTime = new AtomicLong();
+
+  @Test
+  void shouldAllowBurst() {
+    TokenBucket bucket = new TokenBucket(1, 3, nanoTime::get);
+
+    assertThat(bucket.reserve()).isZero();
+    assertThat(bucket.reserve()).isZero();
+    assertThat(bucket.reserve()).isZero();
+  }
+
+  @Test
+  void shouldSpreadReservationsAtRate() {
+    TokenBucket bucket = new TokenBucket(2, 1, nanoTime::get);
+
+    assertThat(bucket.reserve()).isZero();
+    assertThat(bucket.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+    assertThat(bucket.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1000));
+  }
+
+  @Test
+  void shouldRefillOverTime() {
+    TokenBucket bucket = new TokenBucket(10, 2, nanoTime::get);
+    bucket.reserve();
+    bucket.reserve();
+
+    nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+
+    assertThat(bucket.reserve()).isZero();
+    assertThat(bucket.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+  }
+
+  @Test
+  void shouldNotRefillBeyondBurst() {
+    TokenBucket bucket = new TokenBucket(10, 2, nanoTime::get);
+
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+    assertThat(bucket.reserve()).isZero();
+    assertThat(bucket.reserve()).isZero();
+    assertThat(bucket.reserve()).isPositive();
+  }
+
+  @Test
+  void shouldApplyNewRate() {
+    TokenBucket bucket = new TokenBucket(1, 1, nanoTime::get);
+    bucket.reserve();
+
+    bucket.update(4, 1);
+
+    assertThat(bucket.reserve()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(250));
+  }
+}
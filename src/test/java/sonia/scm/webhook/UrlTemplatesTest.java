@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.cloudogu.scm.el.ElParser;
+import com.cloudogu.scm.el.Expression;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Changeset;
+
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UrlTemplatesTest {
+
+  @Mock
+  private ElParser elParser;
+  @Mock
+  private Expression expression;
+
+  @InjectMocks
+  private UrlTemplates urlTemplates;
+
+  @Test
+  void shouldParsePatternOnlyOnce() {
+    when(elParser.parse("https://hitchhiker.com/${repository.name}")).thenReturn(expression);
+
+    UrlTemplate first = urlTemplates.compile("https://hitchhiker.com/${repository.name}");
+    UrlTemplate second = urlTemplates.compile("https://hitchhiker.com/${repository.name}");
+
+    assertThat(first).isSameAs(second);
+    assertThat(first.isLiteral()).isFalse();
+    verify(elParser, times(1)).parse("https://hitchhiker.com/${repository.name}");
+  }
+
+  @Test
+  void shouldCompilePatternsOfStoredConfiguration() {
+    when(elParser.parse("https://hitchhiker.com/${repository.name}")).thenReturn(expression);
+    WebHookConfiguration configuration = new WebHookConfiguration(List.of(
+      new WebHook(new SimpleWebHook("https://hitchhiker.com/${repository.name}", false, false, HttpMethod.AUTO, emptyList()), "1")
+    ));
+
+    urlTemplates.compileAll(configuration);
+    urlTemplates.compile("https://hitchhiker.com/${repository.name}");
+
+    verify(elParser, times(1)).parse("https://hitchhiker.com/${repository.name}");
+  }
+
+  @Test
+  void shouldNotFailForInvalidPatterns() {
+    when(elParser.parse("${")).thenThrow(new IllegalArgumentException("invalid"));
+    WebHookConfiguration configuration = new WebHookConfiguration(List.of(
+      new WebHook(new SimpleWebHook("${", false, false, HttpMethod.AUTO, emptyList()), "1")
+    ));
+
+    urlTemplates.compileAll(configuration);
+  }
+
+
+  @Test
+  void shouldNotParseLiteralPatterns() {
+    UrlTemplate template = urlTemplates.compile("https://hitchhiker.com/hook");
+
+    assertThat(template.isLiteral()).isTrue();
+    assertThat(template.render(null, (Changeset) null)).isEqualTo("https://hitchhiker.com/hook");
+    verifyNoInteractions(elParser);
+  }
+
+  @Test
+  void shouldParseDeferredExpressions() {
+    when(elParser.parse("https://hitchhiker.com/#{repository.name}")).thenReturn(expression);
+
+    UrlTemplate template = urlTemplates.compile("https://hitchhiker.com/#{repository.name}");
+
+    assertThat(template.isLiteral()).isFalse();
+  }
+}
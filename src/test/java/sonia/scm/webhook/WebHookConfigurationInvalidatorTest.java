@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.HandlerEventType;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryEvent;
+import sonia.scm.repository.RepositoryTestData;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class WebHookConfigurationInvalidatorTest {
+
+  private final Repository repository = RepositoryTestData.createHeartOfGold();
+
+  @Mock
+  private WebHookContext context;
+
+  @Mock
+  private DeliveryHistory history;
+
+  @Mock
+  private DeliveryArchive archive;
+
+  @InjectMocks
+  private WebHookConfigurationInvalidator invalidator;
+
+  @Test
+  void shouldInvalidateDeletedRepository() {
+    invalidator.handleEvent(new RepositoryEvent(HandlerEventType.DELETE, repository));
+
+    verify(context).invalidate(repository);
+    verify(context).remove(repository);
+    verify(history).delete(repository);
+    verify(archive).delete(repository);
+  }
+
+  @Test
+  void shouldInvalidateModifiedRepository() {
+    Repository oldRepository = repository.clone();
+    oldRepository.setName("Restaurant");
+
+    invalidator.handleEvent(new RepositoryEvent(HandlerEventType.MODIFY, repository, oldRepository));
+
+    verify(context).invalidate(repository);
+    verify(context).invalidate(oldRepository);
+    verifyNoInteractions(history, archive);
+  }
+
+  @Test
+  void shouldIgnoreCreatedRepository() {
+    invalidator.handleEvent(new RepositoryEvent(HandlerEventType.CREATE, repository));
+
+    verifyNoInteractions(context, history, archive);
+  }
+}
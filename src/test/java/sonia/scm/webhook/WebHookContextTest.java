@@ -27,6 +27,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.plugin.PluginLoader;
 import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryDAO;
 import sonia.scm.repository.RepositoryManager;
 import sonia.scm.repository.RepositoryTestData;
 import sonia.scm.store.ConfigurationStore;
@@ -39,7 +40,10 @@ import java.io.IOException;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -56,7 +60,11 @@ class WebHookContextTest {
   @Mock
   private RepositoryManager repositoryManager;
   @Mock
+  private RepositoryDAO repositoryDAO;
+  @Mock
   private ConfigurationUpdater configurationUpdater;
+  @Mock
+  private UrlTemplates urlTemplates;
 
   private WebHookContext context;
 
@@ -69,8 +77,9 @@ class WebHookContextTest {
     when(storeFactory.withType(WebHookConfiguration.class).withName("webhook").forRepository(repository).build()).thenReturn(repositoryStore);
     PluginLoader pluginLoader = mock(PluginLoader.class);
     when(pluginLoader.getUberClassLoader()).thenReturn(new TestClassLoader());
-    when(repositoryManager.get(new NamespaceAndName("hitchhiker", "HeartOfGold"))).thenReturn(repository);
-    context = new WebHookContext(storeFactory, repositoryManager, pluginLoader, configurationUpdater);
+    lenient().when(repositoryManager.get(new NamespaceAndName("hitchhiker", "HeartOfGold"))).thenReturn(repository);
+    lenient().when(repositoryDAO.getAll()).thenReturn(List.of(repository));
+    context = new WebHookContext(storeFactory, repositoryManager, repositoryDAO, pluginLoader, configurationUpdater, urlTemplates);
   }
 
   @Test
@@ -111,6 +120,120 @@ class WebHookContextTest {
       .contains("global setting", "repository setting");
   }
 
+  @Test
+  void shouldCacheMergedConfiguration() throws IOException {
+    mockConfigurationInGlobalStore();
+
+    WebHookConfiguration first = context.getAllConfigurations(repository);
+    globalStore.setConfiguration(null);
+    WebHookConfiguration second = context.getAllConfigurations(repository);
+
+    assertThat(second.getWebhooks()).hasSize(1);
+    assertThat(second.getWebhooks().get(0).getConfiguration()).isSameAs(first.getWebhooks().get(0).getConfiguration());
+  }
+
+  @Test
+  void shouldNotExposeCachedConfiguration() throws IOException {
+    mockConfigurationInGlobalStore();
+
+    WebHookConfiguration first = context.getAllConfigurations(repository);
+    first.getWebhooks().get(0).setName("changed");
+    first.getWebhooks().clear();
+    WebHookConfiguration second = context.getAllConfigurations(repository);
+
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.getWebhooks()).hasSize(1);
+    assertThat(second.getWebhooks().get(0).getName()).isNotEqualTo("changed");
+  }
+
+  @Test
+  void shouldReadConfigurationAgainAfterInvalidation() throws IOException {
+    mockConfigurationInGlobalStore();
+
+    context.getAllConfigurations(repository);
+    globalStore.setConfiguration(null);
+    context.invalidate(repository);
+    WebHookConfiguration configurations = context.getAllConfigurations(repository);
+
+    assertThat(configurations.getWebhooks()).isEmpty();
+  }
+
+  @Test
+  void shouldInvalidateCacheWhenRepositoryConfigurationIsStored() throws IOException {
+    mockConfigurationInGlobalStore();
+    WebHookConfiguration update = new WebHookConfiguration();
+    when(configurationUpdater.update(null, update)).thenReturn(update);
+
+    context.getAllConfigurations(repository);
+    globalStore.setConfiguration(null);
+    context.setRepositoryConfiguration(update, "hitchhiker", "HeartOfGold");
+    WebHookConfiguration configurations = context.getAllConfigurations(repository);
+
+    assertThat(configurations.getWebhooks()).isEmpty();
+  }
+
+  @Test
+  void shouldKnowRepositoriesWithoutWebHooks() {
+    assertThat(context.isWebHookAvailable(repository)).isFalse();
+    assertThat(context.getAllConfigurations(repository).getWebhooks()).isEmpty();
+  }
+
+  @Test
+  void shouldKnowRepositoriesWithRepositorySpecificWebHooks() throws IOException {
+    mockConfigurationInRepositoryStore();
+
+    assertThat(context.isWebHookAvailable(repository)).isTrue();
+  }
+
+  @Test
+  void shouldKnowRepositoriesWithGlobalWebHooks() throws IOException {
+    mockConfigurationInGlobalStore();
+
+    assertThat(context.isWebHookAvailable(RepositoryTestData.createRestaurantAtTheEndOfTheUniverse())).isTrue();
+  }
+
+  @Test
+  void shouldReadStoresOnlyOnceForAvailability() throws IOException {
+    assertThat(context.isWebHookAvailable(repository)).isFalse();
+
+    mockConfigurationInRepositoryStore();
+
+    assertThat(context.isWebHookAvailable(repository)).isFalse();
+    verify(repositoryDAO, times(1)).getAll();
+  }
+
+  @Test
+  void shouldUpdateAvailabilityWhenRepositoryConfigurationIsStored() {
+    WebHookConfiguration update = new WebHookConfiguration(List.of(new WebHook()));
+    when(configurationUpdater.update(null, update)).thenReturn(update);
+
+    assertThat(context.isWebHookAvailable(repository)).isFalse();
+    context.setRepositoryConfiguration(update, "hitchhiker", "HeartOfGold");
+
+    assertThat(context.isWebHookAvailable(repository)).isTrue();
+  }
+
+  @Test
+  void shouldUpdateAvailabilityWhenGlobalConfigurationIsStored() {
+    WebHookConfiguration update = new WebHookConfiguration(List.of(new WebHook()));
+    when(configurationUpdater.update(null, update)).thenReturn(update);
+
+    assertThat(context.isWebHookAvailable(repository)).isFalse();
+    context.setGlobalConfiguration(update);
+
+    assertThat(context.isWebHookAvailable(repository)).isTrue();
+  }
+
+  @Test
+  void shouldForgetRemovedRepository() throws IOException {
+    mockConfigurationInRepositoryStore();
+    assertThat(context.isWebHookAvailable(repository)).isTrue();
+
+    context.remove(repository);
+
+    assertThat(context.isWebHookAvailable(repository)).isFalse();
+  }
+
   private void mockConfigurationInGlobalStore() throws IOException {
     globalStore.setConfiguration(getXmlStore("sonia/scm/webhook/globalWebhookStore.xml"));
   }
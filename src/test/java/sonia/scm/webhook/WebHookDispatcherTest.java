@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WebHookDispatcherTest {
+
+  @Mock
+  private WebHookContext context;
+
+  @InjectMocks
+  private WebHookDispatcher dispatcher;
+
+  @AfterEach
+  void closeDispatcher() {
+    dispatcher.close();
+  }
+
+  @Test
+  void shouldRunExecutorOnWorkerThread() throws InterruptedException {
+    when(context.getDispatchConfiguration()).thenReturn(new DispatchConfiguration());
+    AtomicReference<String> threadName = new AtomicReference<>();
+    CountDownLatch latch = new CountDownLatch(1);
+
+    dispatcher.dispatch(() -> {
+      threadName.set(Thread.currentThread().getName());
+      latch.countDown();
+    });
+
+    assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(threadName.get()).startsWith("WebHookDispatcher-");
+  }
+
+  @Test
+  void shouldRunOnCallingThreadIfQueueIsFull() throws InterruptedException {
+    when(context.getDispatchConfiguration()).thenReturn(new DispatchConfiguration(1, 1));
+    CountDownLatch blocker = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicReference<Thread> thread = new AtomicReference<>();
+
+    dispatcher.dispatch(() -> {
+      started.countDown();
+      await(blocker);
+    });
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    dispatcher.dispatch(() -> {});
+    dispatcher.dispatch(() -> thread.set(Thread.currentThread()));
+    blocker.countDown();
+
+    assertThat(thread.get()).isSameAs(Thread.currentThread());
+  }
+
+  @Test
+  void shouldContinueAfterFailingExecutor() throws InterruptedException {
+    when(context.getDispatchConfiguration()).thenReturn(new DispatchConfiguration(1, 10));
+    CountDownLatch latch = new CountDownLatch(1);
+
+    dispatcher.dispatch(() -> {
+      throw new IllegalStateException("failure");
+    });
+    dispatcher.dispatch(latch::countDown);
+
+    assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void shouldUseNewConfiguration() throws InterruptedException {
+    when(context.getDispatchConfiguration()).thenReturn(new DispatchConfiguration(1, 10));
+    CountDownLatch first = new CountDownLatch(1);
+    dispatcher.dispatch(first::countDown);
+    assertThat(first.await(5, TimeUnit.SECONDS)).isTrue();
+
+    when(context.getDispatchConfiguration()).thenReturn(new DispatchConfiguration(2, 10));
+    CountDownLatch second = new CountDownLatch(1);
+    dispatcher.dispatch(second::countDown);
+
+    assertThat(second.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
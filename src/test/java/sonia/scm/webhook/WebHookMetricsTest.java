@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WebHookMetricsTest {
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+
+  @Mock
+  private WebHookDispatcher dispatcher;
+  @Mock
+  private HostScheduler scheduler;
+  @Mock
+  private RetryScheduler retryScheduler;
+  @Mock
+  private WebhookRequest request;
+
+  private WebHookMetrics metrics;
+  private Delivery delivery;
+
+  @BeforeEach
+  void setUp() {
+    metrics = new WebHookMetrics(registry, dispatcher, scheduler, retryScheduler);
+    delivery = new Delivery("https://hitchhiker.com/trigger", "hitchhiker.com", request, Outbox.NO_ENTRY, null, "42", "SimpleWebHook", "repo-1", DeliveryArchive.NOT_ARCHIVED, null);
+  }
+
+  @Test
+  void shouldRecordRequest() {
+    when(request.getContentLength()).thenReturn(128L);
+
+    long start = metrics.requestStarted(delivery);
+    assertThat(registry.get("scm.webhook.deliveries.inflight").gauge().value()).isEqualTo(1);
+    metrics.requestFinished(delivery, 200, start);
+
+    assertThat(registry.get("scm.webhook.deliveries.inflight").gauge().value()).isZero();
+    assertThat(registry.get("scm.webhook.request.duration")
+      .tag("specification", "SimpleWebHook")
+      .tag("host", "hitchhiker.com")
+      .timer().count()).isEqualTo(1);
+    assertThat(registry.get("scm.webhook.requests").tag("status", "200").counter().count()).isEqualTo(1);
+    assertThat(registry.get("scm.webhook.request.size").summary().totalAmount()).isEqualTo(128);
+  }
+
+  @Test
+  void shouldNotRecordUnknownSize() {
+    when(request.getContentLength()).thenReturn(-1L);
+
+    metrics.requestFinished(delivery, -1, metrics.requestStarted(delivery));
+
+    assertThat(registry.find("scm.webhook.request.size").summary()).isNull();
+    assertThat(registry.get("scm.webhook.requests").tag("status", "none").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldNotTagRequestsWithWebHookId() {
+    metrics.requestFinished(delivery, 200, metrics.requestStarted(delivery));
+
+    assertThat(registry.get("scm.webhook.request.duration").timer().getId().getTag("webhook")).isNull();
+    assertThat(registry.get("scm.webhook.requests").counter().getId().getTag("webhook")).isNull();
+  }
+
+  @Test
+  void shouldReportQueues() {
+    when(dispatcher.getQueuedExecutors()).thenReturn(5);
+    when(scheduler.getPendingDeliveries()).thenReturn(3);
+    when(retryScheduler.getPendingRetries()).thenReturn(2);
+
+    assertThat(registry.get("scm.webhook.dispatch.queued").gauge().value()).isEqualTo(5);
+
+    assertThat(registry.get("scm.webhook.deliveries.queued").gauge().value()).isEqualTo(3);
+    assertThat(registry.get("scm.webhook.deliveries.retries").gauge().value()).isEqualTo(2);
+  }
+}
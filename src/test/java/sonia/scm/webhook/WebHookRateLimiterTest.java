@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebHookRateLimiterTest {
+
+  private final AtomicLong nanoTime = new AtomicLong();
+  private final WebHookRateLimiter rateLimiter = new WebHookRateLimiter(nanoTime::get);
+
+  @Test
+  void shouldNotDelayDeliveriesWithoutRateLimit() {
+    for (int i = 0; i < 10; i++) {
+      assertThat(rateLimiter.reserve(delivery("42", null))).isZero();
+    }
+  }
+
+  @Test
+  void shouldQueueDeliveriesBeyondBurst() {
+    RateLimit rateLimit = new RateLimit(2, 2);
+
+    assertThat(rateLimiter.reserve(delivery("42", rateLimit))).isZero();
+    assertThat(rateLimiter.reserve(delivery("42", rateLimit))).isZero();
+    assertThat(rateLimiter.reserve(delivery("42", rateLimit))).isEqualTo(500);
+    assertThat(rateLimiter.reserve(delivery("42", rateLimit))).isEqualTo(1000);
+  }
+
+  @Test
+  void shouldLimitEveryWebHookOnItsOwn() {
+    RateLimit rateLimit = new RateLimit(1, 1);
+
+    assertThat(rateLimiter.reserve(delivery("42", rateLimit))).isZero();
+    assertThat(rateLimiter.reserve(delivery("21", rateLimit))).isZero();
+    assertThat(rateLimiter.reserve(delivery("42", rateLimit))).isEqualTo(1000);
+  }
+
+  @Test
+  void shouldDelayDeliveriesWhileHostIsPaused() {
+    rateLimiter.pause("hitchhiker.com", 30000);
+
+    assertThat(rateLimiter.reserve(delivery("42", null))).isEqualTo(30000);
+    assertThat(rateLimiter.remainingPause("hitchhiker.com")).isEqualTo(30000);
+    assertThat(rateLimiter.remainingPause("chat.hitchhiker.com")).isZero();
+
+    nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+    assertThat(rateLimiter.remainingPause("hitchhiker.com")).isZero();
+  }
+
+  @Test
+  void shouldAddPauseToDelayOfRateLimit() {
+    RateLimit rateLimit = new RateLimit(1, 1);
+    rateLimiter.reserve(delivery("42", rateLimit));
+    rateLimiter.pause("hitchhiker.com", 10000);
+
+    assertThat(rateLimiter.reserve(delivery("42", rateLimit))).isEqualTo(11000);
+  }
+
+  @Test
+  void shouldLimitPause() {
+    rateLimiter.pause("hitchhiker.com", TimeUnit.DAYS.toMillis(7));
+
+    assertThat(rateLimiter.remainingPause("hitchhiker.com")).isEqualTo(WebHookRateLimiter.MAX_PAUSE_MILLIS);
+  }
+
+  private static Delivery delivery(String webHookId, RateLimit rateLimit) {
+    return new Delivery(
+      "https://hitchhiker.com/trigger", "hitchhiker.com", null, Outbox.NO_ENTRY, null,
+      webHookId, "SimpleWebHook", "repo-1", DeliveryArchive.NOT_ARCHIVED, rateLimit
+    );
+  }
+}
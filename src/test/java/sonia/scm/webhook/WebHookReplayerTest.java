@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook;
+
+import com.google.common.collect.ImmutableListMultimap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.NotFoundException;
+import sonia.scm.repository.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WebHookReplayerTest {
+
+  private static final Instant NOW = Instant.parse("2025-01-01T10:00:00Z");
+
+  private final Repository repository = new Repository("repo-1", "git", "hitchhiker", "heart-of-gold");
+  private final DispatchConfiguration configuration = new DispatchConfiguration();
+
+  @Mock
+  private WebHookContext context;
+  @Mock
+  private DeliveryHistory history;
+  @Mock
+  private DeliveryArchive archive;
+  @Mock
+  private WebHookSender sender;
+  @Mock
+  private RetryScheduler scheduler;
+
+  private WebHookReplayer replayer;
+
+  @BeforeEach
+  void setUp() {
+    when(context.getDispatchConfiguration()).thenReturn(configuration);
+    lenient().when(archive.contains(eq("repo-1"), anyLong())).thenReturn(true);
+    lenient().when(archive.load(eq("repo-1"), anyLong())).thenAnswer(invocation -> Optional.of(archived(invocation.getArgument(1))));
+    replayer = new WebHookReplayer(context, history, archive, sender, scheduler);
+  }
+
+  @Test
+  void shouldRedeliverRecordedDelivery() {
+    runScheduledImmediately();
+    when(history.getDeliveries(repository)).thenReturn(List.of(
+      record(4, 18, 200, "https://hitchhiker.com/chat"),
+      record(3, 17, 500, "https://hitchhiker.com/ci")
+    ));
+
+    replayer.redeliver(repository, 3);
+
+    verify(sender).redeliver(eq("repo-1"), eq("42"), any(OutboxEntry.class));
+    verify(archive).load("repo-1", 17);
+  }
+
+  @Test
+  void shouldFailForUnknownDelivery() {
+    when(history.getDeliveries(repository)).thenReturn(List.of(record(4, 18, 200, "https://hitchhiker.com/chat")));
+
+    assertThatThrownBy(() -> replayer.redeliver(repository, 3)).isInstanceOf(NotFoundException.class);
+    verifyNoInteractions(scheduler);
+  }
+
+  @Test
+  void shouldFailForDeliveryWithoutArchivedRequest() {
+    when(history.getDeliveries(repository)).thenReturn(List.of(record(3, DeliveryArchive.NOT_ARCHIVED, 500, "https://hitchhiker.com/ci")));
+
+    assertThatThrownBy(() -> replayer.redeliver(repository, 3)).isInstanceOf(NotFoundException.class);
+  }
+
+  @Test
+  void shouldReplayRequestsWhoseLatestAttemptFailed() {
+    runScheduledImmediately();
+    when(history.getRepositoryIds()).thenReturn(List.of("repo-1"));
+    when(history.getDeliveries("repo-1")).thenReturn(List.of(
+      record(6, 20, 200, "https://hitchhiker.com/ci"),
+      record(5, 19, 503, "https://hitchhiker.com/ci"),
+      record(4, 19, 503, "https://hitchhiker.com/ci"),
+      record(3, 18, 503, "https://chat.hitchhiker.com/hook"),
+      record(2, 20, -1, "https://hitchhiker.com/ci"),
+      new DeliveryRecord(1, NOW.minusSeconds(7200), "42", "https://hitchhiker.com/ci", 503, 1, 0, 1, 16, null)
+    ));
+
+    int replayed = replayer.replayFailed("hitchhiker.com", NOW.minusSeconds(3600), NOW);
+
+    assertThat(replayed).isEqualTo(1);
+    verify(archive).load("repo-1", 19);
+    verify(sender).redeliver(eq("repo-1"), eq("42"), any(OutboxEntry.class));
+  }
+
+  @Test
+  void shouldNotReplayRequestTwiceWhileItIsWaiting() {
+    when(history.getRepositoryIds()).thenReturn(List.of("repo-1"));
+    when(history.getDeliveries("repo-1")).thenReturn(List.of(record(5, 19, 503, "https://hitchhiker.com/ci")));
+
+    assertThat(replayer.replayFailed("hitchhiker.com", Instant.MIN, Instant.MAX)).isEqualTo(1);
+    assertThat(replayer.replayFailed("hitchhiker.com", Instant.MIN, Instant.MAX)).isZero();
+  }
+
+  @Test
+  void shouldRedeliverOnlyWhenScheduledReplayIsDue() {
+    when(history.getRepositoryIds()).thenReturn(List.of("repo-1"));
+    when(history.getDeliveries("repo-1")).thenReturn(List.of(record(5, 19, 503, "https://hitchhiker.com/ci")));
+
+    replayer.replayFailed("hitchhiker.com", Instant.MIN, Instant.MAX);
+
+    ArgumentCaptor<Runnable> replay = ArgumentCaptor.forClass(Runnable.class);
+    verify(scheduler).schedule(replay.capture(), anyLong());
+    verifyNoInteractions(sender);
+
+    replay.getValue().run();
+
+    verify(sender).redeliver(eq("repo-1"), eq("42"), any(OutboxEntry.class));
+    assertThat(replayer.replayFailed("hitchhiker.com", Instant.MIN, Instant.MAX)).isEqualTo(1);
+  }
+
+  @Test
+  void shouldLimitRateOfReplays() {
+    configuration.setReplayRatePerSecond(1);
+    replayer = new WebHookReplayer(context, history, archive, sender, scheduler);
+    when(history.getRepositoryIds()).thenReturn(List.of("repo-1"));
+    when(history.getDeliveries("repo-1")).thenReturn(List.of(
+      record(2, 19, 503, "https://hitchhiker.com/ci"),
+      record(1, 18, 503, "https://hitchhiker.com/ci")
+    ));
+
+    replayer.replayFailed("hitchhiker.com", Instant.MIN, Instant.MAX);
+
+    verify(scheduler).schedule(any(), eq(0L));
+    verify(scheduler).schedule(any(), longThat(delay -> delay > 900));
+  }
+
+  private void runScheduledImmediately() {
+    doAnswer(invocation -> {
+      invocation.getArgument(0, Runnable.class).run();
+      return null;
+    }).when(scheduler).schedule(any(), anyLong());
+  }
+
+  private static DeliveryRecord record(long sequence, long requestId, int statusCode, String url) {
+    return new DeliveryRecord(sequence, NOW.minusSeconds(60), "42", url, statusCode, 1, 0, 1, requestId, null);
+  }
+
+  private static OutboxEntry archived(long id) {
+    return new OutboxEntry(id, 0, "POST", "https://hitchhiker.com/ci", ImmutableListMultimap.of(), new byte[0], null);
+  }
+}
@@ -16,26 +16,51 @@
 
 package sonia.scm.webhook;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.net.ahc.AdvancedHttpRequestWithBody;
 import sonia.scm.net.ahc.BaseHttpRequest;
+import sonia.scm.repository.Repository;
 import sonia.scm.webhook.execution.WebHookExecution;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -53,9 +78,38 @@ class WebHookSenderTest {
   @Mock
   WebhookHttpClient webhookHttpClient;
 
+  @Mock
+  HostScheduler scheduler;
+
+  @Mock
+  CircuitBreakers circuitBreakers;
+
+  @Mock
+  Outbox outbox;
+
+  @Mock
+  RetryScheduler retryScheduler;
+
+  @Mock
+  WebHookMetrics metrics;
+
+  @Mock
+  DeliveryHistory history;
+
+  @Mock
+  DeliveryArchive archive;
+
+  @Mock
+  WebHookRateLimiter rateLimiter;
+
   @BeforeEach
   void setUp() {
     exampleWebHookRequest = spy(new WebhookRequest(internalRequest));
+    lenient().doAnswer(invocation -> {
+      invocation.getArgument(1, Runnable.class).run();
+      return null;
+    }).when(scheduler).submit(any(), any(), any());
+    lenient().when(circuitBreakers.tryAcquire(any())).thenReturn(true);
   }
 
   @Test
@@ -110,6 +164,514 @@ class WebHookSenderTest {
     verify(internalRequest).disableCertificateValidation(true);
   }
 
+  @Test
+  void shouldSubmitDeliveryForAuthorityOfUrl() {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    WebHookExecution execution = WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://ci.hitchhiker.com:8443/job/trigger?token=42")
+      .headers(List.of())
+      .build();
+
+    target.execute(execution);
+
+    verify(scheduler).submit(eq("ci.hitchhiker.com:8443"), any(), any());
+  }
+
+  @Test
+  void shouldFailFastIfCircuitBreakerIsOpen() {
+    when(circuitBreakers.tryAcquire("hitchhiker.com")).thenReturn(false);
+
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .build());
+
+    assertDoesNotThrow(() -> verify(exampleWebHookRequest, never()).execute());
+  }
+
+  @Test
+  void shouldRecordServerErrorAsFailure() throws IOException {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doReturn(503).when(exampleWebHookRequest).execute();
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .build());
+
+    verify(circuitBreakers).onFailure("hitchhiker.com");
+  }
+
+  @Test
+  void shouldRecordSuccess() throws IOException {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doReturn(204).when(exampleWebHookRequest).execute();
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .build());
+
+    verify(circuitBreakers).onSuccess("hitchhiker.com");
+  }
+
+  @Test
+  void shouldJournalRequestBeforeSending() throws IOException {
+    when(outbox.isEnabled()).thenReturn(true);
+    WebhookRequest request = mock(WebhookRequest.class, Answers.RETURNS_SELF);
+    Multimap<String, String> headers = ImmutableListMultimap.of("Content-Type", "application/json");
+    byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+    when(request.isJournaled()).thenReturn(true);
+    when(request.getMethod()).thenReturn("POST");
+    when(request.getHeaders()).thenReturn(headers);
+    when(request.getBody()).thenReturn(body);
+    doReturn(200).when(request).execute();
+    when(webhookHttpClient.post(any(), any())).thenReturn(request);
+    when(outbox.append("POST", "https://hitchhiker.com/trigger", headers, body, null, null)).thenReturn(42L);
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.POST)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .payload("{}")
+      .build());
+
+    InOrder inOrder = inOrder(outbox, request);
+    inOrder.verify(outbox).append("POST", "https://hitchhiker.com/trigger", headers, body, null, null);
+    inOrder.verify(request).execute();
+    inOrder.verify(outbox).markDone(42L);
+  }
+
+  @Test
+  void shouldNotJournalStreamedRequest() throws IOException {
+    when(outbox.isEnabled()).thenReturn(true);
+    WebhookRequest request = mock(WebhookRequest.class, Answers.RETURNS_SELF);
+    when(request.isJournaled()).thenReturn(false);
+    doReturn(200).when(request).execute();
+    when(webhookHttpClient.post(any(), any())).thenReturn(request);
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.POST)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .payload("{}")
+      .build());
+
+    verify(outbox, never()).append(any(), any(), any(), any(), any(), any());
+    verify(request).execute();
+  }
+
+  @Test
+  void shouldRecordMetricsOfCurrentWebHook() throws IOException {
+    WebhookRequest request = mock(WebhookRequest.class, Answers.RETURNS_SELF);
+    doReturn(204).when(request).execute();
+    when(webhookHttpClient.post(any(), any())).thenReturn(request);
+    when(metrics.requestStarted(any())).thenReturn(21L);
+    WebHook webHook = new WebHook(new SimpleWebHook("https://hitchhiker.com/trigger", false, false, HttpMethod.POST, List.of()), "42");
+
+    CurrentWebHook.bind(webHook, null, () -> target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.POST)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .payload("{}")
+      .build())).run();
+
+    ArgumentCaptor<Delivery> delivery = ArgumentCaptor.forClass(Delivery.class);
+    verify(metrics).requestFinished(delivery.capture(), eq(204), eq(21L));
+    assertThat(delivery.getValue().getWebHookId()).isEqualTo("42");
+    assertThat(delivery.getValue().getSpecification()).isEqualTo("SimpleWebHook");
+    assertThat(delivery.getValue().getHost()).isEqualTo("hitchhiker.com");
+  }
+
+  @Test
+  void shouldRecordMetricsOfFailedRequest() throws IOException {
+    WebhookRequest request = mock(WebhookRequest.class, Answers.RETURNS_SELF);
+    doThrow(new IOException("timeout")).when(request).execute();
+    when(webhookHttpClient.post(any(), any())).thenReturn(request);
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.POST)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .payload("{}")
+      .build());
+
+    verify(metrics).requestFinished(argThat(delivery -> "unknown".equals(delivery.getWebHookId())), eq(-1), anyLong());
+  }
+
+  @Test
+  void shouldRecordDeliveryInHistory() throws IOException {
+    WebhookRequest request = mock(WebhookRequest.class, Answers.RETURNS_SELF);
+    doReturn(201).when(request).execute();
+    when(request.getResponseSize()).thenReturn(42L);
+    when(webhookHttpClient.post(any(), any())).thenReturn(request);
+    WebHook webHook = new WebHook(new SimpleWebHook("https://hitchhiker.com/trigger", false, false, HttpMethod.POST, List.of()), "42");
+    Repository repository = new Repository("repo-1", "git", "hitchhiker", "heart-of-gold");
+    when(archive.store("repo-1", "https://hitchhiker.com/trigger", request, null, null)).thenReturn(17L);
+
+    CurrentWebHook.bind(webHook, repository, () -> target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.POST)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .payload("{}")
+      .build())).run();
+
+    ArgumentCaptor<Delivery> delivery = ArgumentCaptor.forClass(Delivery.class);
+    verify(history).record(delivery.capture(), eq(201), anyLong(), eq(42L), isNull());
+    assertThat(delivery.getValue().getRepositoryId()).isEqualTo("repo-1");
+    assertThat(delivery.getValue().getWebHookId()).isEqualTo("42");
+    assertThat(delivery.getValue().getRequestId()).isEqualTo(17);
+  }
+
+  @Test
+  void shouldRedeliverArchivedRequest() throws IOException {
+    WebhookRequest request = mock(WebhookRequest.class, Answers.RETURNS_SELF);
+    doReturn(200).when(request).execute();
+    byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+    when(webhookHttpClient.create("POST", "https://hitchhiker.com/trigger", body)).thenReturn(request);
+    ListMultimap<String, String> headers = ImmutableListMultimap.of("X-Token", "42");
+
+    target.redeliver("repo-1", "42", new OutboxEntry(17, 0, "POST", "https://hitchhiker.com/trigger", headers, body, null));
+
+    verify(request).rawHeaders(headers);
+    ArgumentCaptor<Delivery> delivery = ArgumentCaptor.forClass(Delivery.class);
+    verify(history).record(delivery.capture(), eq(200), anyLong(), anyLong(), isNull());
+    assertThat(delivery.getValue().getRepositoryId()).isEqualTo("repo-1");
+    assertThat(delivery.getValue().getWebHookId()).isEqualTo("42");
+    assertThat(delivery.getValue().getRequestId()).isEqualTo(17);
+    verify(archive, never()).store(any(), any(), any(), any(), any());
+  }
+
+  @Test
+  void shouldRedeliverWithRateLimitOfArchivedRequest() throws IOException {
+    WebhookRequest request = mock(WebhookRequest.class, Answers.RETURNS_SELF);
+    doReturn(200).when(request).execute();
+    byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+    when(webhookHttpClient.create("POST", "https://hitchhiker.com/trigger", body)).thenReturn(request);
+    RateLimit rateLimit = new RateLimit(2, 5);
+
+    target.redeliver("repo-1", "42", new OutboxEntry(17, 0, "POST", "https://hitchhiker.com/trigger", ImmutableListMultimap.of(), body, null, rateLimit));
+
+    ArgumentCaptor<Delivery> delivery = ArgumentCaptor.forClass(Delivery.class);
+    verify(rateLimiter).reserve(delivery.capture());
+    assertThat(delivery.getValue().getRateLimit()).isEqualTo(rateLimit);
+  }
+
+  @Test
+  void shouldDelayRateLimitedDelivery() {
+    RateLimit rateLimit = new RateLimit(2, 1);
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    when(rateLimiter.reserve(argThat(delivery -> delivery.getRateLimit() == rateLimit))).thenReturn(500L);
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .rateLimit(rateLimit)
+      .build());
+
+    ArgumentCaptor<Runnable> delayed = ArgumentCaptor.forClass(Runnable.class);
+    verify(retryScheduler).schedule(delayed.capture(), eq(500L));
+    verify(scheduler, never()).submit(any(), any(), any());
+
+    delayed.getValue().run();
+
+    verify(scheduler).submit(eq("hitchhiker.com"), any(), any());
+  }
+
+  @Test
+  void shouldWaitForPausedHostBeforeSubmitting() {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    when(rateLimiter.remainingPause("hitchhiker.com")).thenReturn(3000L, 0L);
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .build());
+
+    ArgumentCaptor<Runnable> paused = ArgumentCaptor.forClass(Runnable.class);
+    verify(retryScheduler).schedule(paused.capture(), eq(3000L));
+    verify(scheduler, never()).submit(any(), any(), any());
+
+    paused.getValue().run();
+
+    verify(scheduler).submit(eq("hitchhiker.com"), any(), any());
+  }
+
+  @Test
+  void shouldPauseHostOnTooManyRequests() throws IOException {
+    WebhookRequest request = mock(WebhookRequest.class, Answers.RETURNS_SELF);
+    doReturn(429).when(request).execute();
+    when(request.getRetryAfterMillis()).thenReturn(30000L);
+    when(webhookHttpClient.get(any())).thenReturn(request);
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .build());
+
+    verify(rateLimiter).pause("hitchhiker.com", 30000L);
+  }
+
+  @Test
+  void shouldSendAgainAfterRetryAfterWithoutRetryPolicy() throws IOException {
+    WebhookRequest request = mock(WebhookRequest.class, Answers.RETURNS_SELF);
+    doReturn(429, 200).when(request).execute();
+    when(request.getRetryAfterMillis()).thenReturn(30000L);
+    when(webhookHttpClient.get(any())).thenReturn(request);
+
+    CompletableFuture<Void> completion = target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .build());
+
+    ArgumentCaptor<Runnable> retry = ArgumentCaptor.forClass(Runnable.class);
+    verify(retryScheduler).schedule(retry.capture(), eq(30000L));
+    assertThat(completion).isNotDone();
+
+    retry.getValue().run();
+
+    verify(request, times(2)).execute();
+    assertThat(completion).isDone();
+  }
+
+  @Test
+  void shouldNotPauseHostWithoutRetryAfter() throws IOException {
+    WebhookRequest request = mock(WebhookRequest.class, Answers.RETURNS_SELF);
+    doReturn(429).when(request).execute();
+    when(request.getRetryAfterMillis()).thenReturn(-1L);
+    when(webhookHttpClient.get(any())).thenReturn(request);
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .build());
+
+    verify(rateLimiter, never()).pause(any(), anyLong());
+  }
+
+  @Test
+  void shouldRecordErrorInHistory() throws IOException {
+    WebhookRequest request = mock(WebhookRequest.class, Answers.RETURNS_SELF);
+    doThrow(new IOException("timeout")).when(request).execute();
+    when(webhookHttpClient.post(any(), any())).thenReturn(request);
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.POST)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .payload("{}")
+      .build());
+
+    verify(history).record(any(), eq(-1), anyLong(), anyLong(), eq("java.io.IOException: timeout"));
+  }
+
+  @Test
+  void shouldRecordSkippedDeliveryInHistory() {
+    when(circuitBreakers.tryAcquire("hitchhiker.com")).thenReturn(false);
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .build());
+
+    verify(history).record(any(), eq(-1), eq(0L), eq(-1L), eq("circuit breaker for host hitchhiker.com is open"));
+  }
+
+  @Test
+  void shouldMarkFailedRequestWithoutRetryPolicyAsDone() throws IOException {
+    when(outbox.isEnabled()).thenReturn(true);
+    when(outbox.append(any(), any(), any(), any(), any(), any())).thenReturn(42L);
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doReturn(404).when(exampleWebHookRequest).execute();
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .build());
+
+    verify(outbox).markDone(42L);
+  }
+
+  @Test
+  void shouldNotJournalIfOutboxIsDisabled() {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+
+    target.execute(WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .build());
+
+    verify(outbox, never()).append(any(), any(), any(), any(), any(), any());
+  }
+
+  @Test
+  void shouldReplayEntryFromOutbox() throws IOException {
+    byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+    ListMultimap<String, String> headers = ArrayListMultimap.create();
+    headers.put("X-Secret", "42");
+    when(webhookHttpClient.create("PUT", "https://hitchhiker.com/trigger", body)).thenReturn(exampleWebHookRequest);
+    doReturn(201).when(exampleWebHookRequest).execute();
+
+    target.replay(new OutboxEntry(21L, 0L, "PUT", "https://hitchhiker.com/trigger", headers, body, null));
+
+    verify(exampleWebHookRequest).rawHeaders(headers);
+    verify(scheduler).submit(eq("hitchhiker.com"), any(), any());
+    verify(outbox).markDone(21L);
+    verify(outbox, never()).append(any(), any(), any(), any(), any(), any());
+  }
+
+  @Test
+  void shouldScheduleRetryForRetryableStatusCode() throws IOException {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doReturn(503).when(exampleWebHookRequest).execute();
+
+    target.execute(getWithRetries(new RetryPolicy(3, 1000, 10000, 0, List.of(503))));
+
+    verify(retryScheduler).schedule(any(), eq(1000L));
+  }
+
+  @Test
+  void shouldScheduleRetryForConnectionError() throws IOException {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doThrow(new IOException("connection refused")).when(exampleWebHookRequest).execute();
+
+    target.execute(getWithRetries(new RetryPolicy(3, 1000, 10000, 0, List.of())));
+
+    verify(retryScheduler).schedule(any(), eq(1000L));
+  }
+
+  @Test
+  void shouldScheduleRetryIfCircuitBreakerIsOpen() {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    when(circuitBreakers.tryAcquire("hitchhiker.com")).thenReturn(false);
+
+    target.execute(getWithRetries(new RetryPolicy()));
+
+    verify(retryScheduler).schedule(any(), anyLong());
+  }
+
+  @Test
+  void shouldResendWithGrowingDelayUntilMaxAttempts() throws IOException {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doReturn(503).when(exampleWebHookRequest).execute();
+    when(outbox.isEnabled()).thenReturn(true);
+    when(outbox.append(any(), any(), any(), any(), any(), any())).thenReturn(42L);
+    doAnswer(invocation -> {
+      invocation.getArgument(0, Runnable.class).run();
+      return null;
+    }).when(retryScheduler).schedule(any(), anyLong());
+
+    target.execute(getWithRetries(new RetryPolicy(3, 1000, 10000, 0, List.of(503))));
+
+    verify(exampleWebHookRequest, times(3)).execute();
+    InOrder inOrder = inOrder(retryScheduler);
+    inOrder.verify(retryScheduler).schedule(any(), eq(1000L));
+    inOrder.verify(retryScheduler).schedule(any(), eq(2000L));
+    inOrder.verifyNoMoreInteractions();
+    verify(outbox).markDone(42L);
+  }
+
+  @Test
+  void shouldGiveUpOnNotRetryableStatusCode() throws IOException {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doReturn(404).when(exampleWebHookRequest).execute();
+    when(outbox.isEnabled()).thenReturn(true);
+    when(outbox.append(any(), any(), any(), any(), any(), any())).thenReturn(42L);
+
+    target.execute(getWithRetries(new RetryPolicy()));
+
+    verify(retryScheduler, never()).schedule(any(), anyLong());
+    verify(outbox).markDone(42L);
+  }
+
+  @Test
+  void shouldNotRetryWithoutRetryPolicy() throws IOException {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doReturn(503).when(exampleWebHookRequest).execute();
+
+    target.execute(getWithRetries(null));
+
+    verify(retryScheduler, never()).schedule(any(), anyLong());
+  }
+
+  @Test
+  void shouldCompleteDeliveryWhenGivenUp() throws IOException {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doReturn(404).when(exampleWebHookRequest).execute();
+
+    CompletableFuture<Void> completion = target.execute(getWithRetries(new RetryPolicy()));
+
+    assertThat(completion).isDone();
+  }
+
+  @Test
+  void shouldNotCompleteDeliveryWhileRetryIsPending() throws IOException {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doReturn(503).when(exampleWebHookRequest).execute();
+
+    CompletableFuture<Void> completion = target.execute(getWithRetries(new RetryPolicy(3, 1000, 10000, 0, List.of(503))));
+
+    assertThat(completion).isNotDone();
+  }
+
+  @Test
+  void shouldCompleteDeliveryIfSendingFails() throws IOException {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doReturn(200).when(exampleWebHookRequest).execute();
+    doThrow(new IllegalStateException("history is broken")).when(history).record(any(), anyInt(), anyLong(), anyLong(), any());
+    doAnswer(invocation -> null).when(scheduler).submit(any(), any(), any());
+
+    CompletableFuture<Void> completion = target.execute(getWithRetries(null));
+
+    ArgumentCaptor<Runnable> send = ArgumentCaptor.forClass(Runnable.class);
+    verify(scheduler).submit(eq("hitchhiker.com"), send.capture(), any());
+    assertThatThrownBy(send.getValue()::run).isInstanceOf(IllegalStateException.class);
+    assertThat(completion).isDone();
+  }
+
+  @Test
+  void shouldCompleteRejectedDelivery() {
+    when(webhookHttpClient.get(any())).thenReturn(exampleWebHookRequest);
+    doAnswer(invocation -> {
+      invocation.getArgument(2, Runnable.class).run();
+      return null;
+    }).when(scheduler).submit(any(), any(), any());
+
+    CompletableFuture<Void> completion = target.execute(getWithRetries(null));
+
+    assertThat(completion).isDone();
+  }
+
+  @Test
+  void shouldUseUnknownHostForInvalidUrls() {
+    assertThat(WebHookSender.hostOf("not a valid url")).isEqualTo("unknown");
+    assertThat(WebHookSender.hostOf("/relative/path")).isEqualTo("unknown");
+  }
+
+  private WebHookExecution getWithRetries(RetryPolicy retryPolicy) {
+    return WebHookExecution.builder()
+      .httpMethod(HttpMethod.GET)
+      .url("https://hitchhiker.com/trigger")
+      .headers(List.of())
+      .retryPolicy(retryPolicy)
+      .build();
+  }
+
   private void verifyCallByMethod(HttpMethod method, String url, Object payload) {
     switch (method) {
       case AUTO:
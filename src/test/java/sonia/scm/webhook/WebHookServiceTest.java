@@ -16,6 +16,9 @@
 
 package sonia.scm.webhook;
 
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -62,6 +65,21 @@ class WebHookServiceTest {
     assertThat(configurations).hasSize(2);
   }
 
+  @Test
+  void shouldProvideCopiesOfConfigurations() {
+    GoodWebHookConfiguration goodConfig = new GoodWebHookConfiguration();
+    goodConfig.url = "https://hitchhiker.com";
+
+    when(context.getAllConfigurations(repository))
+      .thenReturn(new WebHookConfiguration(List.of(new WebHook(goodConfig, "id1"))));
+
+    List<GoodWebHookConfiguration> configurations = target.getConfigurations(GoodWebHookConfiguration.class, repository);
+    configurations.get(0).url = "https://vogon.com";
+
+    assertThat(configurations.get(0)).isNotSameAs(goodConfig);
+    assertThat(goodConfig.url).isEqualTo("https://hitchhiker.com");
+  }
+
   @Test
   void shouldProvideEmptyConfigurationsGivenNoSuitableInstances() {
     BadWebHookConfiguration badConfig = new BadWebHookConfiguration();
@@ -88,9 +106,13 @@ class WebHookServiceTest {
     verify(sender).execute(thinWebHookExecution);
   }
 
-  class GoodWebHookConfiguration implements SingleWebHookConfiguration {
+  @XmlRootElement
+  @XmlAccessorType(XmlAccessType.FIELD)
+  static class GoodWebHookConfiguration implements SingleWebHookConfiguration {
+    String url;
   }
 
-  class BadWebHookConfiguration implements SingleWebHookConfiguration {
+  @XmlRootElement
+  static class BadWebHookConfiguration implements SingleWebHookConfiguration {
   }
 }
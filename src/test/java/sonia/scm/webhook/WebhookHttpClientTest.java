@@ -20,19 +20,30 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.net.HttpURLConnectionFactory;
 import sonia.scm.net.ahc.AdvancedHttpClient;
 import sonia.scm.net.ahc.AdvancedHttpRequest;
 import sonia.scm.net.ahc.AdvancedHttpRequestWithBody;
 import sonia.scm.net.ahc.AdvancedHttpResponse;
+import sonia.scm.net.ahc.Content;
+import sonia.scm.net.ahc.ContentTransformer;
+import sonia.scm.repository.Changeset;
 
 import jakarta.inject.Provider;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -56,11 +67,20 @@ class WebhookHttpClientTest {
   @Mock(answer = Answers.RETURNS_SELF)
   private AdvancedHttpRequestWithBody requestWithBody;
 
-  @InjectMocks
+  @Mock
+  private HttpURLConnectionFactory connectionFactory;
+
+  @Mock
+  private WebHookContext context;
+
+  @Mock
+  private ContentTransformer transformer;
+
   private WebhookHttpClient client;
 
   @BeforeEach
   void initClient() throws IOException {
+    client = new WebhookHttpClient(clientProvider, connectionFactory, context, Set.of(transformer));
     when(clientProvider.get()).thenReturn(advancedHttpClient);
     lenient().when(advancedHttpClient.get(any())).thenReturn(request);
     lenient().when(advancedHttpClient.put(any())).thenReturn(requestWithBody);
@@ -130,4 +150,84 @@ class WebhookHttpClientTest {
     verify(advancedHttpClient).get(URL);
     verify(request).spanKind("Webhook");
   }
+
+  @Test
+  void shouldCreateRequestWithRawBody() throws IOException {
+    byte[] body = {42};
+
+    client.create("PUT", URL, body).execute();
+
+    verify(advancedHttpClient).put(URL);
+    verify(requestWithBody).rawContent(body);
+  }
+
+  @Test
+  void shouldCreateGetRequestFromMethodName() throws IOException {
+    client.create("GET", URL, null).execute();
+
+    verify(advancedHttpClient).get(URL);
+  }
+
+  @Test
+  void shouldSerializeSamePayloadOnlyOnce() throws IOException {
+    mockSerializedContent();
+    Object payload = new Object();
+
+    WebhookRequest first = client.post(URL, payload);
+    WebhookRequest second = client.put(URL, payload);
+
+    verify(requestWithBody, times(1)).jsonContent(payload);
+    verify(requestWithBody).rawContent("{}".getBytes(StandardCharsets.UTF_8));
+    verify(requestWithBody).contentType("application/json");
+    assertThat(second.getBody()).isSameAs(first.getBody());
+  }
+
+  @Test
+  void shouldSerializeDifferentPayloads() throws IOException {
+    mockSerializedContent();
+
+    client.post(URL, new Object());
+    client.post(URL, new Object());
+
+    verify(requestWithBody, times(2)).jsonContent(any());
+    verify(requestWithBody, never()).rawContent(any(byte[].class));
+  }
+
+  @Test
+  void shouldStreamLargeChangesetPayloads() {
+    DispatchConfiguration configuration = new DispatchConfiguration();
+    configuration.setStreamingPayloadThreshold(2);
+    when(context.getDispatchConfiguration()).thenReturn(configuration);
+    when(transformer.isResponsible(Changeset.class, "application/json")).thenReturn(true);
+
+    WebhookRequest webhookRequest = client.post(URL, new Changesets(List.of(new Changeset(), new Changeset())));
+
+    assertThat(webhookRequest).isInstanceOf(StreamingWebhookRequest.class);
+    assertThat(webhookRequest.isJournaled()).isFalse();
+    verify(requestWithBody).contentType("application/json");
+    verify(requestWithBody, never()).jsonContent(any());
+    verify(requestWithBody, never()).rawContent(any(byte[].class));
+  }
+
+  @Test
+  void shouldNotStreamSmallChangesetPayloads() {
+    DispatchConfiguration configuration = new DispatchConfiguration();
+    configuration.setStreamingPayloadThreshold(3);
+    when(context.getDispatchConfiguration()).thenReturn(configuration);
+    Changesets changesets = new Changesets(List.of(new Changeset(), new Changeset()));
+
+    WebhookRequest webhookRequest = client.post(URL, changesets);
+
+    assertThat(webhookRequest.isJournaled()).isTrue();
+    verify(requestWithBody).jsonContent(changesets);
+  }
+
+  private void mockSerializedContent() throws IOException {
+    Content content = mock(Content.class);
+    lenient().doAnswer(invocation -> {
+      invocation.getArgument(0, OutputStream.class).write("{}".getBytes(StandardCharsets.UTF_8));
+      return null;
+    }).when(content).process(any());
+    when(requestWithBody.getContent()).thenReturn(content);
+  }
 }
@@ -24,17 +24,23 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.net.ahc.AdvancedHttpRequestWithBody;
+import sonia.scm.net.ahc.AdvancedHttpResponse;
 import sonia.scm.net.ahc.BaseHttpRequest;
 import sonia.scm.net.ahc.Content;
 import sonia.scm.net.ahc.RawContent;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -104,4 +110,73 @@ class WebhookRequestTest {
       assertEquals("someValue", headerValueCaptor.getValue());
     }
   }
+
+
+  @Nested
+  class Response {
+
+    @Mock
+    AdvancedHttpResponse response;
+
+    @Test
+    void shouldRememberAnnouncedResponseSize() throws IOException {
+      when(baseRequest.spanKind("Webhook").request()).thenReturn(response);
+      when(response.getStatus()).thenReturn(200);
+      lenient().when(response.getFirstHeader("Content-Length")).thenReturn("42");
+      WebhookRequest webhookRequest = new WebhookRequest(baseRequest);
+
+      assertEquals(200, webhookRequest.execute());
+      assertEquals(42, webhookRequest.getResponseSize());
+    }
+
+    @Test
+    void shouldNotFailWithoutContentLength() throws IOException {
+      when(baseRequest.spanKind("Webhook").request()).thenReturn(response);
+      when(response.getStatus()).thenReturn(204);
+      WebhookRequest webhookRequest = new WebhookRequest(baseRequest);
+
+      webhookRequest.execute();
+
+      assertEquals(-1, webhookRequest.getResponseSize());
+      assertEquals(-1, webhookRequest.getRetryAfterMillis());
+    }
+
+    @Test
+    void shouldReadRetryAfterInSeconds() throws IOException {
+      when(baseRequest.spanKind("Webhook").request()).thenReturn(response);
+      when(response.getStatus()).thenReturn(429);
+      lenient().when(response.getFirstHeader("Retry-After")).thenReturn("120");
+      WebhookRequest webhookRequest = new WebhookRequest(baseRequest);
+
+      webhookRequest.execute();
+
+      assertEquals(120000, webhookRequest.getRetryAfterMillis());
+    }
+
+    @Test
+    void shouldReadRetryAfterAsDate() throws IOException {
+      when(baseRequest.spanKind("Webhook").request()).thenReturn(response);
+      when(response.getStatus()).thenReturn(429);
+      String inOneMinute = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(1));
+      lenient().when(response.getFirstHeader("Retry-After")).thenReturn(inOneMinute);
+      WebhookRequest webhookRequest = new WebhookRequest(baseRequest);
+
+      webhookRequest.execute();
+
+      assertTrue(webhookRequest.getRetryAfterMillis() > 50000);
+      assertTrue(webhookRequest.getRetryAfterMillis() <= 60000);
+    }
+
+    @Test
+    void shouldIgnoreInvalidRetryAfter() throws IOException {
+      when(baseRequest.spanKind("Webhook").request()).thenReturn(response);
+      when(response.getStatus()).thenReturn(429);
+      lenient().when(response.getFirstHeader("Retry-After")).thenReturn("soon");
+      WebhookRequest webhookRequest = new WebhookRequest(baseRequest);
+
+      webhookRequest.execute();
+
+      assertEquals(-1, webhookRequest.getRetryAfterMillis());
+    }
+  }
 }
@@ -16,6 +16,7 @@
 
 package sonia.scm.webhook;
 
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -24,6 +25,9 @@ import jakarta.xml.bind.JAXB;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -53,4 +57,33 @@ class XmlConfigurationTest {
       .extracting("id")
       .contains("1", "2");
   }
+
+  @Test
+  void shouldSerializeAndDeserializeConcurrently() {
+    SimpleWebHook webHook = new SimpleWebHook("https://example.com", true, true, HttpMethod.AUTO, emptyList());
+    XmlConfiguration.WebHookConfigurationXmlAdapter adapter = new XmlConfiguration.WebHookConfigurationXmlAdapter();
+
+    List<SingleWebHookConfiguration> configurations = IntStream.range(0, 100)
+      .parallel()
+      .mapToObj(i -> roundTrip(adapter, webHook))
+      .collect(Collectors.toList());
+
+    assertThat(configurations).hasSize(100).containsOnly(webHook);
+  }
+
+  @Test
+  void shouldReuseReleasedInstances() throws Exception {
+    XmlConfiguration.Pool<Object> pool = new XmlConfiguration.Pool<>(Object::new);
+
+    Object first = pool.borrow();
+    pool.release(first);
+
+    assertThat(pool.borrow()).isSameAs(first);
+    assertThat(pool.borrow()).isNotSameAs(first);
+  }
+
+  @SneakyThrows
+  private SingleWebHookConfiguration roundTrip(XmlConfiguration.WebHookConfigurationXmlAdapter adapter, SingleWebHookConfiguration configuration) {
+    return adapter.unmarshal(adapter.marshal(configuration));
+  }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+
+package sonia.scm.webhook.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.MediaType;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.subject.support.SubjectThreadState;
+import org.apache.shiro.util.ThreadContext;
+import org.apache.shiro.util.ThreadState;
+import org.jboss.resteasy.mock.MockHttpRequest;
+import org.jboss.resteasy.mock.MockHttpResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.web.RestDispatcher;
+import sonia.scm.webhook.CircuitBreakerStatus;
+import sonia.scm.webhook.CircuitBreakers;
+import sonia.scm.webhook.CircuitState;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CircuitBreakerResourceTest {
+
+  private final Subject subject = mock(Subject.class);
+  private final ThreadState subjectThreadState = new SubjectThreadState(subject);
+
+  @Mock
+  private CircuitBreakers circuitBreakers;
+
+  private RestDispatcher dispatcher;
+  private final MockHttpResponse response = new MockHttpResponse();
+
+  @BeforeEach
+  void init() {
+    subjectThreadState.bind();
+    ThreadContext.bind(subject);
+    ScmPathInfoStore scmPathInfoStore = new ScmPathInfoStore();
+    scmPathInfoStore.set(() -> URI.create("/"));
+    dispatcher = new RestDispatcher();
+    dispatcher.addSingletonResource(new CircuitBreakerResource(circuitBreakers, scmPathInfoStore));
+  }
+
+  @AfterEach
+  void tearDown() {
+    ThreadContext.unbindSubject();
+  }
+
+  @Test
+  void shouldReturnCircuitBreakers() throws URISyntaxException, IOException {
+    Instant openUntil = Instant.parse("2025-01-01T10:00:00Z");
+    when(circuitBreakers.getStatus()).thenReturn(List.of(
+      new CircuitBreakerStatus("ci.hitchhiker.com", CircuitState.OPEN, 20, 75, openUntil),
+      new CircuitBreakerStatus("chat.hitchhiker.com", CircuitState.CLOSED, 3, 0, null)
+    ));
+
+    MockHttpRequest request = MockHttpRequest
+      .get("/" + CircuitBreakerResource.PATH)
+      .accept(MediaType.APPLICATION_JSON);
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    JsonNode json = new ObjectMapper().readTree(response.getContentAsString());
+    JsonNode breakers = json.get("circuitBreakers");
+    assertThat(breakers).hasSize(2);
+    assertThat(breakers.get(0).get("host").asText()).isEqualTo("ci.hitchhiker.com");
+    assertThat(breakers.get(0).get("state").asText()).isEqualTo("OPEN");
+    assertThat(breakers.get(0).get("failureRate").asInt()).isEqualTo(75);
+    assertThat(breakers.get(1).get("state").asText()).isEqualTo("CLOSED");
+    assertThat(json.get("_links").get("self").get("href").asText()).isEqualTo("/v2/plugins/webhook/circuit-breakers");
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook.internal;
+
+import jakarta.validation.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import sonia.scm.webhook.HttpMethod;
+import sonia.scm.webhook.RateLimit;
+import sonia.scm.webhook.RetryPolicy;
+import sonia.scm.webhook.SimpleWebHook;
+import sonia.scm.webhook.WebHook;
+import sonia.scm.webhook.WebHookConfiguration;
+
+import java.util.Arrays;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConfigurationValidatorTest {
+
+  private final ConfigurationValidator validator = new ConfigurationValidator();
+
+  @Test
+  void shouldAcceptValidConfigurations() {
+    validator.validate(new WebHookConfiguration(Arrays.asList(
+      new WebHook(webHook(new RetryPolicy()), "1"),
+      new WebHook(webHook(null), "2"),
+      new WebHook()
+    )));
+  }
+
+  @Test
+  void shouldReportViolationsOfAllWebHooksWithTheirPath() {
+    WebHookConfiguration configuration = new WebHookConfiguration(Arrays.asList(
+      new WebHook(webHook(new RetryPolicy(0, 1000, 300000, 50, emptyList())), "1"),
+      new WebHook(webHook(new RetryPolicy()), "2"),
+      new WebHook(webHook(new RetryPolicy(5, 1000, 300000, 101, emptyList())), "3")
+    ));
+
+    assertThatThrownBy(() -> validator.validate(configuration))
+      .isInstanceOfSatisfying(ConstraintViolationException.class, e ->
+        assertThat(e.getConstraintViolations())
+          .extracting(violation -> violation.getPropertyPath().toString())
+          .containsExactlyInAnyOrder(
+            "webhooks[0].configuration.retryPolicy.maxAttempts",
+            "webhooks[2].configuration.retryPolicy.jitterPercent"
+          )
+      );
+  }
+
+  @Test
+  void shouldReportInvalidRateLimit() {
+    SimpleWebHook webHook = new SimpleWebHook("https://hitchhiker.com", false, false, HttpMethod.AUTO, emptyList(), null, new RateLimit(0, 0));
+
+    assertThatThrownBy(() -> validator.validate(webHook))
+      .isInstanceOfSatisfying(ConstraintViolationException.class, e ->
+        assertThat(e.getConstraintViolations())
+          .extracting(violation -> violation.getPropertyPath().toString())
+          .containsExactlyInAnyOrder("rateLimit.requestsPerSecond", "rateLimit.burst")
+      );
+  }
+
+  private SimpleWebHook webHook(RetryPolicy retryPolicy) {
+    return new SimpleWebHook("https://hitchhiker.com", false, false, HttpMethod.AUTO, emptyList(), retryPolicy);
+  }
+}
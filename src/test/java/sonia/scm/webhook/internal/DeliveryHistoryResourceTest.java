@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package sonia.scm.webhook.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.MediaType;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.subject.support.SubjectThreadState;
+import org.apache.shiro.util.ThreadContext;
+import org.apache.shiro.util.ThreadState;
+import org.jboss.resteasy.mock.MockHttpRequest;
+import org.jboss.resteasy.mock.MockHttpResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.web.RestDispatcher;
+import sonia.scm.webhook.DeliveryHistory;
+import sonia.scm.webhook.DeliveryRecord;
+import sonia.scm.webhook.WebHookReplayer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeliveryHistoryResourceTest {
+
+  private static final Instant TIMESTAMP = Instant.parse("2025-01-01T10:00:00Z");
+
+  private final Subject subject = mock(Subject.class);
+  private final ThreadState subjectThreadState = new SubjectThreadState(subject);
+  private final Repository repository = new Repository("id", "git", "space", "name");
+
+  @Mock
+  private DeliveryHistory history;
+  @Mock
+  private WebHookReplayer replayer;
+  @Mock
+  private RepositoryManager repositoryManager;
+
+  private RestDispatcher dispatcher;
+  private final MockHttpResponse response = new MockHttpResponse();
+
+  @BeforeEach
+  void init() {
+    subjectThreadState.bind();
+    ThreadContext.bind(subject);
+    ScmPathInfoStore scmPathInfoStore = new ScmPathInfoStore();
+    scmPathInfoStore.set(() -> URI.create("/"));
+    dispatcher = new RestDispatcher();
+    dispatcher.addSingletonResource(new DeliveryHistoryResource(history, replayer, repositoryManager, scmPathInfoStore));
+    lenient().when(repositoryManager.get(new NamespaceAndName("space", "name"))).thenReturn(repository);
+    lenient().when(history.getDeliveries(repository)).thenReturn(List.of(
+      new DeliveryRecord(3, TIMESTAMP, "42", "https://hitchhiker.com/ci", -1, 30000, -1, 2, 17, "java.net.SocketTimeoutException: timeout"),
+      new DeliveryRecord(2, TIMESTAMP, "21", "https://hitchhiker.com/chat", 200, 12, 2, 1, -1, null),
+      new DeliveryRecord(1, TIMESTAMP, "42", "https://hitchhiker.com/ci", 500, 42, 0, 1, 16, null)
+    ));
+  }
+
+  @AfterEach
+  void tearDown() {
+    ThreadContext.unbindSubject();
+  }
+
+  @Test
+  void shouldReturnDeliveries() throws URISyntaxException, IOException {
+    JsonNode json = get("");
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    JsonNode deliveries = json.get("deliveries");
+    assertThat(deliveries).hasSize(3);
+    assertThat(deliveries.get(0).get("sequence").asLong()).isEqualTo(3);
+    assertThat(deliveries.get(0).get("statusCode").isNull()).isTrue();
+    assertThat(deliveries.get(0).get("successful").asBoolean()).isFalse();
+    assertThat(deliveries.get(0).get("error").asText()).isEqualTo("java.net.SocketTimeoutException: timeout");
+    assertThat(deliveries.get(1).get("webHookId").asText()).isEqualTo("21");
+    assertThat(deliveries.get(1).get("responseSize").asLong()).isEqualTo(2);
+    assertThat(deliveries.get(1).get("redeliverable").asBoolean()).isFalse();
+    assertThat(json.get("page").asInt()).isZero();
+    assertThat(json.get("pageTotal").asInt()).isEqualTo(1);
+    assertThat(json.get("_links").get("self").get("href").asText()).isEqualTo("/v2/plugins/webhook/deliveries/space/name");
+  }
+
+  @Test
+  void shouldFilterDeliveries() throws URISyntaxException, IOException {
+    JsonNode json = get("?webhookId=42&successful=false");
+
+    assertThat(json.get("deliveries"))
+      .extracting(delivery -> delivery.get("sequence").asLong())
+      .containsExactly(3L, 1L);
+  }
+
+  @Test
+  void shouldPageDeliveries() throws URISyntaxException, IOException {
+    JsonNode json = get("?page=1&pageSize=2");
+
+    assertThat(json.get("deliveries"))
+      .extracting(delivery -> delivery.get("sequence").asLong())
+      .containsExactly(1L);
+    assertThat(json.get("page").asInt()).isEqualTo(1);
+    assertThat(json.get("pageTotal").asInt()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldRedeliver() throws URISyntaxException {
+    MockHttpRequest request = MockHttpRequest.post("/" + DeliveryHistoryResource.PATH + "/space/name/3/redeliver");
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_ACCEPTED);
+    verify(replayer).redeliver(repository, 3);
+  }
+
+  @Test
+  void shouldReplayFailedDeliveries() throws URISyntaxException, IOException {
+    when(replayer.replayFailed("hitchhiker.com", Instant.parse("2025-01-01T09:00:00Z"), Instant.MAX)).thenReturn(2);
+
+    MockHttpRequest request = MockHttpRequest
+      .post("/" + DeliveryHistoryResource.PATH + "/replay?host=hitchhiker.com&from=2025-01-01T09:00:00Z")
+      .accept(MediaType.APPLICATION_JSON);
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_ACCEPTED);
+    assertThat(new ObjectMapper().readTree(response.getContentAsString()).get("scheduled").asInt()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldRejectReplayWithoutHost() throws URISyntaxException {
+    MockHttpRequest request = MockHttpRequest.post("/" + DeliveryHistoryResource.PATH + "/replay");
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_BAD_REQUEST);
+    verifyNoInteractions(replayer);
+  }
+
+  private JsonNode get(String query) throws URISyntaxException, IOException {
+    MockHttpRequest request = MockHttpRequest
+      .get("/" + DeliveryHistoryResource.PATH + "/space/name" + query)
+      .accept(MediaType.APPLICATION_JSON);
+    dispatcher.invoke(request, response);
+    return new ObjectMapper().readTree(response.getContentAsString());
+  }
+}
@@ -36,6 +36,7 @@ import sonia.scm.repository.NamespaceAndName;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryManager;
 import sonia.scm.web.RestDispatcher;
+import sonia.scm.webhook.DispatchConfiguration;
 import sonia.scm.webhook.AvailableWebHookSpecifications;
 import sonia.scm.webhook.HttpMethod;
 import sonia.scm.webhook.SimpleWebHook;
@@ -53,9 +54,11 @@ import java.net.URISyntaxException;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singleton;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -105,7 +108,7 @@ class WebHookResourceTest {
     ScmPathInfoStore scmPathInfoStore = new ScmPathInfoStore();
     scmPathInfoStore.set(() -> URI.create("/"));
     webHookMapper.scmPathInfoStore = scmPathInfoStore;
-    webHookMapper.availableSpecifications = new AvailableWebHookSpecifications(singleton(new SimpleWebHookSpecification(null, null)));
+    webHookMapper.availableSpecifications = new AvailableWebHookSpecifications(singleton(new SimpleWebHookSpecification(null, null, null, null)));
     webHookMapper.configurationValidator = new ConfigurationValidator();
   }
 
@@ -158,6 +161,48 @@ class WebHookResourceTest {
     }));
   }
 
+  @Test
+  void shouldGetDispatchConfiguration() throws URISyntaxException, IOException {
+    when(context.getGlobalConfiguration()).thenReturn(new WebHookConfiguration());
+    when(context.getDispatchConfiguration()).thenReturn(new DispatchConfiguration(8, 500));
+    MockHttpRequest request = MockHttpRequest
+      .get("/" + WebHookResource.PATH)
+      .accept(MediaType.APPLICATION_JSON);
+
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    JsonNode dispatchNode = new ObjectMapper().readTree(response.getContentAsString()).get("dispatch");
+    assertThat(dispatchNode.get("workerThreads").asInt()).isEqualTo(8);
+    assertThat(dispatchNode.get("queueCapacity").asInt()).isEqualTo(500);
+  }
+
+  @Test
+  void shouldUpdateDispatchConfiguration() throws URISyntaxException {
+    MockHttpRequest request = MockHttpRequest
+      .put("/" + WebHookResource.PATH)
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"webhooks\": [], \"dispatch\": {\"workerThreads\": 2, \"queueCapacity\": 42}}".getBytes());
+
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_NO_CONTENT);
+    verify(context).setDispatchConfiguration(new DispatchConfiguration(2, 42));
+  }
+
+  @Test
+  void shouldKeepDispatchConfigurationIfNotSent() throws URISyntaxException {
+    MockHttpRequest request = MockHttpRequest
+      .put("/" + WebHookResource.PATH)
+      .contentType(MediaType.APPLICATION_JSON)
+      .content(WEB_HOOKS.getBytes());
+
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_NO_CONTENT);
+    verify(context, never()).setDispatchConfiguration(any());
+  }
+
   @Test
   void shouldUpdateWebHookConfigurations() throws URISyntaxException {
     MockHttpRequest request = MockHttpRequest
@@ -23,7 +23,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -37,6 +37,9 @@ import sonia.scm.webhook.SimpleWebHook;
 import sonia.scm.webhook.WebHook;
 import sonia.scm.webhook.WebHookConfiguration;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -65,9 +68,16 @@ class WebhooksExtensibleUpdateStepTest {
   @Mock
   private KeyGenerator keyGenerator;
 
-  @InjectMocks
+  private Path checkpointFile;
+
   WebhooksExtensibleUpdateStep updateStep;
 
+  @BeforeEach
+  void initUpdateStep(@TempDir Path tempDir) {
+    checkpointFile = tempDir.resolve("webhook").resolve("update.checkpoint");
+    updateStep = new WebhooksExtensibleUpdateStep(storeFactory, repositoryUpdateIterator, keyGenerator, checkpointFile, 2);
+  }
+
   @BeforeEach
   void mockRepositoryIterator() {
     doAnswer(invocation -> {
@@ -149,19 +159,7 @@ class WebhooksExtensibleUpdateStepTest {
 
     @Test
     void shouldConvertOldRepositoryConfig() {
-      WebhooksExtensibleUpdateStep.OldWebHookConfiguration oldConfiguration = new WebhooksExtensibleUpdateStep.OldWebHookConfiguration();
-      HashSet<WebhooksExtensibleUpdateStep.OldWebHook> webhooks = new HashSet<>();
-      WebhooksExtensibleUpdateStep.OldWebHook webHook = new WebhooksExtensibleUpdateStep.OldWebHook();
-      webHook.urlPattern = "https://hog.org/";
-      webHook.method = HttpMethod.PUT;
-      webhooks.add(webHook);
-      oldConfiguration.webhooks = webhooks;
-      storeFactory
-        .withType(WebhooksExtensibleUpdateStep.OldWebHookConfiguration.class)
-        .withName("webhook")
-        .forRepository("42")
-        .build()
-        .set(oldConfiguration);
+      storeOldRepositoryConfiguration();
 
       updateStep.doUpdate();
 
@@ -201,6 +199,65 @@ class WebhooksExtensibleUpdateStepTest {
     assertDoesNotThrow(() -> updateStep.doUpdate());
   }
 
+  @Test
+  void shouldSkipRepositoriesOfCheckpoint() throws IOException {
+    storeOldRepositoryConfiguration();
+    Files.createDirectories(checkpointFile.getParent());
+    Files.write(checkpointFile, singletonList("42"));
+
+    updateStep.doUpdate();
+
+    assertThat(getNewRepositoryConfiguration()).isEmpty();
+    assertThat(checkpointFile).doesNotExist();
+  }
+
+  @Test
+  void shouldRemoveCheckpointAfterUpdate() {
+    when(keyGenerator.createKey()).thenReturn("42");
+    storeOldRepositoryConfiguration();
+
+    updateStep.doUpdate();
+
+    assertThat(getNewRepositoryConfiguration()).isPresent();
+    assertThat(checkpointFile).doesNotExist();
+  }
+
+  @Test
+  void shouldUpdateRepositoriesSequentially() {
+    when(keyGenerator.createKey()).thenReturn("42");
+    storeOldRepositoryConfiguration();
+    updateStep = new WebhooksExtensibleUpdateStep(storeFactory, repositoryUpdateIterator, keyGenerator, checkpointFile, 1);
+
+    updateStep.doUpdate();
+
+    assertThat(getNewRepositoryConfiguration()).isPresent();
+  }
+
+  private void storeOldRepositoryConfiguration() {
+    WebhooksExtensibleUpdateStep.OldWebHookConfiguration oldConfiguration = new WebhooksExtensibleUpdateStep.OldWebHookConfiguration();
+    HashSet<WebhooksExtensibleUpdateStep.OldWebHook> webhooks = new HashSet<>();
+    WebhooksExtensibleUpdateStep.OldWebHook webHook = new WebhooksExtensibleUpdateStep.OldWebHook();
+    webHook.urlPattern = "https://hog.org/";
+    webHook.method = HttpMethod.PUT;
+    webhooks.add(webHook);
+    oldConfiguration.webhooks = webhooks;
+    storeFactory
+      .withType(WebhooksExtensibleUpdateStep.OldWebHookConfiguration.class)
+      .withName("webhook")
+      .forRepository("42")
+      .build()
+      .set(oldConfiguration);
+  }
+
+  private Optional<WebHookConfiguration> getNewRepositoryConfiguration() {
+    return storeFactory
+      .withType(WebHookConfiguration.class)
+      .withName("webhook")
+      .forRepository("42")
+      .build()
+      .getOptional();
+  }
+
   @SuppressWarnings({"rawtypes", "unchecked"})
   private static class InMemoryConfigurationStoreFactory implements ConfigurationStoreFactory {
 
@@ -136,5 +136,49 @@ class WebhooksV2ConfigMigrationUpdateStepTest {
 
     assertThat(configStore.get()).isNull();
   }
-}
 
+  @Test
+  void shouldSkipMalformedWebhooks() {
+    Map<String, String> mockedValues =
+      ImmutableMap.of(
+        "webhooks", "http://example.com/${repositoryName};true;true;POST|broken|http://example.com/${method};true;true;TELEPORT|http://example.com/${dritteWebhook};false;false;PUT|"
+      );
+    testUtil.mockRepositoryProperties(new V1PropertyDaoTestUtil.PropertiesForRepository(REPO_NAME, mockedValues));
+
+    updateStep.doUpdate();
+
+    assertThat(configStore.get().getWebhooks())
+      .extracting("configuration")
+      .containsExactly(
+        new SimpleWebHook("http://example.com/${repositoryName}", true, true, HttpMethod.POST, emptyList()),
+        new SimpleWebHook("http://example.com/${dritteWebhook}", false, false, HttpMethod.PUT, emptyList())
+      );
+  }
+
+  @Test
+  void shouldSkipRepositoriesWithOnlyMalformedWebhooks() {
+    Map<String, String> mockedValues =
+      ImmutableMap.of(
+        "webhooks", "broken|"
+      );
+    testUtil.mockRepositoryProperties(new V1PropertyDaoTestUtil.PropertiesForRepository(REPO_NAME, mockedValues));
+
+    updateStep.doUpdate();
+
+    assertThat(configStore.get()).isNull();
+  }
+
+  @Test
+  void shouldMigrateWithoutWorkers() {
+    Map<String, String> mockedValues =
+      ImmutableMap.of(
+        "webhooks", "http://example.com/${repositoryName};true;true;POST|"
+      );
+    testUtil.mockRepositoryProperties(new V1PropertyDaoTestUtil.PropertiesForRepository(REPO_NAME, mockedValues));
+    updateStep = new WebhooksV2ConfigMigrationUpdateStep(testUtil.getPropertyDAO(), storeFactory, keyGenerator, 1);
+
+    updateStep.doUpdate();
+
+    assertThat(configStore.get().getWebhooks()).hasSize(1);
+  }
+}